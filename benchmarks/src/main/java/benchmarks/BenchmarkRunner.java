@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Punto di ingresso del jar dei benchmark.
+ *
+ * <p>Accetta le stesse opzioni di JMH ({@code -h} per l'elenco) e aggiunge
+ * sempre il profiler GC, che riporta i byte allocati per operazione
+ * ({@code gc.alloc.rate.norm}) e il numero di raccolte. Esempi:</p>
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar
+ * java -jar benchmarks/target/benchmarks.jar ForwardBenchmark -p penWidth=2
+ * </pre>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+                || options.shouldListProfilers() || options.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(options);
+        boolean hasGc = false;
+        for (ProfilerConfig profiler : options.getProfilers()) {
+            hasGc |= profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName());
+        }
+        if (!hasGc) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo di un cerchio completo con {@code circle(radius, 360, steps)},
+ * per raggi e numeri di passi diversi, e con {@code circle(radius)}, che
+ * sceglie i segmenti dal raggio (per questo non dipende da {@code steps}).
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CircleBenchmark {
+
+    @Param({"10", "250"})
+    public double radius;
+
+    @Param({"12", "36", "360"})
+    public int steps;
+
+    private Object turtle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        turtle = TurtleApi.createTurtle(TurtleApi.newScreen(800, 600));
+        TurtleApi.hideTurtle(turtle);
+        TurtleApi.setPenSize(turtle, 2);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        TurtleApi.clear(turtle);
+    }
+
+    @Benchmark
+    public void circle() {
+        TurtleApi.circle(turtle, radius, 360, steps);
+        TurtleApi.left(turtle, 7);
+    }
+
+    @Benchmark
+    public void circleAdaptive() {
+        TurtleApi.circle(turtle, radius);
+        TurtleApi.left(turtle, 7);
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo di una figura riempita con {@code beginFill}/{@code endFill}: un
+ * poligono stellato (quindi con autointersezioni) con molti vertici.
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FillBenchmark {
+
+    @Param({"16", "256", "2048"})
+    public int vertices;
+
+    private Object turtle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        turtle = TurtleApi.createTurtle(TurtleApi.newScreen(800, 600));
+        TurtleApi.hideTurtle(turtle);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        TurtleApi.clear(turtle);
+    }
+
+    @Benchmark
+    public void fill() {
+        TurtleApi.penUp(turtle);
+        TurtleApi.goTo(turtle, -200, 0);
+        TurtleApi.setHeading(turtle, 0);
+        TurtleApi.penDown(turtle);
+        TurtleApi.beginFill(turtle);
+        double turn = 180 - 180.0 / vertices;
+        for (int i = 0; i < vertices; i++) {
+            TurtleApi.forward(turtle, 400);
+            TurtleApi.left(turtle, turn);
+        }
+        TurtleApi.endFill(turtle);
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo di un segmento disegnato con {@code forward}, a vari spessori di penna.
+ *
+ * <p>Ogni operazione è un {@code forward} seguito da una rotazione, così i
+ * segmenti formano una spezzata che resta dentro lo schermo, come in un disegno
+ * vero. Il canvas e la display list vengono svuotati a ogni iterazione.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ForwardBenchmark {
+
+    @Param({"1", "2", "5", "10"})
+    public double penWidth;
+
+    private Object turtle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        turtle = TurtleApi.createTurtle(TurtleApi.newScreen(800, 600));
+        TurtleApi.hideTurtle(turtle);
+        TurtleApi.setPenSize(turtle, penWidth);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        TurtleApi.clear(turtle);
+    }
+
+    @Benchmark
+    public void forward() {
+        TurtleApi.forward(turtle, 200);
+        TurtleApi.left(turtle, 123);
+    }
+
+    /**
+     * Segmento isolato: con la penna alzata tra un segmento e l'altro ogni
+     * {@code forward} produce una linea a sé, come un drawLine.
+     */
+    @Benchmark
+    public void drawLine() {
+        TurtleApi.penDown(turtle);
+        TurtleApi.forward(turtle, 200);
+        TurtleApi.penUp(turtle);
+        TurtleApi.left(turtle, 123);
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.PrimitiveIterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Espansione e disegno di un L-system, la curva del drago, a varie generazioni.
+ *
+ * <p>{@code expand} misura solo la produzione dei simboli: l'allocazione per
+ * operazione ({@code gc.alloc.rate.norm}) deve restare costante al crescere
+ * delle generazioni, mentre il tempo cresce con il numero di simboli.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LSystemBenchmark {
+
+    @Param({"8", "12", "16"})
+    public int generations;
+
+    private Object dragon;
+    private Object turtle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dragon = TurtleApi.newLSystem("FX", 90, 300, Math.sqrt(0.5), "X", "X+YF+", "Y", "-FX-Y");
+        turtle = TurtleApi.createTurtle(TurtleApi.newScreen(800, 600));
+        TurtleApi.hideTurtle(turtle);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        TurtleApi.clear(turtle);
+    }
+
+    @Benchmark
+    public long expand() {
+        PrimitiveIterator.OfInt symbols = TurtleApi.expand(dragon, generations);
+        long sum = 0;
+        while (symbols.hasNext()) {
+            sum += symbols.nextInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void draw() {
+        TurtleApi.penUp(turtle);
+        TurtleApi.goTo(turtle, -100, 0);
+        TurtleApi.setHeading(turtle, 0);
+        TurtleApi.penDown(turtle);
+        TurtleApi.draw(dragon, turtle, generations);
+    }
+}
@@ -0,0 +1,94 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tartarughe che disegnano punti e segmenti corti sullo stesso schermo,
+ * ognuna dal proprio thread.
+ *
+ * <p>Tile e zone modificate sono già divise per livello e per zona; l'unico
+ * lock che resta in comune è quello della display list del livello. Con
+ * {@code ownLayer=false} tutte le tartarughe condividono il livello 0 e quindi
+ * la sua display list, con {@code ownLayer=true} ognuna ha un livello proprio:
+ * la differenza tra i due casi, e con {@code -t 1}, misura quanto costa quel lock.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ParallelBenchmark {
+
+    @Param({"false", "true"})
+    public boolean ownLayer;
+
+    private Object screen;
+    private final AtomicInteger nextLayer = new AtomicInteger(1);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        screen = TurtleApi.newScreen(800, 600);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        for (int id = 0; id < nextLayer.get(); id++) {
+            TurtleApi.clearLayer(screen, id);
+        }
+    }
+
+    /**
+     * La tartaruga di un thread, su un livello proprio se richiesto.
+     */
+    @State(Scope.Thread)
+    public static class Pen {
+        Object turtle;
+
+        @Setup(Level.Trial)
+        public void setUp(ParallelBenchmark benchmark) {
+            turtle = TurtleApi.createTurtle(benchmark.screen);
+            TurtleApi.hideTurtle(turtle);
+            if (benchmark.ownLayer) {
+                TurtleApi.setLayer(turtle, benchmark.nextLayer.getAndIncrement());
+            }
+        }
+    }
+
+    @Benchmark
+    public void dot(Pen pen) {
+        TurtleApi.dot(pen.turtle, 4, Color.BLUE);
+        TurtleApi.penUp(pen.turtle);
+        TurtleApi.forward(pen.turtle, 97);
+        TurtleApi.left(pen.turtle, 71);
+    }
+
+    @Benchmark
+    public void segment(Pen pen) {
+        TurtleApi.penDown(pen.turtle);
+        TurtleApi.forward(pen.turtle, 7);
+        TurtleApi.penUp(pen.turtle);
+        TurtleApi.forward(pen.turtle, 97);
+        TurtleApi.left(pen.turtle, 71);
+    }
+}
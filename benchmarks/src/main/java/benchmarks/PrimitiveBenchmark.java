@@ -0,0 +1,75 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo di {@code dot}, {@code write} e {@code stamp}, con la tartaruga che si
+ * sposta a penna alzata tra un disegno e l'altro.
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PrimitiveBenchmark {
+
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 14);
+
+    private Object turtle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        turtle = TurtleApi.createTurtle(TurtleApi.newScreen(800, 600));
+        TurtleApi.hideTurtle(turtle);
+        TurtleApi.penUp(turtle);
+        TurtleApi.setShape(turtle, "turtle");
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        TurtleApi.clear(turtle);
+    }
+
+    @Benchmark
+    public void dot() {
+        TurtleApi.dot(turtle, 8, Color.RED);
+        TurtleApi.forward(turtle, 200);
+        TurtleApi.left(turtle, 123);
+    }
+
+    @Benchmark
+    public void write() {
+        TurtleApi.write(turtle, "Tartaruga", "center", FONT);
+        TurtleApi.forward(turtle, 200);
+        TurtleApi.left(turtle, 123);
+    }
+
+    /**
+     * Timbro della forma "turtle": dopo il primo giro le 72 direzioni sono
+     * già nella cache degli sprite e ogni timbro è una copia di pixel.
+     */
+    @Benchmark
+    public void stamp() {
+        TurtleApi.stamp(turtle);
+        TurtleApi.forward(turtle, 200);
+        TurtleApi.left(turtle, 123);
+    }
+}
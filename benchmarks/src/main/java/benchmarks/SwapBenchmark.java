@@ -0,0 +1,70 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo di {@code TurtleCanvas.swapBuffers} per varie dimensioni del canvas,
+ * con tutto il back buffer modificato o solo una zona di 64x64 pixel.
+ *
+ * <p>Usa un canvas non headless mai mostrato, perché in modalità headless lo
+ * swap non copia nulla sul front buffer.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SwapBenchmark {
+
+    @Param({"400x300", "800x600", "1920x1080"})
+    public String size;
+
+    @Param({"full", "tile"})
+    public String dirty;
+
+    private Object canvas;
+    private double x0;
+    private double y0;
+    private double x1;
+    private double y1;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int separator = size.indexOf('x');
+        int width = Integer.parseInt(size.substring(0, separator));
+        int height = Integer.parseInt(size.substring(separator + 1));
+        canvas = TurtleApi.newPresentingCanvas(width, height);
+        if (dirty.equals("full")) {
+            x1 = width;
+            y1 = height;
+        } else {
+            x0 = width / 2.0 - 32;
+            y0 = height / 2.0 - 32;
+            x1 = x0 + 64;
+            y1 = y0 + 64;
+        }
+    }
+
+    @Benchmark
+    public void swapBuffers() {
+        TurtleApi.markDirty(canvas, x0, y0, x1, y1);
+        TurtleApi.swapBuffers(canvas);
+    }
+}
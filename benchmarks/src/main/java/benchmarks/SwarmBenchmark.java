@@ -0,0 +1,90 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Un passo di simulazione di {@code agents} tartarughe: uno sciame contro
+ * altrettante {@code Turtle}, più il costo di registrarle su uno schermo.
+ *
+ * <p>{@code swarmStep} e {@code turtlesStep} tracciano gli stessi segmenti;
+ * la differenza è il costo per agente di oggetti, chiamate e disegno separato.
+ * {@code register} deve crescere linearmente con il numero di tartarughe.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SwarmBenchmark {
+
+    @Param({"1000", "100000"})
+    public int agents;
+
+    private Object swarm;
+    private Object[] turtles;
+    private Object eraser;
+    private Object canvas;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Object screen = TurtleApi.newScreen(800, 600);
+        swarm = TurtleApi.createSwarm(screen, agents);
+        TurtleApi.hideTurtles(swarm);
+        turtles = new Object[agents];
+        for (int i = 0; i < agents; i++) {
+            double heading = i * 360.0 / agents;
+            TurtleApi.setHeading(swarm, i, heading);
+            turtles[i] = TurtleApi.createTurtle(screen);
+            TurtleApi.hideTurtle(turtles[i]);
+            TurtleApi.setHeading(turtles[i], heading);
+        }
+        eraser = turtles[0];
+        canvas = TurtleApi.getCanvas(screen);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        TurtleApi.clear(eraser);
+    }
+
+    @Benchmark
+    public void swarmStep() {
+        TurtleApi.forwardAll(swarm, 2);
+        TurtleApi.turnAll(swarm, 1);
+    }
+
+    @Benchmark
+    public void turtlesStep() {
+        for (Object turtle : turtles) {
+            TurtleApi.forward(turtle, 2);
+            TurtleApi.left(turtle, 1);
+        }
+        TurtleApi.flushPaths(canvas);
+    }
+
+    @Benchmark
+    public Object register() {
+        Object screen = TurtleApi.newScreen(100, 100);
+        for (int i = 0; i < agents; i++) {
+            TurtleApi.createTurtle(screen);
+        }
+        return screen;
+    }
+}
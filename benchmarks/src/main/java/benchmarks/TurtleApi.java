@@ -0,0 +1,464 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.PrimitiveIterator;
+
+/**
+ * Accesso alla libreria turtle dai benchmark.
+ *
+ * <p>Le classi della libreria stanno nel package di default, che non si può
+ * importare da un package con nome, mentre JMH rifiuta i benchmark nel package
+ * di default. I metodi usati vengono quindi risolti una volta sola come
+ * {@link MethodHandle} in campi {@code static final}: il JIT li tratta come
+ * costanti e li inlinea, per cui il costo misurato è quello della chiamata diretta.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TurtleApi {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> SCREEN = type("TurtleScreen");
+    private static final Class<?> TURTLE = type("Turtle");
+    private static final Class<?> CANVAS = type("TurtleCanvas");
+    private static final Class<?> LSYSTEM = type("LSystem");
+    private static final Class<?> SWARM = type("TurtleSwarm");
+
+    private static final MethodHandle NEW_SCREEN = constructor(SCREEN, int.class, int.class, boolean.class);
+    private static final MethodHandle NEW_CANVAS = constructor(CANVAS, int.class, int.class, boolean.class);
+    private static final MethodHandle CREATE_TURTLE = method(SCREEN, "createTurtle", TURTLE);
+    private static final MethodHandle GET_CANVAS = method(SCREEN, "getCanvas", CANVAS);
+    private static final MethodHandle RUN = method(SCREEN, "run", void.class);
+    private static final MethodHandle ZOOM = method(SCREEN, "zoom", void.class, double.class, double.class, double.class);
+    private static final MethodHandle ZOOM_TO_FIT = method(SCREEN, "zoomToFit", void.class);
+    private static final MethodHandle CLEAR_LAYER = method(SCREEN, "clearLayer", void.class, int.class);
+
+    private static final MethodHandle FORWARD = method(TURTLE, "forward", void.class, double.class);
+    private static final MethodHandle LEFT = method(TURTLE, "left", void.class, double.class);
+    private static final MethodHandle GO_TO = method(TURTLE, "goTo", void.class, double.class, double.class);
+    private static final MethodHandle SET_HEADING = method(TURTLE, "setHeading", void.class, double.class);
+    private static final MethodHandle CIRCLE = method(TURTLE, "circle", void.class, double.class, double.class, int.class);
+    private static final MethodHandle CIRCLE_ADAPTIVE = method(TURTLE, "circle", void.class, double.class);
+    private static final MethodHandle DOT = method(TURTLE, "dot", void.class, double.class, Color.class);
+    private static final MethodHandle WRITE = method(TURTLE, "write", void.class, String.class, String.class, Font.class);
+    private static final MethodHandle BEGIN_FILL = method(TURTLE, "beginFill", void.class);
+    private static final MethodHandle END_FILL = method(TURTLE, "endFill", void.class);
+    private static final MethodHandle PEN_UP = method(TURTLE, "penUp", void.class);
+    private static final MethodHandle PEN_DOWN = method(TURTLE, "penDown", void.class);
+    private static final MethodHandle SET_PEN_SIZE = method(TURTLE, "setPenSize", void.class, double.class);
+    private static final MethodHandle HIDE_TURTLE = method(TURTLE, "hideTurtle", void.class);
+    private static final MethodHandle CLEAR = method(TURTLE, "clear", void.class);
+    private static final MethodHandle STAMP = method(TURTLE, "stamp", void.class);
+    private static final MethodHandle SET_LAYER = method(TURTLE, "setLayer", void.class, int.class);
+    private static final MethodHandle SET_SHAPE = method(TURTLE, "setShape", void.class, String.class);
+    private static final MethodHandle PARSE_COLOR = staticMethod(TURTLE, "parseColor", Color.class, String.class);
+
+    private static final MethodHandle NEW_LSYSTEM = constructor(LSYSTEM, String.class);
+    private static final MethodHandle LSYSTEM_DRAW = method(LSYSTEM, "draw", void.class, TURTLE, int.class);
+    private static final MethodHandle LSYSTEM_EXPAND = method(LSYSTEM, "expand", PrimitiveIterator.OfInt.class, int.class);
+
+    private static final MethodHandle CREATE_SWARM = method(SCREEN, "createSwarm", SWARM, int.class);
+    private static final MethodHandle SWARM_FORWARD_ALL = method(SWARM, "forwardAll", void.class, double.class);
+    private static final MethodHandle SWARM_TURN_ALL = method(SWARM, "turnAll", void.class, double.class);
+    private static final MethodHandle SWARM_SET_HEADING = method(SWARM, "setHeading", void.class, int.class, double.class);
+    private static final MethodHandle SWARM_HIDE = method(SWARM, "hideTurtles", void.class);
+
+    private static final MethodHandle SWAP_BUFFERS = method(CANVAS, "swapBuffers", void.class);
+    private static final MethodHandle FLUSH_PATHS = method(CANVAS, "flushPaths", void.class);
+    private static final MethodHandle STOP_RENDER_LOOP = method(CANVAS, "stopRenderLoop", void.class);
+    private static final MethodHandle MARK_DIRTY = method(CANVAS, "markDirty", void.class,
+            double.class, double.class, double.class, double.class, double.class);
+
+    private TurtleApi() {
+    }
+
+    static Object newScreen(int width, int height) {
+        try {
+            return (Object) NEW_SCREEN.invokeExact(width, height, true);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Crea un canvas che presenta i frame come quello di una finestra, senza
+     * mostrarlo: in modalità headless swapBuffers salterebbe la copia sul front buffer.
+     */
+    static Object newPresentingCanvas(int width, int height) {
+        try {
+            Object canvas = (Object) NEW_CANVAS.invokeExact(width, height, false);
+            STOP_RENDER_LOOP.invokeExact(canvas);
+            return canvas;
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Crea una delle demo della libreria, che deve avere un costruttore pubblico senza argomenti.
+     */
+    static Object newDemo(String className) {
+        try {
+            return LOOKUP.findConstructor(type(className), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static Object createTurtle(Object screen) {
+        try {
+            return (Object) CREATE_TURTLE.invokeExact(screen);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static Object getCanvas(Object screen) {
+        try {
+            return (Object) GET_CANVAS.invokeExact(screen);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void run(Object screen) {
+        try {
+            RUN.invokeExact(screen);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void forward(Object turtle, double distance) {
+        try {
+            FORWARD.invokeExact(turtle, distance);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void left(Object turtle, double angle) {
+        try {
+            LEFT.invokeExact(turtle, angle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void goTo(Object turtle, double x, double y) {
+        try {
+            GO_TO.invokeExact(turtle, x, y);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void setHeading(Object turtle, double angle) {
+        try {
+            SET_HEADING.invokeExact(turtle, angle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void circle(Object turtle, double radius, double extent, int steps) {
+        try {
+            CIRCLE.invokeExact(turtle, radius, extent, steps);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void circle(Object turtle, double radius) {
+        try {
+            CIRCLE_ADAPTIVE.invokeExact(turtle, radius);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void dot(Object turtle, double size, Color color) {
+        try {
+            DOT.invokeExact(turtle, size, (Object) color);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void write(Object turtle, String text, String align, Font font) {
+        try {
+            WRITE.invokeExact(turtle, (Object) text, (Object) align, (Object) font);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void beginFill(Object turtle) {
+        try {
+            BEGIN_FILL.invokeExact(turtle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void endFill(Object turtle) {
+        try {
+            END_FILL.invokeExact(turtle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void penUp(Object turtle) {
+        try {
+            PEN_UP.invokeExact(turtle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void penDown(Object turtle) {
+        try {
+            PEN_DOWN.invokeExact(turtle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void setPenSize(Object turtle, double width) {
+        try {
+            SET_PEN_SIZE.invokeExact(turtle, width);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void hideTurtle(Object turtle) {
+        try {
+            HIDE_TURTLE.invokeExact(turtle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void clear(Object turtle) {
+        try {
+            CLEAR.invokeExact(turtle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void setLayer(Object turtle, int id) {
+        try {
+            SET_LAYER.invokeExact(turtle, id);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void clearLayer(Object screen, int id) {
+        try {
+            CLEAR_LAYER.invokeExact(screen, id);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void stamp(Object turtle) {
+        try {
+            STAMP.invokeExact(turtle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void setShape(Object turtle, String shape) {
+        try {
+            SET_SHAPE.invokeExact(turtle, (Object) shape);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static Color parseColor(String color) {
+        try {
+            return (Color) (Object) PARSE_COLOR.invokeExact((Object) color);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    /**
+     * Crea un L-system; le regole sono coppie simbolo, rimpiazzo
+     * (es. {@code "X", "X+YF+"}). Va chiamato solo nel setup.
+     */
+    static Object newLSystem(String axiom, double angle, double step, double stepScale, String... rules) {
+        try {
+            Object system = (Object) NEW_LSYSTEM.invokeExact((Object) axiom);
+            for (int i = 0; i < rules.length; i += 2) {
+                LOOKUP.findVirtual(LSYSTEM, "rule", MethodType.methodType(LSYSTEM, char.class, String.class))
+                        .invoke(system, rules[i].charAt(0), rules[i + 1]);
+            }
+            LOOKUP.findVirtual(LSYSTEM, "angle", MethodType.methodType(LSYSTEM, double.class)).invoke(system, angle);
+            LOOKUP.findVirtual(LSYSTEM, "step", MethodType.methodType(LSYSTEM, double.class)).invoke(system, step);
+            LOOKUP.findVirtual(LSYSTEM, "stepScale", MethodType.methodType(LSYSTEM, double.class))
+                    .invoke(system, stepScale);
+            return system;
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void draw(Object system, Object turtle, int generations) {
+        try {
+            LSYSTEM_DRAW.invokeExact(system, turtle, generations);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static PrimitiveIterator.OfInt expand(Object system, int generations) {
+        try {
+            return (PrimitiveIterator.OfInt) (Object) LSYSTEM_EXPAND.invokeExact(system, generations);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static Object createSwarm(Object screen, int size) {
+        try {
+            return (Object) CREATE_SWARM.invokeExact(screen, size);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void forwardAll(Object swarm, double distance) {
+        try {
+            SWARM_FORWARD_ALL.invokeExact(swarm, distance);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void turnAll(Object swarm, double angle) {
+        try {
+            SWARM_TURN_ALL.invokeExact(swarm, angle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void setHeading(Object swarm, int index, double angle) {
+        try {
+            SWARM_SET_HEADING.invokeExact(swarm, index, angle);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void hideTurtles(Object swarm) {
+        try {
+            SWARM_HIDE.invokeExact(swarm);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void zoom(Object screen, double factor, double x, double y) {
+        try {
+            ZOOM.invokeExact(screen, factor, x, y);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void zoomToFit(Object screen) {
+        try {
+            ZOOM_TO_FIT.invokeExact(screen);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void swapBuffers(Object canvas) {
+        try {
+            SWAP_BUFFERS.invokeExact(canvas);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void flushPaths(Object canvas) {
+        try {
+            FLUSH_PATHS.invokeExact(canvas);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    static void markDirty(Object canvas, double x0, double y0, double x1, double y1) {
+        try {
+            MARK_DIRTY.invokeExact(canvas, x0, y0, x1, y1, 0.0);
+        } catch (Throwable e) {
+            throw propagate(e);
+        }
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Classe della libreria non trovata: " + name, e);
+        }
+    }
+
+    /**
+     * Risolve un costruttore, con i tipi riferimento cancellati a Object.
+     */
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(owner, MethodType.methodType(void.class, parameters));
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Risolve un metodo d'istanza, con il ricevente e i tipi riferimento cancellati a Object.
+     */
+    private static MethodHandle method(Class<?> owner, String name, Class<?> result, Class<?>... parameters) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(owner, name, MethodType.methodType(result, parameters));
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle staticMethod(Class<?> owner, String name, Class<?> result, Class<?>... parameters) {
+        try {
+            MethodHandle handle = LOOKUP.findStatic(owner, name, MethodType.methodType(result, parameters));
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RuntimeException propagate(Throwable e) {
+        if (e instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(e);
+    }
+}
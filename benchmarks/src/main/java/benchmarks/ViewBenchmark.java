@@ -0,0 +1,70 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ridisegno dopo un cambio di vista di una curva del drago già disegnata
+ * ({@code 2^generations} segmenti).
+ *
+ * <p>{@code fit} mostra tutto il disegno, con la maggior parte dei segmenti
+ * sotto il pixel: misura il LOD. {@code closeUp} è ingrandito 20 volte su
+ * un angolo della curva: misura lo scarto dei comandi fuori dal canvas e
+ * deve costare molto meno di {@code fit}.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ViewBenchmark {
+
+    @Param({"16", "20"})
+    public int generations;
+
+    private Object screen;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Object dragon = TurtleApi.newLSystem("FX", 90, 1200, Math.sqrt(0.5), "X", "X+YF+", "Y", "-FX-Y");
+        screen = TurtleApi.newScreen(800, 600);
+        Object turtle = TurtleApi.createTurtle(screen);
+        TurtleApi.hideTurtle(turtle);
+        TurtleApi.penUp(turtle);
+        TurtleApi.goTo(turtle, -500, 100);
+        TurtleApi.penDown(turtle);
+        TurtleApi.draw(dragon, turtle, generations);
+    }
+
+    @Setup(Level.Iteration)
+    public void closeUpView() {
+        TurtleApi.zoomToFit(screen);
+        TurtleApi.zoom(screen, 20, -500, 100);
+    }
+
+    @Benchmark
+    public void fit() {
+        TurtleApi.zoomToFit(screen);
+    }
+
+    @Benchmark
+    public void closeUp() {
+        TurtleApi.zoom(screen, 1, -500, 100);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disegni completi delle demo {@code AlberoFrattale} e {@code SpiraleDemo} in
+ * modalità headless: creazione dello schermo, {@code setup()} e presentazione finale.
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class WorkloadBenchmark {
+
+    @Benchmark
+    public Object alberoFrattale() {
+        Object screen = TurtleApi.newDemo("AlberoFrattale");
+        TurtleApi.run(screen);
+        return screen;
+    }
+
+    @Benchmark
+    public Object spiraleDemo() {
+        Object screen = TurtleApi.newDemo("SpiraleDemo");
+        TurtleApi.run(screen);
+        return screen;
+    }
+}
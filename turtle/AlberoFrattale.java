@@ -6,6 +6,7 @@ import java.awt.Color;
  */
 public class AlberoFrattale extends TurtleScreen {  
     private Turtle t; 
+    private ColorPalette colori; // Un colore per ogni profondità dei rami
 
     public AlberoFrattale() {
         super(800, 600); 
@@ -28,6 +29,15 @@ public class AlberoFrattale extends TurtleScreen {
         t.penDown();                  
         t.setHeading(90);                
 
+        // Prepara il colore di ogni profondità (più verde verso le punte)
+        int[] argb = new int[11];
+        for (int profondita = 0; profondita <= 10; profondita++) {
+            float componenteVerde = Math.min(1.0f, 0.2f + (10 - profondita) * 0.08f);
+            float componenteRosso = Math.max(0.1f, 0.4f - profondita * 0.03f);
+            argb[profondita] = new Color(componenteRosso, componenteVerde, 0.1f).getRGB();
+        }
+        colori = ColorPalette.of(argb);
+
         // Inizia a disegnare l'albero
         disegnaRamo(100, 10);
     }
@@ -39,10 +49,8 @@ public class AlberoFrattale extends TurtleScreen {
             return;
         }
 
-        // Calcola il colore del ramo (più verde verso le punte)
-        float componenteVerde = Math.min(1.0f, 0.2f + (10 - profondita) * 0.08f);
-        float componenteRosso = Math.max(0.1f, 0.4f - profondita * 0.03f);
-        t.setPenColor(new Color(componenteRosso, componenteVerde, 0.1f));
+        // Colore del ramo, preparato in setup() per ogni profondità
+        t.setPenColor(colori.get(profondita));
 
         // I rami più profondi sono più spessi
         t.setPenSize(profondita+1);
@@ -50,29 +58,18 @@ public class AlberoFrattale extends TurtleScreen {
         // Disegna il ramo corrente
         t.forward(lunghezza);            
 
-        // Salva la posizione e direzione corrente
-        double[] posizione = t.position(); // Ottiene [x, y] correnti
-        double direzione = t.heading(); // Ottiene l'angolo corrente
-
-        // Disegna il ramo sinistro
-        t.left(30);                         
-        disegnaRamo(lunghezza * 0.7, profondita - 1); 
-
-        // Torna alla posizione salvata
-        t.penUp();                           // Alza la penna
-        t.goTo(posizione[0], posizione[1]);  // Torna alla biforcazione
-        t.setHeading(direzione);             // Ripristina la direzione
-        t.penDown();                         // Abbassa la penna
+        // Disegna il ramo sinistro, poi torna alla biforcazione:
+        // popState() riporta posizione, direzione e penna senza animazione
+        t.pushState();                       // Salva lo stato corrente
+        t.left(30);
+        disegnaRamo(lunghezza * 0.7, profondita - 1);
+        t.popState();                        // Torna alla biforcazione
 
         // Disegna il ramo destro
-        t.right(30);                         
-        disegnaRamo(lunghezza * 0.7, profondita - 1); 
-
-        // Torna alla posizione salvata in precedenza
-        t.penUp();
-        t.goTo(posizione[0], posizione[1]);
-        t.setHeading(direzione);
-        t.penDown();
+        t.pushState();
+        t.right(30);
+        disegnaRamo(lunghezza * 0.7, profondita - 1);
+        t.popState();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,78 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Lista thread-safe in cui si può solo aggiungere, usata per le tartarughe
+ * registrate su uno schermo.
+ *
+ * <p>Come una {@code CopyOnWriteArrayList} la si può scorrere da qualunque
+ * thread senza lock mentre altri aggiungono elementi, ma l'aggiunta non copia
+ * tutto l'array: l'array raddoppia quando è pieno, quindi registrare
+ * {@code n} tartarughe costa O(n) invece di O(n²). Un iteratore vede gli
+ * elementi presenti quando è stato creato.</p>
+ *
+ * @param <E> il tipo degli elementi
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class AppendOnlyList<E> extends AbstractList<E> implements RandomAccess {
+
+    // Chi legge size e poi elements vede almeno i primi size elementi:
+    // l'array cresciuto viene pubblicato prima della nuova dimensione
+    private volatile Object[] elements = new Object[16];
+    private volatile int size = 0;
+
+    @Override
+    public synchronized boolean add(E element) {
+        Object[] array = elements;
+        int n = size;
+        if (n == array.length) {
+            array = Arrays.copyOf(array, 2 * n);
+            elements = array;
+        }
+        array[n] = element;
+        size = n + 1;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        int n = size;
+        if (index < 0 || index >= n) {
+            throw new IndexOutOfBoundsException("Indice " + index + ", dimensione " + n);
+        }
+        return (E) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        int n = size;
+        Object[] array = elements;
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < n;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (next >= n) {
+                    throw new NoSuchElementException();
+                }
+                return (E) array[next++];
+            }
+        };
+    }
+}
@@ -0,0 +1,140 @@
+import java.awt.*;
+
+/**
+ * Tavolozza di colori precalcolata, da consultare a ogni segmento senza
+ * creare oggetti.
+ *
+ * <p>I colori sono interi ARGB da passare a {@link Turtle#setPenColor(int)}:</p>
+ * <pre>{@code
+ * ColorPalette arcobaleno = ColorPalette.rainbow(360);
+ * for (int i = 0; i < 360; i++) {
+ *     t.setPenColor(arcobaleno.get(i));
+ *     t.forward(i * 0.5);
+ *     t.left(59);
+ * }
+ * }</pre>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public final class ColorPalette {
+
+    private final int[] colors;
+
+    private ColorPalette(int[] colors) {
+        this.colors = colors;
+    }
+
+    /**
+     * Crea una tavolozza con i colori indicati.
+     *
+     * @param argb i colori come 0xAARRGGBB
+     * @return la tavolozza
+     */
+    public static ColorPalette of(int... argb) {
+        if (argb.length == 0) {
+            throw new IllegalArgumentException("La tavolozza deve avere almeno un colore");
+        }
+        return new ColorPalette(argb.clone());
+    }
+
+    /**
+     * Crea una sfumatura di {@code size} colori che passa per i colori indicati,
+     * equidistanti, interpolando linearmente i canali (trasparenza compresa).
+     *
+     * @param size il numero di colori della tavolozza
+     * @param stops i colori di passaggio, almeno uno
+     * @return la tavolozza
+     */
+    public static ColorPalette gradient(int size, Color... stops) {
+        int[] argb = new int[stops.length];
+        for (int i = 0; i < stops.length; i++) {
+            argb[i] = stops[i].getRGB();
+        }
+        return gradient(size, argb);
+    }
+
+    /**
+     * Crea una sfumatura di {@code size} colori che passa per i colori ARGB indicati.
+     *
+     * @param size il numero di colori della tavolozza
+     * @param stops i colori di passaggio come 0xAARRGGBB, almeno uno
+     * @return la tavolozza
+     */
+    public static ColorPalette gradient(int size, int... stops) {
+        if (size <= 0 || stops.length == 0) {
+            throw new IllegalArgumentException("Sfumatura non valida: " + size + " colori, " + stops.length + " passaggi");
+        }
+        int[] colors = new int[size];
+        for (int i = 0; i < size; i++) {
+            double t = size == 1 ? 0 : (double) i / (size - 1) * (stops.length - 1);
+            int k = Math.min((int) t, stops.length - 1);
+            int next = Math.min(k + 1, stops.length - 1);
+            colors[i] = lerp(stops[k], stops[next], t - k);
+        }
+        return new ColorPalette(colors);
+    }
+
+    /**
+     * Crea l'arcobaleno di {@code size} colori con tinta da 0 a 1 (esclusa),
+     * saturazione e luminosità massime, come {@link Color#getHSBColor} a ogni passo.
+     *
+     * @param size il numero di colori della tavolozza
+     * @return la tavolozza
+     */
+    public static ColorPalette rainbow(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Dimensione non valida: " + size);
+        }
+        int[] colors = new int[size];
+        for (int i = 0; i < size; i++) {
+            colors[i] = Color.HSBtoRGB((float) i / size, 1f, 1f);
+        }
+        return new ColorPalette(colors);
+    }
+
+    /**
+     * Restituisce un colore della tavolozza; gli indici fuori dall'intervallo
+     * ricominciano dall'inizio, così un contatore può crescere senza limiti.
+     *
+     * @param index l'indice, anche negativo
+     * @return il colore come 0xAARRGGBB
+     */
+    public int get(int index) {
+        int i = index % colors.length;
+        return colors[i < 0 ? i + colors.length : i];
+    }
+
+    /**
+     * Restituisce il colore in una posizione relativa della tavolozza.
+     *
+     * @param t la posizione, da 0 (primo colore) a 1 (ultimo); i valori fuori vengono limitati
+     * @return il colore come 0xAARRGGBB
+     */
+    public int at(double t) {
+        double clamped = Math.max(0, Math.min(1, t));
+        return colors[(int) Math.round(clamped * (colors.length - 1))];
+    }
+
+    /**
+     * Restituisce il numero di colori.
+     *
+     * @return la dimensione della tavolozza
+     */
+    public int size() {
+        return colors.length;
+    }
+
+    /**
+     * Interpola canale per canale tra due colori ARGB.
+     */
+    private static int lerp(int from, int to, double t) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int a = (from >>> shift) & 0xFF;
+            int b = (to >>> shift) & 0xFF;
+            result |= (int) Math.round(a + (b - a) * t) << shift;
+        }
+        return result;
+    }
+}
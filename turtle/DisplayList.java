@@ -0,0 +1,881 @@
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Lista compatta dei comandi di disegno eseguiti su uno schermo.
+ *
+ * <p>Ogni comando (linea, punto, riempimento, testo...) viene memorizzato in
+ * array di tipi primitivi invece che come oggetto separato: un segmento occupa
+ * circa 37 byte (codice operazione, colore ARGB, spessore, indice, il primo
+ * punto in {@code double} e lo scostamento del secondo in {@code float}), così
+ * anche decine di milioni di segmenti restano gestibili in memoria.</p>
+ *
+ * <p>Il primo punto di ogni comando è esatto e gli altri sono scostamenti da
+ * questo: l'arrotondamento a {@code float} sbaglia di una parte su dieci
+ * milioni della dimensione del comando, non della sua distanza dall'origine,
+ * quindi il ridisegno coincide con il disegno originale a qualunque zoom,
+ * anche lontano dall'origine.</p>
+ *
+ * <p>Le coordinate sono registrate nel sistema della tartaruga (origine al
+ * centro, Y verso l'alto), quindi la lista può essere ridisegnata su
+ * qualunque {@link Graphics2D} con una scala e un'origine arbitrarie tramite
+ * {@link #replay(Graphics2D, double, double, double)}. La lista tiene anche
+ * il rettangolo che contiene tutti i punti registrati (vedi {@link #getExtents()}),
+ * aggiornato a ogni aggiunta.</p>
+ *
+ * <p>Aggiunte, cancellazione e replay sono sincronizzati sulla lista, così più
+ * tartarughe possono registrare comandi da thread diversi. Ogni livello del
+ * canvas ha la propria lista, e questo è l'unico lock che le tartarughe dello
+ * stesso livello hanno in comune: un'aggiunta lo tiene solo per copiare le
+ * coordinate in coda agli array, mentre la rasterizzazione, molto più lunga,
+ * avviene sotto i lock delle tile. L'ordine della lista è l'ordine di disegno,
+ * quindi non viene divisa per thread. Chi vuole evitare anche questo lock può
+ * dare a ogni tartaruga un livello proprio ({@code ParallelBenchmark} nei
+ * benchmark confronta i due casi).</p>
+ *
+ * <p>Un {@link Listener} opzionale riceve ogni comando nel momento in cui viene
+ * aggiunto, anche se la registrazione è disabilitata: serve agli esportatori
+ * che scrivono il disegno man mano, come {@link SvgExporter}.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public class DisplayList {
+
+    /** Segmento: x1, y1, x2, y2 */
+    public static final byte LINE = 1;
+
+    /** Punto pieno: x, y; il diametro è nello spessore */
+    public static final byte DOT = 2;
+
+    /** Poligono pieno: n, poi n coppie x, y */
+    public static final byte FILL = 3;
+
+    /** Contorno chiuso del poligono del FILL precedente (stesse coordinate) */
+    public static final byte OUTLINE = 4;
+
+    /** Spezzata aperta: n, poi n coppie x, y */
+    public static final byte POLYLINE = 5;
+
+    /** Testo: l'indice punta a un {@link TextRun} */
+    public static final byte TEXT = 6;
+
+    /** Immagine centrata in x, y, misurata in pixel: l'indice punta a un {@link ImageRun} */
+    public static final byte IMAGE = 7;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] ops = new byte[INITIAL_CAPACITY];
+    private int[] colors = new int[INITIAL_CAPACITY];
+    private float[] widths = new float[INITIAL_CAPACITY];
+    private int[] refs = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Primo punto di ogni comando, x e y
+    private double[] anchors = new double[INITIAL_CAPACITY * 2];
+
+    // Scostamenti dal primo punto degli altri punti, e numero di punti delle figure
+    private float[] coords = new float[INITIAL_CAPACITY * 2];
+    private int coordCount = 0;
+
+    private final ArrayList<TextRun> texts = new ArrayList<>();
+    private final ArrayList<ImageRun> images = new ArrayList<>();
+
+    private volatile boolean enabled = true;
+
+    /** false da quando un comando è stato scartato a registrazione disabilitata fino a clear() */
+    private volatile boolean complete = true;
+
+    /** Margine per l'antialiasing nei limiti dei comandi */
+    private static final double AA_MARGIN = 2;
+
+    /** Lunghezza in pixel sotto la quale il ridisegno con LOD unisce i segmenti */
+    static final double LOD_PIXELS = 1.0;
+
+    /** Distanza in pixel entro cui un segmento continua il precedente nel ridisegno con LOD */
+    private static final double JOIN_PIXELS = 1e-3;
+
+    // Estensione in coordinate turtle dei punti registrati (vuota se minX > maxX)
+    private double extentMinX = Double.POSITIVE_INFINITY;
+    private double extentMinY = Double.POSITIVE_INFINITY;
+    private double extentMaxX = Double.NEGATIVE_INFINITY;
+    private double extentMaxY = Double.NEGATIVE_INFINITY;
+
+    private volatile Listener listener;
+
+    /**
+     * Riceve i comandi di disegno man mano che vengono aggiunti a una lista.
+     * Le coordinate sono quelle turtle; i metodi vengono chiamati con il lock
+     * della lista e non devono richiamarla.
+     */
+    public interface Listener {
+        void line(double x1, double y1, double x2, double y2, int argb, double width);
+
+        void dot(double x, double y, double size, int argb);
+
+        void polyline(double[] xy, int points, int argb, double width);
+
+        void fill(Path2D shape, int fillArgb, boolean outline, int penArgb, double width);
+
+        void text(double x, double y, String text, Font font, String align, int argb);
+
+        /**
+         * Riceve un'immagine centrata in (x, y), come i timbri di {@link Turtle#stamp()}.
+         * Per default viene ignorata.
+         */
+        default void image(double x, double y, BufferedImage image) {
+        }
+    }
+
+    /**
+     * Testo registrato da {@link Turtle#write(String, String, Font)}.
+     */
+    public static final class TextRun {
+        final double x;
+        final double y;
+        final String text;
+        final Font font;
+        final String align;
+
+        TextRun(double x, double y, String text, Font font, String align) {
+            this.x = x;
+            this.y = y;
+            this.text = text;
+            this.font = font;
+            this.align = align;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Font getFont() {
+            return font;
+        }
+
+        public String getAlign() {
+            return align;
+        }
+    }
+
+    /**
+     * Immagine registrata da {@link Turtle#stamp()} con una forma bitmap.
+     * L'immagine è condivisa con la cache dei cursori e non va modificata.
+     */
+    public static final class ImageRun {
+        final double x;
+        final double y;
+        final BufferedImage image;
+
+        ImageRun(double x, double y, BufferedImage image) {
+            this.x = x;
+            this.y = y;
+            this.image = image;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+    }
+
+    /**
+     * Abilita o disabilita la registrazione dei comandi.
+     * Utile per disegni enormi che non devono essere ridisegnati: finché la
+     * lista non viene svuotata, la vista del canvas non può più cambiare
+     * (vedi {@link TurtleCanvas#isViewChangeable()}).
+     *
+     * @param enabled true per registrare i comandi
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Verifica se la registrazione è abilitata.
+     *
+     * @return true se i comandi vengono registrati
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Verifica se la lista contiene tutto ciò che è stato disegnato dall'ultimo
+     * {@link #clear()}, cioè se nessun comando è stato scartato perché la
+     * registrazione era disabilitata. Solo una lista completa può ridisegnare
+     * il livello dopo un cambio di vista.
+     *
+     * @return true se nessun comando è andato perso
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Verifica se un comando va scartato perché la registrazione è disabilitata,
+     * e in questo caso segna la lista come incompleta.
+     */
+    private boolean dropped() {
+        if (enabled) {
+            return false;
+        }
+        if (complete) {
+            complete = false;
+        }
+        return true;
+    }
+
+    /**
+     * Imposta chi riceve i comandi aggiunti da ora in poi.
+     *
+     * @param listener il destinatario, o null per nessuno
+     */
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Invia a un listener tutti i comandi già registrati, in ordine.
+     *
+     * @param target il destinatario
+     */
+    public synchronized void emit(Listener target) {
+        for (int i = 0; i < size; i++) {
+            int ref = refs[i];
+            double ax = anchors[2 * i];
+            double ay = anchors[2 * i + 1];
+            switch (ops[i]) {
+                case LINE -> target.line(ax, ay, ax + coords[ref], ay + coords[ref + 1], colors[i], widths[i]);
+                case DOT -> target.dot(ax, ay, widths[i], colors[i]);
+                case POLYLINE -> {
+                    int points = (int) coords[ref];
+                    double[] xy = new double[2 * points];
+                    for (int k = 0; k < xy.length; k += 2) {
+                        xy[k] = ax + coords[ref + 1 + k];
+                        xy[k + 1] = ay + coords[ref + 2 + k];
+                    }
+                    target.polyline(xy, points, colors[i], widths[i]);
+                }
+                case FILL -> {
+                    boolean outline = i + 1 < size && ops[i + 1] == OUTLINE && refs[i + 1] == ref;
+                    Path2D.Double shape = new Path2D.Double();
+                    int points = (int) coords[ref];
+                    for (int k = 0; k < points; k++) {
+                        double px = ax + coords[ref + 1 + 2 * k];
+                        double py = ay + coords[ref + 2 + 2 * k];
+                        if (k == 0) {
+                            shape.moveTo(px, py);
+                        } else {
+                            shape.lineTo(px, py);
+                        }
+                    }
+                    shape.closePath();
+                    target.fill(shape, colors[i], outline, outline ? colors[i + 1] : 0, outline ? widths[i + 1] : 0);
+                }
+                case TEXT -> {
+                    TextRun run = texts.get(ref);
+                    target.text(run.x, run.y, run.text, run.font, run.align, colors[i]);
+                }
+                case IMAGE -> {
+                    ImageRun run = images.get(ref);
+                    target.image(run.x, run.y, run.image);
+                }
+                default -> { }
+            }
+        }
+    }
+
+    /**
+     * Svuota la lista mantenendo la capacità già allocata.
+     */
+    public synchronized void clear() {
+        complete = true;
+        size = 0;
+        coordCount = 0;
+        texts.clear();
+        images.clear();
+        extentMinX = Double.POSITIVE_INFINITY;
+        extentMinY = Double.POSITIVE_INFINITY;
+        extentMaxX = Double.NEGATIVE_INFINITY;
+        extentMaxY = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Restituisce il rettangolo in coordinate turtle che contiene tutti i punti
+     * registrati: estremi dei segmenti, vertici, centri di punti, testi e immagini.
+     * Spessori e dimensioni dei testi, misurati in pixel, non sono compresi.
+     *
+     * @return un nuovo rettangolo, o null se la lista è vuota
+     */
+    public synchronized Rectangle2D getExtents() {
+        if (extentMinX > extentMaxX) {
+            return null;
+        }
+        return new Rectangle2D.Double(extentMinX, extentMinY, extentMaxX - extentMinX, extentMaxY - extentMinY);
+    }
+
+    /**
+     * Restituisce il numero di comandi registrati.
+     *
+     * @return il numero di comandi
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Registra un segmento.
+     */
+    public synchronized void addLine(double x1, double y1, double x2, double y2, int argb, double width) {
+        if (listener != null) listener.line(x1, y1, x2, y2, argb, width);
+        if (dropped()) return;
+        int start = reserveCoords(2);
+        coords[start] = (float) (x2 - x1);
+        coords[start + 1] = (float) (y2 - y1);
+        extend(x1, y1);
+        extend(x2, y2);
+        addOp(LINE, argb, width, start, x1, y1);
+    }
+
+    /**
+     * Registra molti segmenti con lo stesso spessore, come altrettante chiamate
+     * a {@link #addLine} ma prendendo il lock una volta sola.
+     *
+     * @param xy le coordinate x1, y1, x2, y2 di ogni segmento, una dopo l'altra
+     * @param argb il colore di ogni segmento
+     * @param count il numero di segmenti da leggere
+     */
+    public void addLines(double[] xy, int[] argb, int count, double width) {
+        addLines(xy, argb, 0, count, width);
+    }
+
+    /**
+     * Registra i segmenti di indice da {@code from} a {@code to} escluso,
+     * come {@link #addLines(double[], int[], int, double)}.
+     *
+     * @param xy le coordinate x1, y1, x2, y2 di ogni segmento, una dopo l'altra
+     * @param argb il colore di ogni segmento
+     * @param from il primo segmento da leggere
+     * @param to il segmento successivo all'ultimo da leggere
+     */
+    public synchronized void addLines(double[] xy, int[] argb, int from, int to, double width) {
+        if (listener != null) {
+            for (int n = from; n < to; n++) {
+                listener.line(xy[4 * n], xy[4 * n + 1], xy[4 * n + 2], xy[4 * n + 3], argb[n], width);
+            }
+        }
+        if (dropped()) return;
+        int start = reserveCoords(2 * (to - from));
+        for (int n = from; n < to; n++) {
+            int k = 4 * n;
+            int at = start + 2 * (n - from);
+            coords[at] = (float) (xy[k + 2] - xy[k]);
+            coords[at + 1] = (float) (xy[k + 3] - xy[k + 1]);
+            extend(xy[k], xy[k + 1]);
+            extend(xy[k + 2], xy[k + 3]);
+            addOp(LINE, argb[n], width, at, xy[k], xy[k + 1]);
+        }
+    }
+
+    /**
+     * Registra un punto pieno di diametro {@code size}.
+     */
+    public synchronized void addDot(double x, double y, double size, int argb) {
+        if (listener != null) listener.dot(x, y, size, argb);
+        if (dropped()) return;
+        extend(x, y);
+        addOp(DOT, argb, size, coordCount, x, y);
+    }
+
+    /**
+     * Registra una spezzata aperta.
+     *
+     * @param xy le coordinate alternate x, y
+     * @param points il numero di punti da leggere da {@code xy}
+     */
+    public synchronized void addPolyline(double[] xy, int points, int argb, double width) {
+        if (listener != null) listener.polyline(xy, points, argb, width);
+        if (dropped()) return;
+        int start = addPoints(xy, points);
+        addOp(POLYLINE, argb, width, start, points > 0 ? xy[0] : 0, points > 0 ? xy[1] : 0);
+    }
+
+    /**
+     * Registra un poligono pieno ed eventualmente il suo contorno.
+     *
+     * @param shape il contorno in coordinate turtle (solo segmenti rettilinei)
+     * @param fillArgb il colore di riempimento
+     * @param outline true se va disegnato anche il contorno
+     * @param penArgb il colore del contorno
+     * @param width lo spessore del contorno
+     */
+    public synchronized void addFill(Path2D shape, int fillArgb, boolean outline, int penArgb, double width) {
+        if (listener != null) listener.fill(shape, fillArgb, outline, penArgb, width);
+        if (dropped()) return;
+        int points = 0;
+        double ax = 0;
+        double ay = 0;
+        double[] seg = new double[6];
+        int header = reserveCoords(1);
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            int type = it.currentSegment(seg);
+            if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+                if (points == 0) {
+                    ax = seg[0];
+                    ay = seg[1];
+                }
+                int at = reserveCoords(2);
+                coords[at] = (float) (seg[0] - ax);
+                coords[at + 1] = (float) (seg[1] - ay);
+                extend(seg[0], seg[1]);
+                points++;
+            }
+        }
+        coords[header] = points;
+        addOp(FILL, fillArgb, 0, header, ax, ay);
+        if (outline) {
+            addOp(OUTLINE, penArgb, width, header, ax, ay);
+        }
+    }
+
+    /**
+     * Registra un poligono pieno senza contorno a partire dai vertici, senza
+     * passare da un Path2D (creato solo se c'è un listener).
+     *
+     * @param xy i vertici come coppie x, y in coordinate turtle
+     * @param points il numero di vertici da usare
+     * @param fillArgb il colore di riempimento
+     */
+    public synchronized void addFill(double[] xy, int points, int fillArgb) {
+        if (listener != null) {
+            Path2D.Double shape = new Path2D.Double();
+            shape.moveTo(xy[0], xy[1]);
+            for (int k = 1; k < points; k++) {
+                shape.lineTo(xy[2 * k], xy[2 * k + 1]);
+            }
+            shape.closePath();
+            listener.fill(shape, fillArgb, false, 0, 0);
+        }
+        if (dropped()) return;
+        int start = addPoints(xy, points);
+        addOp(FILL, fillArgb, 0, start, points > 0 ? xy[0] : 0, points > 0 ? xy[1] : 0);
+    }
+
+    /**
+     * Registra un testo scritto alla posizione indicata.
+     */
+    public synchronized void addText(double x, double y, String text, Font font, String align, int argb) {
+        if (listener != null) listener.text(x, y, text, font, align, argb);
+        if (dropped()) return;
+        texts.add(new TextRun(x, y, text, font, align));
+        extend(x, y);
+        addOp(TEXT, argb, 0, texts.size() - 1, x, y);
+    }
+
+    /**
+     * Registra un'immagine centrata alla posizione indicata, senza copiarla.
+     */
+    public synchronized void addImage(double x, double y, BufferedImage image) {
+        if (listener != null) listener.image(x, y, image);
+        if (dropped()) return;
+        images.add(new ImageRun(x, y, image));
+        extend(x, y);
+        addOp(IMAGE, 0, 0, images.size() - 1, x, y);
+    }
+
+    /** Restituisce il codice operazione del comando {@code i}. */
+    public byte getOp(int i) {
+        return ops[i];
+    }
+
+    /** Restituisce il colore ARGB del comando {@code i}. */
+    public int getColor(int i) {
+        return colors[i];
+    }
+
+    /** Restituisce lo spessore (o il diametro per DOT) del comando {@code i}. */
+    public float getWidth(int i) {
+        return widths[i];
+    }
+
+    /**
+     * Restituisce il numero di punti del comando {@code i}:
+     * 2 per LINE, 1 per DOT, TEXT e IMAGE, n per FILL, OUTLINE e POLYLINE.
+     */
+    public int getPointCount(int i) {
+        return switch (ops[i]) {
+            case LINE -> 2;
+            case DOT, TEXT, IMAGE -> 1;
+            default -> (int) coords[refs[i]];
+        };
+    }
+
+    /** Restituisce la coordinata X del punto {@code k} del comando {@code i}. */
+    public float getX(int i, int k) {
+        return (float) (anchors[2 * i] + offset(i, k, 0));
+    }
+
+    /** Restituisce la coordinata Y del punto {@code k} del comando {@code i}. */
+    public float getY(int i, int k) {
+        return (float) (anchors[2 * i + 1] + offset(i, k, 1));
+    }
+
+    /**
+     * Restituisce lo scostamento dal primo punto della coordinata X ({@code axis} 0)
+     * o Y ({@code axis} 1) del punto {@code k} del comando {@code i}.
+     */
+    private float offset(int i, int k, int axis) {
+        return switch (ops[i]) {
+            case DOT, TEXT, IMAGE -> 0;
+            case LINE -> k == 0 ? 0 : coords[refs[i] + axis];
+            default -> coords[refs[i] + 1 + 2 * k + axis];
+        };
+    }
+
+    /** Restituisce il testo del comando {@code i}, che deve essere di tipo TEXT. */
+    public TextRun getText(int i) {
+        return texts.get(refs[i]);
+    }
+
+    /** Restituisce l'immagine del comando {@code i}, che deve essere di tipo IMAGE. */
+    public ImageRun getImage(int i) {
+        return images.get(refs[i]);
+    }
+
+    /**
+     * Ridisegna tutti i comandi sul contesto grafico indicato.
+     *
+     * <p>Un punto turtle (x, y) finisce in
+     * ({@code originX + x * scale}, {@code originY - y * scale});
+     * spessori, diametri e font vengono scalati dello stesso fattore.</p>
+     *
+     * @param g il contesto grafico di destinazione
+     * @param scale i pixel per unità turtle
+     * @param originX la coordinata schermo X dell'origine turtle
+     * @param originY la coordinata schermo Y dell'origine turtle
+     */
+    public synchronized void replay(Graphics2D g, double scale, double originX, double originY) {
+        replay(g, 0, size, scale, originX, originY);
+    }
+
+    /**
+     * Ridisegna i comandi da {@code from} (incluso) a {@code to} (escluso).
+     *
+     * @see #replay(Graphics2D, double, double, double)
+     */
+    public synchronized void replay(Graphics2D g, int from, int to, double scale, double originX, double originY) {
+        replayOps(g, null, from, to, new TurtleView(scale, scale, originX, originY, scale), false);
+    }
+
+    /**
+     * Ridisegna i comandi elencati in {@code indices[from..to)}, nell'ordine dato,
+     * oppure i comandi da {@code from} a {@code to} se {@code indices} è null.
+     *
+     * <p>Non sincronizzato: il chiamante deve tenere il lock della lista, anche
+     * se il lavoro è diviso tra più thread (vedi {@link TileRenderer}).
+     * Ogni chiamata usa oggetti propri, quindi più thread possono ridisegnare
+     * la stessa lista su contesti diversi nello stesso momento.</p>
+     *
+     * <p>Con {@code lod} i segmenti più corti di {@value #LOD_PIXELS} pixel non
+     * vengono disegnati uno per uno: i segmenti consecutivi e uniti con la
+     * stessa penna si accumulano finché non si allontanano abbastanza dall'ultimo
+     * punto disegnato, e le spezzate saltano i vertici troppo vicini al
+     * precedente. Una curva di milioni di segmenti vista da lontano costa così
+     * quanto i pixel che copre, con uno scostamento di al più un paio di pixel.</p>
+     */
+    void replayOps(Graphics2D g, int[] indices, int from, int to, TurtleView view, boolean lod) {
+        double kx = view.scaleX;
+        double ky = view.scaleY;
+        double ox = view.originX;
+        double oy = view.originY;
+        Line2D.Double line = new Line2D.Double();
+        Ellipse2D.Double ellipse = new Ellipse2D.Double();
+        Path2D.Double path = new Path2D.Double();
+        int currentArgb = 0;
+        Color current = null;
+        float currentWidth = -1;
+
+        // Catena di segmenti uniti in LOD: (anchorX, anchorY) è l'ultimo punto
+        // disegnato, (endX, endY) la fine dell'ultimo segmento
+        boolean chained = false;
+        boolean pending = false;
+        double anchorX = 0;
+        double anchorY = 0;
+        double endX = 0;
+        double endY = 0;
+        for (int n = from; n < to; n++) {
+            int i = indices == null ? n : indices[n];
+            int argb = colors[i];
+            byte op = ops[i];
+            int ref = refs[i];
+            double sx = ox + anchors[2 * i] * kx;
+            double sy = oy - anchors[2 * i + 1] * ky;
+            if (chained && (op != LINE || argb != currentArgb || widths[i] != currentWidth
+                    || Math.abs(sx - endX) > JOIN_PIXELS || Math.abs(sy - endY) > JOIN_PIXELS)) {
+                if (pending) {
+                    line.setLine(anchorX, anchorY, endX, endY);
+                    g.draw(line);
+                }
+                chained = false;
+                pending = false;
+            }
+            if (current == null || argb != currentArgb) {
+                current = TurtleColors.color(argb);
+                currentArgb = argb;
+                g.setColor(current);
+            }
+            if ((op == LINE || op == POLYLINE || op == OUTLINE) && widths[i] != currentWidth) {
+                currentWidth = widths[i];
+                g.setStroke(TurtleGraphics.stroke((float) (currentWidth * view.sizeScale)));
+            }
+            switch (op) {
+                case LINE -> {
+                    double x2 = sx + coords[ref] * kx;
+                    double y2 = sy - coords[ref + 1] * ky;
+                    if (!lod) {
+                        line.setLine(sx, sy, x2, y2);
+                        g.draw(line);
+                        continue;
+                    }
+                    if (!chained) {
+                        chained = true;
+                        anchorX = sx;
+                        anchorY = sy;
+                    }
+                    endX = x2;
+                    endY = y2;
+                    double dx = x2 - anchorX;
+                    double dy = y2 - anchorY;
+                    pending = dx * dx + dy * dy < LOD_PIXELS * LOD_PIXELS;
+                    if (!pending) {
+                        line.setLine(anchorX, anchorY, x2, y2);
+                        g.draw(line);
+                        anchorX = x2;
+                        anchorY = y2;
+                    }
+                }
+                case DOT -> {
+                    double d = widths[i] * view.sizeScale;
+                    ellipse.setFrame(sx - d / 2, sy - d / 2, d, d);
+                    g.fill(ellipse);
+                }
+                case FILL -> g.fill(buildPath(path, i, true, view, false));
+                case OUTLINE -> g.draw(buildPath(path, i, true, view, false));
+                case POLYLINE -> g.draw(buildPath(path, i, false, view, lod));
+                case TEXT -> drawText(g, texts.get(ref), view);
+                case IMAGE -> drawImage(g, images.get(ref), view);
+                default -> { }
+            }
+        }
+        if (pending) {
+            line.setLine(anchorX, anchorY, endX, endY);
+            g.draw(line);
+        }
+    }
+
+    /**
+     * Calcola i limiti in coordinate schermo della zona toccata dal comando {@code i},
+     * compreso lo spessore della penna e il margine per l'antialiasing.
+     * Per i testi il risultato è una stima per eccesso.
+     * Come {@link #replayOps}, richiede che il chiamante tenga il lock della lista.
+     *
+     * @param out riceve minX, minY, maxX, maxY
+     */
+    void bounds(int i, TurtleView view, double[] out) {
+        int ref = refs[i];
+        double ax = anchors[2 * i];
+        double ay = anchors[2 * i + 1];
+        double pad = AA_MARGIN;
+        double minX;
+        double minY;
+        double maxX;
+        double maxY;
+        switch (ops[i]) {
+            case LINE -> {
+                minX = Math.min(ax, ax + coords[ref]);
+                maxX = Math.max(ax, ax + coords[ref]);
+                minY = Math.min(ay, ay + coords[ref + 1]);
+                maxY = Math.max(ay, ay + coords[ref + 1]);
+                pad += widths[i] * view.sizeScale / 2;
+            }
+            case DOT -> {
+                minX = maxX = ax;
+                minY = maxY = ay;
+                pad += widths[i] * view.sizeScale / 2;
+            }
+            case FILL, OUTLINE, POLYLINE -> {
+                int points = (int) coords[ref];
+                minX = minY = Double.POSITIVE_INFINITY;
+                maxX = maxY = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < points; k++) {
+                    double px = ax + coords[ref + 1 + 2 * k];
+                    double py = ay + coords[ref + 2 + 2 * k];
+                    minX = Math.min(minX, px);
+                    maxX = Math.max(maxX, px);
+                    minY = Math.min(minY, py);
+                    maxY = Math.max(maxY, py);
+                }
+                if (ops[i] != FILL) {
+                    pad += widths[i] * view.sizeScale / 2;
+                }
+            }
+            case TEXT -> {
+                TextRun run = texts.get(ref);
+                double size = run.font.getSize2D() * view.sizeScale;
+                double extent = (run.text.length() + 1) * size;
+                double sx = view.screenX(run.x);
+                double sy = view.screenY(run.y);
+                out[0] = sx - extent;
+                out[1] = sy - 2 * size;
+                out[2] = sx + extent;
+                out[3] = sy + size;
+                return;
+            }
+            case IMAGE -> {
+                ImageRun run = images.get(ref);
+                minX = maxX = run.x;
+                minY = maxY = run.y;
+                pad += Math.max(run.image.getWidth(), run.image.getHeight()) * view.sizeScale / 2;
+            }
+            default -> {
+                out[0] = out[1] = 0;
+                out[2] = out[3] = -1;
+                return;
+            }
+        }
+        out[0] = view.originX + minX * view.scaleX - pad;
+        out[1] = view.originY - maxY * view.scaleY - pad;
+        out[2] = view.originX + maxX * view.scaleX + pad;
+        out[3] = view.originY - minY * view.scaleY + pad;
+    }
+
+    /**
+     * Costruisce nel path indicato i punti del comando {@code i}.
+     * Con {@code lod} salta i vertici a meno di {@value #LOD_PIXELS} pixel
+     * dall'ultimo aggiunto, tranne l'ultimo.
+     */
+    private Path2D.Double buildPath(Path2D.Double path, int i, boolean close, TurtleView view, boolean lod) {
+        int ref = refs[i];
+        int points = (int) coords[ref];
+        double baseX = view.screenX(anchors[2 * i]);
+        double baseY = view.screenY(anchors[2 * i + 1]);
+        path.reset();
+        double lastX = 0;
+        double lastY = 0;
+        for (int k = 0; k < points; k++) {
+            double px = baseX + coords[ref + 1 + 2 * k] * view.scaleX;
+            double py = baseY - coords[ref + 2 + 2 * k] * view.scaleY;
+            if (k == 0) {
+                path.moveTo(px, py);
+            } else if (!lod || k == points - 1
+                    || (px - lastX) * (px - lastX) + (py - lastY) * (py - lastY) >= LOD_PIXELS * LOD_PIXELS) {
+                path.lineTo(px, py);
+            } else {
+                continue;
+            }
+            lastX = px;
+            lastY = py;
+        }
+        if (close) {
+            path.closePath();
+        }
+        return path;
+    }
+
+    /**
+     * Disegna un testo registrato rispettando l'allineamento originale.
+     */
+    private static void drawText(Graphics2D g, TextRun run, TurtleView view) {
+        Font font = view.sizeScale == 1.0 ? run.font : run.font.deriveFont((float) (run.font.getSize2D() * view.sizeScale));
+        g.setFont(font);
+        int textWidth = g.getFontMetrics().stringWidth(run.text);
+        double screenX = view.screenX(run.x);
+        double screenY = view.screenY(run.y);
+        switch (run.align.toLowerCase()) {
+            case "center" -> screenX -= textWidth / 2.0;
+            case "right" -> screenX -= textWidth;
+        }
+        g.drawString(run.text, (float) screenX, (float) screenY);
+    }
+
+    /**
+     * Disegna un'immagine registrata centrata nel suo punto, scalata come gli spessori.
+     */
+    private static void drawImage(Graphics2D g, ImageRun run, TurtleView view) {
+        int w = run.image.getWidth();
+        int h = run.image.getHeight();
+        double scale = view.sizeScale;
+        double screenX = view.screenX(run.x);
+        double screenY = view.screenY(run.y);
+        if (scale == 1.0) {
+            g.drawImage(run.image, (int) Math.round(screenX) - w / 2, (int) Math.round(screenY) - h / 2, null);
+        } else {
+            g.drawImage(run.image, (int) Math.round(screenX - w * scale / 2), (int) Math.round(screenY - h * scale / 2),
+                    (int) Math.round(w * scale), (int) Math.round(h * scale), null);
+        }
+    }
+
+    /**
+     * Copia {@code points} punti come scostamenti dal primo e restituisce
+     * l'indice dell'intestazione.
+     */
+    private int addPoints(double[] xy, int points) {
+        int header = reserveCoords(1 + 2 * points);
+        coords[header] = points;
+        for (int k = 0; k < 2 * points; k += 2) {
+            coords[header + 1 + k] = (float) (xy[k] - xy[0]);
+            coords[header + 2 + k] = (float) (xy[k + 1] - xy[1]);
+            extend(xy[k], xy[k + 1]);
+        }
+        return header;
+    }
+
+    /**
+     * Allarga l'estensione della lista fino a comprendere il punto indicato.
+     */
+    private void extend(double x, double y) {
+        extentMinX = Math.min(extentMinX, x);
+        extentMinY = Math.min(extentMinY, y);
+        extentMaxX = Math.max(extentMaxX, x);
+        extentMaxY = Math.max(extentMaxY, y);
+    }
+
+    /**
+     * Riserva {@code n} posizioni nell'array delle coordinate.
+     */
+    private int reserveCoords(int n) {
+        if (coordCount + n > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(coordCount + n, coords.length + (coords.length >> 1)));
+        }
+        int start = coordCount;
+        coordCount += n;
+        return start;
+    }
+
+    /**
+     * Aggiunge un comando agli array paralleli.
+     *
+     * @param ax la X del primo punto del comando
+     * @param ay la Y del primo punto del comando
+     */
+    private void addOp(byte op, int argb, double width, int ref, double ax, double ay) {
+        if (size == ops.length) {
+            int capacity = size + (size >> 1);
+            ops = Arrays.copyOf(ops, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+            anchors = Arrays.copyOf(anchors, 2 * capacity);
+        }
+        ops[size] = op;
+        colors[size] = argb;
+        widths[size] = (float) width;
+        refs[size] = ref;
+        anchors[2 * size] = ax;
+        anchors[2 * size + 1] = ay;
+        size++;
+    }
+}
@@ -0,0 +1,473 @@
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Registrazione dei frame di uno schermo in una GIF animata o in una sequenza di PNG.
+ *
+ * <p>Si avvia con {@link TurtleScreen#startRecording(Path)} e cattura un frame a
+ * ogni {@link TurtleCanvas#swapBuffers()}: i passi animati dei movimenti, i
+ * frame di {@code loop()}, gli aggiornamenti di {@code tracer()}. Il lavoro è
+ * diviso in una pipeline a tre stadi collegati da code limitate:</p>
+ * <ol>
+ *   <li>cattura, sul thread che presenta il frame: solo una copia dei pixel
+ *       in una delle poche immagini riutilizzate;</li>
+ *   <li>differenza e quantizzazione, su un thread dedicato: confronta il frame
+ *       con il precedente, scarta i frame identici e riduce la zona cambiata
+ *       alla tavolozza fissa, con i pixel invariati trasparenti;</li>
+ *   <li>codifica, su un altro thread: LZW della GIF o deflate dei PNG.</li>
+ * </ol>
+ *
+ * <p>Se la pipeline è indietro, il frame catturato viene scartato invece di
+ * rallentare il programma (vedi {@link #getDroppedFrames()}); la durata dei
+ * frame nella GIF segue comunque il tempo reale. La memoria usata è fissa e
+ * non dipende dalla durata della registrazione.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public final class FrameRecorder implements Closeable {
+
+    /** Immagini di cattura riutilizzate: oltre queste i frame vengono scartati */
+    private static final int CAPTURE_BUFFERS = 3;
+
+    /** Frame quantizzati in attesa di codifica */
+    private static final int ENCODE_QUEUE = 4;
+
+    /** Livelli della tavolozza fissa per rosso, verde e blu (6 x 7 x 6 = 252 colori) */
+    private static final int RED_LEVELS = 6;
+    private static final int GREEN_LEVELS = 7;
+    private static final int BLUE_LEVELS = 6;
+
+    /** Indice trasparente della tavolozza, usato per i pixel non cambiati */
+    private static final int TRANSPARENT = RED_LEVELS * GREEN_LEVELS * BLUE_LEVELS;
+
+    /** Durata dell'ultimo frame quando non ne segue un altro, in centesimi di secondo */
+    private static final int LAST_FRAME_DELAY = 10;
+
+    private static final IndexColorModel PALETTE = createPalette();
+    private static final int[] RED_INDEX = levels(RED_LEVELS, GREEN_LEVELS * BLUE_LEVELS);
+    private static final int[] GREEN_INDEX = levels(GREEN_LEVELS, BLUE_LEVELS);
+    private static final int[] BLUE_INDEX = levels(BLUE_LEVELS, 1);
+
+    /** Frame vuoto che chiude la pipeline */
+    private static final Frame END = new Frame(null, 0);
+
+    private final TurtleCanvas canvas;
+    private final Path target;
+    private final boolean gif;
+    private final int width;
+    private final int height;
+
+    private final BlockingQueue<BufferedImage> free = new ArrayBlockingQueue<>(CAPTURE_BUFFERS);
+    private final BlockingQueue<Frame> captured = new ArrayBlockingQueue<>(CAPTURE_BUFFERS + 1);
+    private final BlockingQueue<Frame> quantized = new ArrayBlockingQueue<>(ENCODE_QUEUE);
+    private final Thread quantizer;
+    private final Thread encoder;
+
+    /** true dopo {@link #close()}, che manda END e attende i thread una volta sola */
+    private volatile boolean closed = false;
+
+    /** true se la codifica è fallita: i frame successivi non vengono più catturati */
+    private volatile boolean failed = false;
+
+    private volatile IOException error;
+    private volatile int recordedFrames = 0;
+    private volatile int droppedFrames = 0;
+
+    /**
+     * Frame in transito nella pipeline.
+     * Dopo la quantizzazione contiene solo la zona cambiata, come indici della tavolozza.
+     */
+    private static final class Frame {
+        final BufferedImage image;
+        final long time;
+        byte[] indices;
+        int x;
+        int y;
+        int w;
+        int h;
+
+        Frame(BufferedImage image, long time) {
+            this.image = image;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Crea una registrazione e avvia i thread della pipeline.
+     *
+     * @param canvas il canvas da registrare
+     * @param target il file GIF, o la cartella della sequenza PNG
+     * @param gif true per una GIF animata, false per una sequenza di PNG
+     * @throws IOException se la cartella della sequenza non può essere creata
+     */
+    FrameRecorder(TurtleCanvas canvas, Path target, boolean gif) throws IOException {
+        this.canvas = canvas;
+        this.target = target;
+        this.gif = gif;
+        this.width = canvas.getPreferredSize().width;
+        this.height = canvas.getPreferredSize().height;
+        if (!gif) {
+            Files.createDirectories(target);
+        }
+        for (int i = 0; i < CAPTURE_BUFFERS; i++) {
+            free.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+        }
+        quantizer = new Thread(this::quantizeLoop, "turtle-recorder-quantize");
+        encoder = new Thread(this::encodeLoop, "turtle-recorder-encode");
+        quantizer.setDaemon(true);
+        encoder.setDaemon(true);
+        quantizer.start();
+        encoder.start();
+    }
+
+    /**
+     * Cattura il frame corrente del canvas. Chiamato dal canvas a ogni swap.
+     * Se tutte le immagini di cattura sono in uso il frame viene scartato.
+     */
+    synchronized void capture() {
+        if (closed || failed) {
+            return;
+        }
+        BufferedImage image = free.poll();
+        if (image == null) {
+            droppedFrames++;
+            return;
+        }
+        canvas.snapshotInto(image);
+        captured.add(new Frame(image, System.nanoTime()));
+    }
+
+    /**
+     * Restituisce il numero di frame diversi dal precedente scritti finora.
+     *
+     * @return i frame registrati
+     */
+    public int getRecordedFrames() {
+        return recordedFrames;
+    }
+
+    /**
+     * Restituisce il numero di frame scartati perché la pipeline era indietro.
+     *
+     * @return i frame scartati
+     */
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Ferma la registrazione, attende che la pipeline scriva i frame catturati
+     * e chiude il file. La pipeline viene chiusa anche se la scrittura è
+     * fallita prima, così i suoi thread terminano sempre.
+     *
+     * @throws IOException se la scrittura di un frame è fallita
+     */
+    @Override
+    public void close() throws IOException {
+        canvas.setRecorder(null);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            captured.add(END);
+        }
+        try {
+            quantizer.join();
+            encoder.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Secondo stadio: differenza con il frame precedente e quantizzazione.
+     */
+    private void quantizeLoop() {
+        int[] previous = null;
+        try {
+            while (true) {
+                Frame frame = captured.take();
+                if (frame == END) {
+                    break;
+                }
+                int[] pixels = ((DataBufferInt) frame.image.getRaster().getDataBuffer()).getData();
+                if (previous == null) {
+                    previous = new int[pixels.length];
+                    quantize(frame, pixels, null, 0, 0, width, height);
+                } else if (!diff(frame, pixels, previous)) {
+                    free.add(frame.image);
+                    continue;
+                }
+                System.arraycopy(pixels, 0, previous, 0, pixels.length);
+                if (gif) {
+                    free.add(frame.image);
+                }
+                quantized.put(frame);
+            }
+            quantized.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Trova il rettangolo dei pixel cambiati e lo quantizza.
+     *
+     * @return false se il frame è identico al precedente
+     */
+    private boolean diff(Frame frame, int[] pixels, int[] previous) {
+        int x0 = width;
+        int y0 = height;
+        int x1 = -1;
+        int y1 = -1;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int first = -1;
+            for (int x = 0; x < width; x++) {
+                if (pixels[row + x] != previous[row + x]) {
+                    first = x;
+                    break;
+                }
+            }
+            if (first < 0) {
+                continue;
+            }
+            int last = width - 1;
+            while (pixels[row + last] == previous[row + last]) {
+                last--;
+            }
+            x0 = Math.min(x0, first);
+            x1 = Math.max(x1, last);
+            y0 = Math.min(y0, y);
+            y1 = y;
+        }
+        if (x1 < 0) {
+            return false;
+        }
+        quantize(frame, pixels, previous, x0, y0, x1 + 1, y1 + 1);
+        return true;
+    }
+
+    /**
+     * Riduce alla tavolozza la zona indicata; con {@code previous} i pixel
+     * invariati diventano trasparenti, così la GIF mostra il frame precedente.
+     */
+    private void quantize(Frame frame, int[] pixels, int[] previous, int x0, int y0, int x1, int y1) {
+        frame.x = x0;
+        frame.y = y0;
+        frame.w = x1 - x0;
+        frame.h = y1 - y0;
+        if (!gif) {
+            return;
+        }
+        byte[] indices = new byte[frame.w * frame.h];
+        int i = 0;
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            for (int x = x0; x < x1; x++) {
+                int argb = pixels[row + x];
+                if (previous != null && argb == previous[row + x]) {
+                    indices[i++] = (byte) TRANSPARENT;
+                } else {
+                    indices[i++] = (byte) (RED_INDEX[(argb >> 16) & 0xFF]
+                            + GREEN_INDEX[(argb >> 8) & 0xFF] + BLUE_INDEX[argb & 0xFF]);
+                }
+            }
+        }
+        frame.indices = indices;
+    }
+
+    /**
+     * Terzo stadio: codifica dei frame nella GIF o nei file PNG.
+     */
+    private void encodeLoop() {
+        try {
+            if (gif) {
+                encodeGif();
+            } else {
+                encodePng();
+            }
+        } catch (IOException e) {
+            error = e;
+            failed = true;
+            drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Scrive la GIF: ogni frame viene scritto quando arriva il successivo,
+     * che ne determina la durata.
+     */
+    private void encodeGif() throws IOException, InterruptedException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+        if (!writers.hasNext()) {
+            throw new IOException("Nessun encoder GIF disponibile");
+        }
+        ImageWriter writer = writers.next();
+        Files.deleteIfExists(target);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+            Frame pending = null;
+            while (true) {
+                Frame frame = quantized.take();
+                if (frame == END) {
+                    break;
+                }
+                if (pending != null) {
+                    writeGifFrame(writer, pending, centiseconds(frame.time - pending.time));
+                }
+                pending = frame;
+            }
+            if (pending != null) {
+                writeGifFrame(writer, pending, LAST_FRAME_DELAY);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private void writeGifFrame(ImageWriter writer, Frame frame, int delay) throws IOException {
+        DataBufferByte data = new DataBufferByte(frame.indices, frame.indices.length);
+        BufferedImage image = new BufferedImage(PALETTE,
+                Raster.createInterleavedRaster(data, frame.w, frame.h, frame.w, 1,
+                        new int[]{0}, null), false, null);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode descriptor = child(root, "ImageDescriptor");
+        descriptor.setAttribute("imageLeftPosition", Integer.toString(frame.x));
+        descriptor.setAttribute("imageTopPosition", Integer.toString(frame.y));
+        descriptor.setAttribute("imageWidth", Integer.toString(frame.w));
+        descriptor.setAttribute("imageHeight", Integer.toString(frame.h));
+        descriptor.setAttribute("interlaceFlag", "FALSE");
+
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "doNotDispose");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "TRUE");
+        control.setAttribute("transparentColorIndex", Integer.toString(TRANSPARENT));
+        control.setAttribute("delayTime", Integer.toString(Math.max(1, delay)));
+
+        if (recordedFrames == 0) {
+            IIOMetadataNode extensions = child(root, "ApplicationExtensions");
+            IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+            loop.setAttribute("applicationID", "NETSCAPE");
+            loop.setAttribute("authenticationCode", "2.0");
+            loop.setUserObject(new byte[]{1, 0, 0});
+            extensions.appendChild(loop);
+        }
+        metadata.setFromTree(format, root);
+        writer.writeToSequence(new IIOImage(image, null, metadata), param);
+        recordedFrames++;
+    }
+
+    /**
+     * Scrive ogni frame cambiato come PNG completo, numerato con l'ordine di cattura.
+     */
+    private void encodePng() throws IOException, InterruptedException {
+        while (true) {
+            Frame frame = quantized.take();
+            if (frame == END) {
+                break;
+            }
+            try {
+                Path file = target.resolve(String.format("frame-%06d.png", recordedFrames));
+                if (!ImageIO.write(frame.image, "png", file.toFile())) {
+                    throw new IOException("Nessun encoder PNG disponibile");
+                }
+                recordedFrames++;
+            } finally {
+                free.add(frame.image);
+            }
+        }
+    }
+
+    /**
+     * Svuota la pipeline dopo un errore fino all'END mandato da {@link #close()},
+     * così il quantizzatore non resta bloccato e i thread possono terminare.
+     */
+    private void drain() {
+        try {
+            Frame frame;
+            do {
+                frame = quantized.take();
+                if (!gif && frame.image != null) {
+                    free.add(frame.image);
+                }
+            } while (frame != END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static IIOMetadataNode child(IIOMetadataNode parent, String name) {
+        for (int i = 0; i < parent.getLength(); i++) {
+            if (parent.item(i).getNodeName().equals(name)) {
+                return (IIOMetadataNode) parent.item(i);
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(name);
+        parent.appendChild(node);
+        return node;
+    }
+
+    private static int centiseconds(long nanos) {
+        return (int) Math.min(65535, Math.round(nanos / 1e7));
+    }
+
+    /**
+     * Crea la tavolozza fissa: 252 colori uniformi più l'indice trasparente.
+     */
+    private static IndexColorModel createPalette() {
+        int size = TRANSPARENT + 1;
+        byte[] r = new byte[size];
+        byte[] g = new byte[size];
+        byte[] b = new byte[size];
+        for (int i = 0; i < TRANSPARENT; i++) {
+            r[i] = (byte) (i / (GREEN_LEVELS * BLUE_LEVELS) * 255 / (RED_LEVELS - 1));
+            g[i] = (byte) (i / BLUE_LEVELS % GREEN_LEVELS * 255 / (GREEN_LEVELS - 1));
+            b[i] = (byte) (i % BLUE_LEVELS * 255 / (BLUE_LEVELS - 1));
+        }
+        return new IndexColorModel(8, size, r, g, b, TRANSPARENT);
+    }
+
+    /**
+     * Tabella dal valore 0-255 di un canale al suo contributo all'indice della tavolozza.
+     */
+    private static int[] levels(int levels, int weight) {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            table[v] = (v * (levels - 1) + 127) / 255 * weight;
+        }
+        return table;
+    }
+}
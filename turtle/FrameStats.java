@@ -0,0 +1,144 @@
+/**
+ * Statistiche del loop di animazione di {@link TurtleScreen#run()}.
+ *
+ * <p>Misura l'intervallo tra l'inizio di due frame consecutivi: frame al
+ * secondo ottenuti (sull'ultimo secondo), durata media, jitter (deviazione
+ * standard della durata) e durata massima, oltre ai frame che hanno mancato la
+ * scadenza e agli aggiornamenti saltati dal timestep fisso per recuperare.
+ * La registrazione non alloca memoria ed è pensata per essere chiamata a ogni frame.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public final class FrameStats {
+
+    /** Durata della finestra su cui vengono contati i frame al secondo */
+    private static final long FPS_WINDOW_NANOS = 1_000_000_000L;
+
+    private long frames;
+    private double meanNanos;
+    private double m2;
+    private long maxNanos;
+    private long missedDeadlines;
+    private long skippedUpdates;
+
+    private long windowNanos;
+    private int windowFrames;
+    private double fps;
+
+    /**
+     * Azzera tutte le statistiche.
+     */
+    public synchronized void reset() {
+        frames = 0;
+        meanNanos = 0;
+        m2 = 0;
+        maxNanos = 0;
+        missedDeadlines = 0;
+        skippedUpdates = 0;
+        windowNanos = 0;
+        windowFrames = 0;
+        fps = 0;
+    }
+
+    /**
+     * Registra la durata di un frame, con l'algoritmo di Welford per la varianza.
+     */
+    synchronized void recordFrame(long nanos) {
+        frames++;
+        double delta = nanos - meanNanos;
+        meanNanos += delta / frames;
+        m2 += delta * (nanos - meanNanos);
+        maxNanos = Math.max(maxNanos, nanos);
+
+        windowNanos += nanos;
+        windowFrames++;
+        if (windowNanos >= FPS_WINDOW_NANOS) {
+            fps = windowFrames * 1e9 / windowNanos;
+            windowNanos = 0;
+            windowFrames = 0;
+        }
+    }
+
+    synchronized void recordMissedDeadline() {
+        missedDeadlines++;
+    }
+
+    synchronized void recordSkippedUpdates(int updates) {
+        skippedUpdates += updates;
+    }
+
+    /**
+     * Restituisce il numero di frame misurati.
+     *
+     * @return i frame dall'ultimo azzeramento
+     */
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Restituisce i frame al secondo ottenuti nell'ultimo secondo completo.
+     * Prima che sia passato un secondo usa la durata media dei frame.
+     *
+     * @return i frame al secondo
+     */
+    public synchronized double getFps() {
+        if (fps == 0 && meanNanos > 0) {
+            return 1e9 / meanNanos;
+        }
+        return fps;
+    }
+
+    /**
+     * Restituisce la durata media di un frame.
+     *
+     * @return la durata media in millisecondi
+     */
+    public synchronized double getAverageFrameTime() {
+        return meanNanos / 1e6;
+    }
+
+    /**
+     * Restituisce il jitter, cioè la deviazione standard della durata dei frame.
+     *
+     * @return il jitter in millisecondi
+     */
+    public synchronized double getJitter() {
+        return frames > 1 ? Math.sqrt(m2 / (frames - 1)) / 1e6 : 0;
+    }
+
+    /**
+     * Restituisce la durata del frame più lungo.
+     *
+     * @return la durata massima in millisecondi
+     */
+    public synchronized double getMaxFrameTime() {
+        return maxNanos / 1e6;
+    }
+
+    /**
+     * Restituisce il numero di frame terminati dopo la loro scadenza.
+     *
+     * @return le scadenze mancate
+     */
+    public synchronized long getMissedDeadlines() {
+        return missedDeadlines;
+    }
+
+    /**
+     * Restituisce il numero di aggiornamenti eseguiti senza presentare il frame,
+     * per recuperare il ritardo con il timestep fisso.
+     *
+     * @return gli aggiornamenti saltati
+     */
+    public synchronized long getSkippedUpdates() {
+        return skippedUpdates;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%.1f FPS, %.2f ms (jitter %.2f ms, max %.2f ms), %d scadenze mancate, %d aggiornamenti saltati",
+                getFps(), getAverageFrameTime(), getJitter(), getMaxFrameTime(), missedDeadlines, skippedUpdates);
+    }
+}
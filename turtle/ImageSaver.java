@@ -0,0 +1,145 @@
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Codifica delle istantanee del canvas su file, in background.
+ *
+ * <p>Il thread che chiama {@link TurtleScreen#saveImage(Path)} fa solo la copia
+ * dei pixel; la compressione e la scrittura avvengono su un piccolo pool di
+ * thread daemon, condiviso da tutti gli schermi.</p>
+ *
+ * <p>Formati supportati:</p>
+ * <ul>
+ *   <li>{@code png}: con livello di compressione da 0 (nessuna, il più veloce) a 9</li>
+ *   <li>{@code bmp}: 24 bit, senza trasparenza</li>
+ *   <li>{@code raw}: i pixel ARGB come interi big-endian, riga per riga, senza intestazione</li>
+ * </ul>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class ImageSaver {
+
+    /** Livello di compressione PNG predefinito, lo stesso del writer PNG del JDK */
+    static final int DEFAULT_PNG_COMPRESSION = 4;
+
+    /** Pool condiviso per la codifica, creato al primo salvataggio */
+    private static ExecutorService encoder;
+
+    private ImageSaver() {
+    }
+
+    /**
+     * Codifica un'immagine in background.
+     *
+     * @param image l'istantanea, che non deve più essere modificata
+     * @param file il file di destinazione
+     * @param format "png", "bmp" o "raw"
+     * @param pngCompression il livello di compressione PNG, da 0 a 9
+     * @return un future completato con il file scritto
+     */
+    static CompletableFuture<Path> saveAsync(BufferedImage image, Path file, String format, int pngCompression) {
+        String f = format.toLowerCase();
+        if (!f.equals("png") && !f.equals("bmp") && !f.equals("raw")) {
+            throw new IllegalArgumentException("Formato non supportato: " + format);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                switch (f) {
+                    case "png" -> writePng(image, file, pngCompression);
+                    case "bmp" -> writeBmp(image, file);
+                    default -> writeRaw(image, file);
+                }
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, encoder());
+    }
+
+    /**
+     * Ricava il formato dall'estensione del file, PNG se non è riconosciuta.
+     */
+    static String formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".bmp")) {
+            return "bmp";
+        }
+        if (name.endsWith(".raw") || name.endsWith(".argb")) {
+            return "raw";
+        }
+        return "png";
+    }
+
+    private static synchronized ExecutorService encoder() {
+        if (encoder == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            encoder = TurtleThreads.newDaemonPool("turtle-image", threads);
+        }
+        return encoder;
+    }
+
+    private static void writePng(BufferedImage image, Path file, int level) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+        if (!writers.hasNext()) {
+            throw new IOException("Nessun encoder PNG disponibile");
+        }
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (param.canWriteCompressed()) {
+            // Il writer PNG del JDK usa il livello deflate 9 - round(9 * quality)
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(1f - Math.max(0, Math.min(9, level)) / 9f);
+        }
+        Files.deleteIfExists(file);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static void writeBmp(BufferedImage image, Path file) throws IOException {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        if (!ImageIO.write(rgb, "bmp", file.toFile())) {
+            throw new IOException("Nessun encoder BMP disponibile");
+        }
+    }
+
+    private static void writeRaw(BufferedImage image, Path file) throws IOException {
+        int width = image.getWidth();
+        int[] row = new int[width];
+        byte[] bytes = new byte[width * 4];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    int argb = row[x];
+                    bytes[4 * x] = (byte) (argb >>> 24);
+                    bytes[4 * x + 1] = (byte) (argb >>> 16);
+                    bytes[4 * x + 2] = (byte) (argb >>> 8);
+                    bytes[4 * x + 3] = (byte) argb;
+                }
+                out.write(bytes);
+            }
+        }
+    }
+}
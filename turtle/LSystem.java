@@ -0,0 +1,263 @@
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Sistema di Lindenmayer disegnato da una tartaruga.
+ *
+ * <p>Un L-system parte da un assioma e a ogni generazione sostituisce ogni
+ * simbolo che ha una regola con il suo rimpiazzo. Le generazioni non vengono
+ * mai scritte in una stringa: i simboli sono prodotti uno alla volta da una
+ * pila esplicita con un livello per generazione, quindi la memoria usata dipende
+ * solo dal numero di generazioni e non dalla lunghezza (esponenziale) del risultato.</p>
+ *
+ * <p>Simboli interpretati da {@link #draw(Turtle, int)}:</p>
+ * <ul>
+ *   <li>{@code F}, {@code G}: avanza disegnando</li>
+ *   <li>{@code f}: avanza senza disegnare</li>
+ *   <li>{@code +} / {@code -}: ruota a sinistra / a destra dell'angolo</li>
+ *   <li>{@code |}: si gira di 180 gradi</li>
+ *   <li>{@code [} / {@code ]}: salva / ripristina lo stato della tartaruga
+ *       (vedi {@link Turtle#pushState()})</li>
+ *   <li>gli altri simboli servono solo alle regole e vengono ignorati</li>
+ * </ul>
+ *
+ * <p>Esempio, la curva del drago:</p>
+ * <pre>{@code
+ * LSystem drago = new LSystem("FX")
+ *         .rule('X', "X+YF+")
+ *         .rule('Y', "-FX-Y")
+ *         .angle(90)
+ *         .step(4);
+ * drago.draw(t, 12);
+ * }</pre>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public final class LSystem {
+
+    /** I simboli con una regola devono essere caratteri ASCII */
+    private static final int ALPHABET = 128;
+
+    private final char[] axiom;
+    private final char[][] rules = new char[ALPHABET][];
+    private double angle = 90;
+    private double step = 10;
+    private double stepScale = 1;
+
+    /**
+     * Crea un L-system con l'assioma indicato e nessuna regola.
+     *
+     * @param axiom la stringa di partenza (generazione 0)
+     */
+    public LSystem(String axiom) {
+        this.axiom = axiom.toCharArray();
+    }
+
+    /**
+     * Aggiunge o sostituisce la regola di un simbolo.
+     *
+     * @param symbol il simbolo da riscrivere, un carattere ASCII
+     * @param replacement il rimpiazzo, anche vuoto
+     * @return questo L-system, per concatenare le chiamate
+     */
+    public LSystem rule(char symbol, String replacement) {
+        if (symbol >= ALPHABET) {
+            throw new IllegalArgumentException("Simbolo non ASCII: " + symbol);
+        }
+        rules[symbol] = replacement.toCharArray();
+        return this;
+    }
+
+    /**
+     * Imposta l'angolo delle rotazioni {@code +} e {@code -}.
+     *
+     * @param degrees l'angolo in gradi (default 90)
+     * @return questo L-system
+     */
+    public LSystem angle(double degrees) {
+        this.angle = degrees;
+        return this;
+    }
+
+    /**
+     * Imposta la lunghezza di un passo {@code F} alla generazione 0.
+     *
+     * @param length la lunghezza in pixel (default 10)
+     * @return questo L-system
+     */
+    public LSystem step(double length) {
+        this.step = length;
+        return this;
+    }
+
+    /**
+     * Imposta il fattore che accorcia il passo a ogni generazione, così il
+     * disegno mantiene circa la stessa dimensione: alla generazione {@code n}
+     * il passo è {@code step * factor^n}. Per esempio 0.5 per una regola
+     * {@code F -> FF}.
+     *
+     * @param factor il fattore per generazione (default 1)
+     * @return questo L-system
+     */
+    public LSystem stepScale(double factor) {
+        this.stepScale = factor;
+        return this;
+    }
+
+    /**
+     * Restituisce i simboli di una generazione, prodotti uno alla volta.
+     *
+     * @param generations il numero di riscritture a partire dall'assioma
+     * @return un iteratore sui simboli, come caratteri
+     */
+    public PrimitiveIterator.OfInt expand(int generations) {
+        Expander symbols = new Expander(generations);
+        return new PrimitiveIterator.OfInt() {
+            private int next = symbols.next();
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                int symbol = next;
+                next = symbols.next();
+                return symbol;
+            }
+        };
+    }
+
+    /**
+     * Disegna una generazione con la tartaruga, a partire dal suo stato corrente.
+     *
+     * <p>I passi e le rotazioni consecutive vengono sommati e passati alla
+     * tartaruga come un solo comando: una regola come {@code F -> FF} non
+     * moltiplica le chiamate a {@link Turtle#forward(double)}. Alla fine la
+     * penna torna alzata o abbassata come all'inizio.</p>
+     *
+     * @param turtle la tartaruga che disegna
+     * @param generations il numero di riscritture a partire dall'assioma
+     */
+    public void draw(Turtle turtle, int generations) {
+        Expander symbols = new Expander(generations);
+        double length = step * Math.pow(stepScale, generations);
+        boolean wasDown = turtle.isDown();
+
+        // Comando in sospeso: un tratto (disegnato o no) o una rotazione
+        double distance = 0;
+        boolean drawing = false;
+        double turn = 0;
+
+        for (int c = symbols.next(); c >= 0; c = symbols.next()) {
+            switch (c) {
+                case 'F', 'G', 'f' -> {
+                    boolean draws = c != 'f';
+                    if (turn != 0) {
+                        turtle.left(turn);
+                        turn = 0;
+                    }
+                    if (distance != 0 && draws != drawing) {
+                        move(turtle, distance, drawing);
+                        distance = 0;
+                    }
+                    drawing = draws;
+                    distance += length;
+                }
+                case '+', '-', '|' -> {
+                    if (distance != 0) {
+                        move(turtle, distance, drawing);
+                        distance = 0;
+                    }
+                    turn += c == '+' ? angle : c == '-' ? -angle : 180;
+                }
+                case '[', ']' -> {
+                    if (distance != 0) {
+                        move(turtle, distance, drawing);
+                        distance = 0;
+                    }
+                    if (turn != 0) {
+                        turtle.left(turn);
+                        turn = 0;
+                    }
+                    if (c == '[') {
+                        turtle.pushState();
+                    } else {
+                        turtle.popState();
+                    }
+                }
+                default -> { }
+            }
+        }
+        if (distance != 0) {
+            move(turtle, distance, drawing);
+        }
+        if (turn != 0) {
+            turtle.left(turn);
+        }
+        if (wasDown) {
+            turtle.penDown();
+        } else {
+            turtle.penUp();
+        }
+    }
+
+    private static void move(Turtle turtle, double distance, boolean drawing) {
+        if (drawing) {
+            turtle.penDown();
+        } else {
+            turtle.penUp();
+        }
+        turtle.forward(distance);
+    }
+
+    /**
+     * Espansione iterativa: il livello {@code k} della pila è il testo della
+     * generazione {@code k} che si sta leggendo (l'assioma o il rimpiazzo di
+     * un simbolo), con la posizione del prossimo carattere.
+     */
+    private final class Expander {
+        private final int generations;
+        private final char[][] text;
+        private final int[] position;
+        private int top;
+
+        Expander(int generations) {
+            if (generations < 0) {
+                throw new IllegalArgumentException("Numero di generazioni non valido: " + generations);
+            }
+            this.generations = generations;
+            this.text = new char[generations + 1][];
+            this.position = new int[generations + 1];
+            text[0] = axiom;
+        }
+
+        /**
+         * @return il prossimo simbolo della generazione finale, -1 alla fine
+         */
+        int next() {
+            while (top >= 0) {
+                char[] current = text[top];
+                if (position[top] == current.length) {
+                    top--;
+                    continue;
+                }
+                char c = current[position[top]++];
+                char[] replacement = c < ALPHABET ? rules[c] : null;
+                if (replacement != null && top < generations) {
+                    top++;
+                    text[top] = replacement;
+                    position[top] = 0;
+                    continue;
+                }
+                return c;
+            }
+            return -1;
+        }
+    }
+}
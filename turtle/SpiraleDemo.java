@@ -25,9 +25,8 @@ public class SpiraleDemo extends TurtleScreen {
         for (int i = 0; i < iterations; i++) {
             // Calcola un colore diverso per ogni segmento (arcobaleno)
             float hue = (float) i / iterations;  // Valore tra 0 e 1
-            Color color = Color.getHSBColor(hue, 1.0f, 1.0f);  // Crea colore HSB (Cerca come funziona HSB rispetto a RGB)
+            t.setPenColorHSB(hue, 1.0f, 1.0f);  // Colore HSB (Cerca come funziona HSB rispetto a RGB)
 
-            t.setPenColor(color);   // Imposta il colore della penna
             t.forward(i * 0.5);     // Avanza di una distanza crescente (crea la spirale)
             t.left(59);             // Ruota a sinistra di 59 gradi
         }
@@ -0,0 +1,358 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Base64;
+
+/**
+ * Esportatore SVG che scrive il disegno di uno schermo man mano che viene eseguito.
+ *
+ * <p>Si ottiene con {@link TurtleScreen#startSvgExport(Writer)}: riceve i comandi
+ * dalle display list del canvas (vedi {@link DisplayList.Listener}) e li scrive
+ * subito, senza costruire un DOM. I segmenti consecutivi con la stessa penna
+ * vengono uniti in un unico elemento {@code <path>}; in memoria restano solo la
+ * penna corrente, l'ultimo punto e un piccolo buffer di testo, quindi anche
+ * disegni con decine di milioni di segmenti si esportano in memoria costante
+ * (anche con la display list disabilitata).</p>
+ *
+ * <p>Le display list registrano coordinate turtle; l'esportatore le converte
+ * in pixel con la vista del canvas all'inizio dell'esportazione (vedi
+ * {@link TurtleView}), quindi il documento mostra ciò che mostrava il canvas
+ * anche dopo {@code setWorldCoordinates}, e uno zoom successivo non lo cambia.
+ * Spessori, diametri dei punti, font e immagini sono in pixel come sul canvas.
+ * Gli elementi sono scritti nell'ordine di disegno, indipendentemente dal livello.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public final class SvgExporter implements DisplayList.Listener, Closeable {
+
+    /** Oltre questa dimensione il buffer di testo viene scritto sul Writer */
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    /** Numero massimo di segmenti in un singolo elemento path */
+    private static final int MAX_PATH_SEGMENTS = 10000;
+
+    private final TurtleCanvas canvas;
+    private final TurtleView view;
+    private final Writer out;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 256);
+    private IOException error;
+    private boolean closed = false;
+
+    // Elemento path aperto: penna e ultimo punto scritto
+    private boolean pathOpen = false;
+    private int pathArgb;
+    private double pathWidth;
+    private double lastX;
+    private double lastY;
+    private int pathSegments;
+
+    /**
+     * Crea un esportatore e scrive l'intestazione del documento.
+     *
+     * @param canvas il canvas esportato, di cui usa dimensioni e sfondo
+     * @param out il Writer di destinazione, chiuso da {@link #close()}
+     */
+    SvgExporter(TurtleCanvas canvas, Writer out) {
+        this.canvas = canvas;
+        this.view = canvas.getView();
+        this.out = out;
+        int w = canvas.getPreferredSize().width;
+        int h = canvas.getPreferredSize().height;
+        buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        buffer.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(w)
+                .append("\" height=\"").append(h).append("\" viewBox=\"0 0 ")
+                .append(w).append(' ').append(h).append("\">\n");
+        buffer.append("<rect width=\"").append(w).append("\" height=\"").append(h).append('"');
+        paint("fill", canvas.getBackgroundColor().getRGB());
+        buffer.append("/>\n");
+        buffer.append("<g fill=\"none\" stroke-linecap=\"round\" stroke-linejoin=\"round\">\n");
+        flushIfNeeded();
+    }
+
+    @Override
+    public synchronized void line(double x1, double y1, double x2, double y2, int argb, double width) {
+        moveTo(x1, y1, argb, width);
+        lineTo(x2, y2);
+        flushIfNeeded();
+    }
+
+    @Override
+    public synchronized void polyline(double[] xy, int points, int argb, double width) {
+        if (points < 2) {
+            return;
+        }
+        moveTo(xy[0], xy[1], argb, width);
+        for (int k = 1; k < points; k++) {
+            lineTo(xy[2 * k], xy[2 * k + 1]);
+            if (pathSegments >= MAX_PATH_SEGMENTS && k + 1 < points) {
+                closePath();
+                moveTo(xy[2 * k], xy[2 * k + 1], argb, width);
+            }
+        }
+        flushIfNeeded();
+    }
+
+    @Override
+    public synchronized void dot(double x, double y, double size, int argb) {
+        closePath();
+        buffer.append("<circle cx=\"");
+        number(view.screenX(x));
+        buffer.append("\" cy=\"");
+        number(view.screenY(y));
+        buffer.append("\" r=\"");
+        number(size * view.sizeScale / 2);
+        buffer.append('"');
+        paint("fill", argb);
+        buffer.append("/>\n");
+        flushIfNeeded();
+    }
+
+    @Override
+    public synchronized void fill(Path2D shape, int fillArgb, boolean outline, int penArgb, double width) {
+        closePath();
+        buffer.append("<path d=\"");
+        double[] seg = new double[6];
+        for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            int type = it.currentSegment(seg);
+            if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+                buffer.append(type == PathIterator.SEG_MOVETO ? 'M' : 'L');
+                point(seg[0], seg[1]);
+            } else if (type == PathIterator.SEG_CLOSE) {
+                buffer.append('Z');
+            }
+        }
+        buffer.append('"');
+        paint("fill", fillArgb);
+        if (outline) {
+            paint("stroke", penArgb);
+            strokeWidth(width);
+        }
+        buffer.append("/>\n");
+        flushIfNeeded();
+    }
+
+    @Override
+    public synchronized void text(double x, double y, String text, Font font, String align, int argb) {
+        closePath();
+        buffer.append("<text x=\"");
+        number(view.screenX(x));
+        buffer.append("\" y=\"");
+        number(view.screenY(y));
+        buffer.append("\" stroke=\"none\"");
+        paint("fill", argb);
+        buffer.append(" font-family=\"");
+        escape(font.getFamily());
+        buffer.append("\" font-size=\"");
+        number(font.getSize2D() * view.sizeScale);
+        buffer.append('"');
+        if (font.isBold()) {
+            buffer.append(" font-weight=\"bold\"");
+        }
+        if (font.isItalic()) {
+            buffer.append(" font-style=\"italic\"");
+        }
+        switch (align.toLowerCase()) {
+            case "center" -> buffer.append(" text-anchor=\"middle\"");
+            case "right" -> buffer.append(" text-anchor=\"end\"");
+            default -> { }
+        }
+        buffer.append('>');
+        escape(text);
+        buffer.append("</text>\n");
+        flushIfNeeded();
+    }
+
+    /**
+     * Scrive un'immagine incorporata come PNG in base64, centrata nel punto.
+     */
+    @Override
+    public synchronized void image(double x, double y, BufferedImage image) {
+        closePath();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", png);
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+            return;
+        }
+        double w = image.getWidth() * view.sizeScale;
+        double h = image.getHeight() * view.sizeScale;
+        buffer.append("<image x=\"");
+        number(view.screenX(x) - w / 2);
+        buffer.append("\" y=\"");
+        number(view.screenY(y) - h / 2);
+        buffer.append("\" width=\"");
+        number(w);
+        buffer.append("\" height=\"");
+        number(h);
+        buffer.append("\" href=\"data:image/png;base64,").append(Base64.getEncoder().encodeToString(png.toByteArray()))
+                .append("\"/>\n");
+        flushIfNeeded();
+    }
+
+    /**
+     * Termina il documento e chiude il Writer.
+     * Le spezzate ancora in costruzione delle tartarughe vengono prima scritte.
+     *
+     * @throws IOException se una scrittura è fallita durante l'esportazione
+     */
+    @Override
+    public void close() throws IOException {
+        canvas.flushPaths();
+        canvas.removeDrawingListener(this);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closePath();
+            buffer.append("</g>\n</svg>\n");
+            flushBuffer();
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Inizia un tratto: continua il path aperto se la penna è la stessa.
+     */
+    private void moveTo(double x, double y, int argb, double width) {
+        if (pathOpen && argb == pathArgb && width == pathWidth) {
+            if (x != lastX || y != lastY) {
+                buffer.append('M');
+                point(x, y);
+            }
+        } else {
+            closePath();
+            buffer.append("<path");
+            paint("stroke", argb);
+            strokeWidth(width);
+            buffer.append(" d=\"M");
+            point(x, y);
+            pathOpen = true;
+            pathArgb = argb;
+            pathWidth = width;
+            pathSegments = 0;
+        }
+        lastX = x;
+        lastY = y;
+    }
+
+    private void lineTo(double x, double y) {
+        buffer.append('L');
+        point(x, y);
+        lastX = x;
+        lastY = y;
+        pathSegments++;
+    }
+
+    private void closePath() {
+        if (pathOpen) {
+            buffer.append("\"/>\n");
+            pathOpen = false;
+        }
+    }
+
+    /**
+     * Scrive un attributo di colore, con l'opacità solo se il colore è trasparente.
+     */
+    private void paint(String attribute, int argb) {
+        buffer.append(' ').append(attribute).append("=\"#");
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            buffer.append(Character.forDigit((argb >> shift) & 0xF, 16));
+        }
+        buffer.append('"');
+        int alpha = argb >>> 24;
+        if (alpha != 255) {
+            buffer.append(' ').append(attribute).append("-opacity=\"");
+            number(alpha / 255.0);
+            buffer.append('"');
+        }
+    }
+
+    private void strokeWidth(double width) {
+        buffer.append(" stroke-width=\"");
+        number(width * view.sizeScale);
+        buffer.append('"');
+    }
+
+    /**
+     * Scrive un punto turtle convertito in pixel del documento.
+     */
+    private void point(double x, double y) {
+        number(view.screenX(x));
+        buffer.append(' ');
+        number(view.screenY(y));
+    }
+
+    /**
+     * Scrive un numero con al massimo due decimali, senza allocare.
+     */
+    private void number(double v) {
+        long r = Math.round(v * 100);
+        if (r < 0) {
+            buffer.append('-');
+            r = -r;
+        }
+        buffer.append(r / 100);
+        int frac = (int) (r % 100);
+        if (frac != 0) {
+            buffer.append('.').append((char) ('0' + frac / 10));
+            if (frac % 10 != 0) {
+                buffer.append((char) ('0' + frac % 10));
+            }
+        }
+    }
+
+    private void escape(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> buffer.append("&amp;");
+                case '<' -> buffer.append("&lt;");
+                case '>' -> buffer.append("&gt;");
+                case '"' -> buffer.append("&quot;");
+                default -> buffer.append(c);
+            }
+        }
+    }
+
+    private void flushIfNeeded() {
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Scrive il buffer sul Writer. Dopo il primo errore le scritture vengono
+     * ignorate e l'errore viene rilanciato da {@link #close()}, così un disco
+     * pieno non interrompe il programma della tartaruga a metà disegno.
+     */
+    private void flushBuffer() {
+        if (error == null) {
+            try {
+                out.append(buffer);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        buffer.setLength(0);
+    }
+}
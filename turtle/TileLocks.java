@@ -0,0 +1,97 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock a strisce sulle tile del back buffer.
+ *
+ * <p>Il canvas è diviso in tile di 64x64 pixel; ogni tile è associata a uno
+ * di 64 lock secondo uno schema 8x8 che si ripete, così due tile vicine non
+ * condividono mai lo stesso lock. Chi disegna blocca solo i lock delle tile
+ * toccate dalla sua zona, sempre in ordine crescente per evitare deadlock:
+ * tartarughe che disegnano in zone diverse lavorano in parallelo.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TileLocks {
+
+    /** Lato di una tile in pixel, come potenza di 2 */
+    private static final int TILE_SHIFT = 6;
+
+    /** Lato in tile dello schema che si ripete */
+    private static final int PATTERN = 8;
+
+    /** Maschera con tutti i lock */
+    static final long ALL = -1L;
+
+    private final ReentrantLock[] locks = new ReentrantLock[PATTERN * PATTERN];
+
+    TileLocks() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Blocca le tile toccate dal rettangolo indicato, in coordinate schermo.
+     *
+     * @return la maschera dei lock acquisiti, da passare a {@link #unlock(long)}
+     */
+    long lock(double x0, double y0, double x1, double y1) {
+        long mask = mask(x0, y0, x1, y1);
+        for (long m = mask; m != 0; m &= m - 1) {
+            locks[Long.numberOfTrailingZeros(m)].lock();
+        }
+        return mask;
+    }
+
+    /**
+     * Blocca tutte le tile, per le operazioni sull'intero buffer.
+     *
+     * @return la maschera dei lock acquisiti
+     */
+    long lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        return ALL;
+    }
+
+    /**
+     * Rilascia i lock acquisiti con {@link #lock} o {@link #lockAll()}.
+     *
+     * @param mask la maschera restituita dal lock
+     */
+    void unlock(long mask) {
+        for (long m = mask; m != 0; m &= m - 1) {
+            locks[Long.numberOfTrailingZeros(m)].unlock();
+        }
+    }
+
+    /**
+     * Calcola la maschera dei lock per un rettangolo.
+     * Le zone fuori dal canvas in alto a sinistra non toccano pixel ma bloccano
+     * comunque un lock, così anche quei disegni restano esclusi dalle operazioni
+     * sull'intero buffer, come i cambi di vista.
+     */
+    private static long mask(double x0, double y0, double x1, double y1) {
+        if (x1 < 0 || y1 < 0 || x1 < x0 || y1 < y0) {
+            return 1L;
+        }
+        int tx0 = (int) Math.max(0, x0) >> TILE_SHIFT;
+        int ty0 = (int) Math.max(0, y0) >> TILE_SHIFT;
+        int tx1 = (int) Math.min(Integer.MAX_VALUE, x1) >> TILE_SHIFT;
+        int ty1 = (int) Math.min(Integer.MAX_VALUE, y1) >> TILE_SHIFT;
+        if (tx1 - tx0 >= PATTERN - 1 && ty1 - ty0 >= PATTERN - 1) {
+            return ALL;
+        }
+        tx1 = Math.min(tx1, tx0 + PATTERN - 1);
+        ty1 = Math.min(ty1, ty0 + PATTERN - 1);
+        long mask = 0;
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                mask |= 1L << ((tx & (PATTERN - 1)) + ((ty & (PATTERN - 1)) * PATTERN));
+            }
+        }
+        return mask;
+    }
+}
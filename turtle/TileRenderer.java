@@ -0,0 +1,210 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Rasterizzatore parallelo a tile per le display list.
+ *
+ * <p>I comandi da disegnare vengono distribuiti nelle tile di 128x128 pixel
+ * che toccano; poi le tile vengono disegnate in parallelo sul pool ForkJoin
+ * comune, ognuna con un proprio {@link Graphics2D} limitato alla tile. Dentro
+ * ogni tile i comandi sono ridisegnati nell'ordine di registrazione, e poiché
+ * la copertura di un pixel dipende solo dalla geometria e non dal clip, il
+ * risultato è identico pixel per pixel a un replay seriale.</p>
+ *
+ * <p>Le tile sono disgiunte, quindi i thread scrivono su zone diverse della
+ * stessa immagine senza coordinarsi. Le liste piccole vengono ridisegnate
+ * direttamente sul thread chiamante.</p>
+ *
+ * <p>I comandi che cadono del tutto fuori dall'immagine non finiscono in
+ * nessuna tile e non vengono ridisegnati: quando la vista è ingrandita su
+ * una piccola parte del disegno il costo dipende solo da ciò che si vede.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TileRenderer {
+
+    /** Lato di una tile in pixel, come potenza di 2 */
+    private static final int TILE_SHIFT = 7;
+
+    /** Lato di una tile in pixel */
+    static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+    /** Sotto questo numero di comandi il replay seriale è più rapido */
+    private static final int PARALLEL_THRESHOLD = 2048;
+
+    /** Numero di tile sotto il quale un compito non viene più diviso */
+    private static final int TILES_PER_TASK = 2;
+
+    private TileRenderer() {
+    }
+
+    /**
+     * Disegna i comandi da {@code from} a {@code to} di una display list sull'immagine.
+     * Il chiamante deve tenere il lock della lista e quello dell'immagine, se c'è.
+     *
+     * @param list la display list
+     * @param from il primo comando (incluso)
+     * @param to l'ultimo comando (escluso)
+     * @param target l'immagine di destinazione
+     * @param view la corrispondenza tra coordinate turtle e pixel dell'immagine
+     * @param lod true per unire i segmenti più corti di un pixel (vedi {@link DisplayList#replayOps})
+     * @return la zona toccata in coordinate schermo, o null se nessun comando è visibile
+     */
+    static Rectangle render(DisplayList list, int from, int to, BufferedImage target,
+                            TurtleView view, boolean lod) {
+        int width = target.getWidth();
+        int height = target.getHeight();
+        int tilesX = (width + TILE_SIZE - 1) >> TILE_SHIFT;
+        int tilesY = (height + TILE_SIZE - 1) >> TILE_SHIFT;
+        int count = to - from;
+        if (count <= 0) {
+            return null;
+        }
+
+        // Primo passaggio: limiti in tile di ogni comando e conteggio per tile
+        int[] spans = new int[4 * count];
+        int[] offsets = new int[tilesX * tilesY + 1];
+        double[] box = new double[4];
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        int visible = 0;
+        for (int n = 0; n < count; n++) {
+            list.bounds(from + n, view, box);
+            int x0 = (int) Math.max(0, Math.floor(box[0]));
+            int y0 = (int) Math.max(0, Math.floor(box[1]));
+            int x1 = (int) Math.min(width, Math.ceil(box[2]));
+            int y1 = (int) Math.min(height, Math.ceil(box[3]));
+            if (x0 >= x1 || y0 >= y1) {
+                spans[4 * n] = -1;
+                continue;
+            }
+            visible++;
+            minX = Math.min(minX, x0);
+            minY = Math.min(minY, y0);
+            maxX = Math.max(maxX, x1);
+            maxY = Math.max(maxY, y1);
+            int tx0 = x0 >> TILE_SHIFT;
+            int ty0 = y0 >> TILE_SHIFT;
+            int tx1 = (x1 - 1) >> TILE_SHIFT;
+            int ty1 = (y1 - 1) >> TILE_SHIFT;
+            spans[4 * n] = tx0;
+            spans[4 * n + 1] = ty0;
+            spans[4 * n + 2] = tx1;
+            spans[4 * n + 3] = ty1;
+            for (int ty = ty0; ty <= ty1; ty++) {
+                for (int tx = tx0; tx <= tx1; tx++) {
+                    offsets[ty * tilesX + tx + 1]++;
+                }
+            }
+        }
+        if (minX >= maxX) {
+            return null;
+        }
+
+        if (count < PARALLEL_THRESHOLD) {
+            int[] shown = null;
+            if (visible < count) {
+                shown = new int[visible];
+                for (int n = 0, k = 0; n < count; n++) {
+                    if (spans[4 * n] >= 0) {
+                        shown[k++] = from + n;
+                    }
+                }
+            }
+            Graphics2D g = createGraphics(target);
+            if (shown != null) {
+                list.replayOps(g, shown, 0, visible, view, lod);
+            } else {
+                list.replayOps(g, null, from, to, view, lod);
+            }
+            g.dispose();
+            return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+        }
+
+        // Secondo passaggio: indici dei comandi raggruppati per tile, in ordine
+        for (int t = 0; t < tilesX * tilesY; t++) {
+            offsets[t + 1] += offsets[t];
+        }
+        int[] indices = new int[offsets[tilesX * tilesY]];
+        int[] fill = new int[tilesX * tilesY];
+        System.arraycopy(offsets, 0, fill, 0, fill.length);
+        for (int n = 0; n < count; n++) {
+            if (spans[4 * n] < 0) {
+                continue;
+            }
+            for (int ty = spans[4 * n + 1]; ty <= spans[4 * n + 3]; ty++) {
+                for (int tx = spans[4 * n]; tx <= spans[4 * n + 2]; tx++) {
+                    indices[fill[ty * tilesX + tx]++] = from + n;
+                }
+            }
+        }
+
+        ForkJoinPool.commonPool().invoke(new TileTask(list, indices, offsets, tilesX, 0, tilesX * tilesY,
+                target, view, lod));
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Crea un contesto con le stesse impostazioni del disegno diretto delle tartarughe.
+     */
+    private static Graphics2D createGraphics(BufferedImage target) {
+        Graphics2D g = target.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        return g;
+    }
+
+    /**
+     * Disegna un intervallo di tile, dividendolo a metà finché è abbastanza grande.
+     */
+    @SuppressWarnings("serial")
+    private static final class TileTask extends RecursiveAction {
+        private final DisplayList list;
+        private final int[] indices;
+        private final int[] offsets;
+        private final int tilesX;
+        private final int first;
+        private final int last;
+        private final BufferedImage target;
+        private final TurtleView view;
+        private final boolean lod;
+
+        TileTask(DisplayList list, int[] indices, int[] offsets, int tilesX, int first, int last,
+                 BufferedImage target, TurtleView view, boolean lod) {
+            this.list = list;
+            this.indices = indices;
+            this.offsets = offsets;
+            this.tilesX = tilesX;
+            this.first = first;
+            this.last = last;
+            this.target = target;
+            this.view = view;
+            this.lod = lod;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > TILES_PER_TASK) {
+                int mid = (first + last) >>> 1;
+                invokeAll(new TileTask(list, indices, offsets, tilesX, first, mid, target, view, lod),
+                        new TileTask(list, indices, offsets, tilesX, mid, last, target, view, lod));
+                return;
+            }
+            for (int t = first; t < last; t++) {
+                if (offsets[t] == offsets[t + 1]) {
+                    continue;
+                }
+                Graphics2D g = createGraphics(target);
+                g.clipRect((t % tilesX) << TILE_SHIFT, (t / tilesX) << TILE_SHIFT, TILE_SIZE, TILE_SIZE);
+                list.replayOps(g, indices, offsets[t], offsets[t + 1], view, lod);
+                g.dispose();
+            }
+        }
+    }
+}
@@ -1,9 +1,10 @@
 
 
 import java.awt.*;
-import java.awt.geom.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Classe che rappresenta una tartaruga grafica.
@@ -13,30 +14,21 @@ import java.util.Map;
  * <p>Il sistema di coordinate ha l'origine al centro dello schermo,
  * con l'asse X positivo verso destra e l'asse Y positivo verso l'alto.</p>
  *
+ * <p>In modalità asincrona ({@link #setAsync(boolean)}) i comandi vengono
+ * accodati e ritornano subito: l'animatore dello schermo li esegue a una
+ * velocità espressa in pixel e gradi al secondo, indipendente da quanto
+ * velocemente il programma li genera.</p>
+ *
  * @author JavaTurtle
  * @version 1.0
  */
 public class Turtle {
 
-    /** Mappa dei colori predefiniti accessibili per nome */
-    private static final Map<String, Color> COLOR_MAP = new HashMap<>();
-
-    static {
-        COLOR_MAP.put("red", Color.RED);
-        COLOR_MAP.put("blue", Color.BLUE);
-        COLOR_MAP.put("green", Color.GREEN);
-        COLOR_MAP.put("black", Color.BLACK);
-        COLOR_MAP.put("white", Color.WHITE);
-        COLOR_MAP.put("yellow", Color.YELLOW);
-        COLOR_MAP.put("orange", Color.ORANGE);
-        COLOR_MAP.put("purple", new Color(128, 0, 128));
-        COLOR_MAP.put("pink", Color.PINK);
-        COLOR_MAP.put("cyan", Color.CYAN);
-        COLOR_MAP.put("magenta", Color.MAGENTA);
-        COLOR_MAP.put("brown", new Color(139, 69, 19));
-        COLOR_MAP.put("gray", Color.GRAY);
-        COLOR_MAP.put("grey", Color.GRAY);
-    }
+    /** Numero massimo di punti di una spezzata prima che venga disegnata */
+    private static final int MAX_PATH_POINTS = 1024;
+
+    /** Font usato da {@link #write(String)} */
+    private static final Font DEFAULT_FONT = new Font("SansSerif", Font.PLAIN, 12);
 
     private TurtleScreen screen;
     private TurtleCanvas canvas;
@@ -44,8 +36,8 @@ public class Turtle {
     private double y = 0;
     private double heading = 0;
     private boolean penDown = true;
-    private Color penColor = Color.BLACK;
-    private Color fillColor = Color.BLACK;
+    private int penArgb = TurtleColors.BLACK;
+    private int fillArgb = TurtleColors.BLACK;
     private double penWidth = 1.0;
     private boolean visible = true;
     private String shape = "arrow";
@@ -54,6 +46,60 @@ public class Turtle {
     private boolean filling = false;
     private Path2D.Double fillPath;
 
+    /** Livello su cui la tartaruga disegna (0 = back buffer) */
+    private volatile TurtleLayer layer;
+
+    /** Contesto di disegno persistente sul livello */
+    private TurtleGraphics graphics;
+
+    // Spezzata in costruzione: i movimenti consecutivi con la stessa penna
+    // vengono accumulati qui e disegnati sul back buffer una sola volta.
+    // Punti e limiti sono in coordinate turtle, portati sullo schermo con
+    // la vista valida al momento del disegno; livePath è la forma riusata
+    // per disegnarli allo swap e il suo monitor protegge tutti questi campi
+    private double[] pathPoints = new double[64];
+    private int pathSize = 0;
+    private final Path2D.Double livePath = new Path2D.Double();
+    private int pathArgb;
+    private double pathWidth;
+    private double pathMinX;
+    private double pathMinY;
+    private double pathMaxX;
+    private double pathMaxY;
+
+    // Pila degli stati salvati con pushState(), in array primitivi che crescono
+    // raddoppiando: salvare e ripristinare non alloca oggetti
+    private double[] stateValues = new double[4 * 16];
+    private int[] stateColors = new int[2 * 16];
+    private boolean[] statePen = new boolean[16];
+    private int stateDepth = 0;
+
+    /** Numero massimo di segmenti di un arco disegnato da circle */
+    private static final int MAX_ARC_SEGMENTS = 4096;
+
+    /** Numero massimo di comandi in coda in modalità asincrona */
+    private static final int QUEUE_CAPACITY = 1024;
+
+    // Modalità asincrona: comandi in attesa di essere animati dal TurtleAnimator
+    private volatile boolean async = false;
+    private TurtleAnimator animator;
+    private ArrayBlockingQueue<Command> commands;
+    private Command current;
+    private final Object commandLock = new Object();
+    private int pending = 0;
+    // Profondità della pila degli stati dopo i comandi accodati, usata solo dal
+    // thread che accoda per segnalare subito un popState() di troppo
+    private int queuedStateDepth;
+    private volatile double pixelsPerSecond = 300;
+    private volatile double degreesPerSecond = 360;
+
+    // Metriche: comandi ricevuti dalla tartaruga e contatori dello schermo
+    private final LongAdder commandCounter = new LongAdder();
+    private final TurtleMetrics metrics;
+
+    /** Operazioni contate per il tracer dello schermo (vedi {@link TurtleScreen#countOperation(int)}) */
+    private int operations;
+
     /**
      * Crea una nuova tartaruga associata allo schermo specificato.
      * La tartaruga viene automaticamente registrata nello schermo.
@@ -63,43 +109,24 @@ public class Turtle {
     public Turtle(TurtleScreen screen) {
         this.screen = screen;
         this.canvas = screen.getCanvas();
+        this.metrics = screen.getMetrics();
+        this.layer = canvas.getLayer(0);
+        this.graphics = new TurtleGraphics(layer);
         screen.registerTurtle(this);
     }
 
     /**
      * Converte una stringa di colore in un oggetto Color.
      * Supporta nomi di colori predefiniti (es. "red", "blue") e
-     * codici esadecimali (es. "#FF0000", "#F00").
+     * codici esadecimali (es. "#FF0000", "#F00"). Ogni stringa viene
+     * analizzata una volta sola e il Color restituito è condiviso.
      *
      * @param colorString il nome del colore o codice esadecimale
      * @return l'oggetto Color corrispondente, o Color.BLACK se non riconosciuto
+     *         (anche per codici esadecimali non validi)
      */
     public static Color parseColor(String colorString) {
-        if (colorString == null || colorString.isEmpty()) {
-            return Color.BLACK;
-        }
-
-        String lower = colorString.toLowerCase().trim();
-
-        if (COLOR_MAP.containsKey(lower)) {
-            return COLOR_MAP.get(lower);
-        }
-
-        if (colorString.startsWith("#")) {
-            String hex = colorString.substring(1);
-            if (hex.length() == 3) {
-                char r = hex.charAt(0);
-                char g = hex.charAt(1);
-                char b = hex.charAt(2);
-                hex = "" + r + r + g + g + b + b;
-            }
-            if (hex.length() == 6) {
-                int rgb = Integer.parseInt(hex, 16);
-                return new Color(rgb);
-            }
-        }
-
-        return Color.BLACK;
+        return TurtleColors.color(TurtleColors.parse(colorString));
     }
 
     /**
@@ -109,15 +136,14 @@ public class Turtle {
      * @param distance la distanza da percorrere (può essere negativa per andare indietro)
      */
     public void forward(double distance) {
+        if (deferred()) {
+            enqueueMove(Command.FORWARD, distance, 0);
+            return;
+        }
         double radians = Math.toRadians(heading);
         double newX = x + distance * Math.cos(radians);
         double newY = y + distance * Math.sin(radians);
-
-        if (speed == 0) {
-            moveTo(newX, newY);
-        } else {
-            animateMove(newX, newY, Math.abs(distance));
-        }
+        move(newX, newY, Math.abs(distance));
     }
 
     /**
@@ -162,6 +188,10 @@ public class Turtle {
      * @param angle l'angolo di rotazione in gradi
      */
     public void right(double angle) {
+        if (deferred()) {
+            enqueueMove(Command.TURN, -angle, 0);
+            return;
+        }
         heading -= angle;
         heading = normalizeAngle(heading);
     }
@@ -181,6 +211,10 @@ public class Turtle {
      * @param angle l'angolo di rotazione in gradi
      */
     public void left(double angle) {
+        if (deferred()) {
+            enqueueMove(Command.TURN, angle, 0);
+            return;
+        }
         heading += angle;
         heading = normalizeAngle(heading);
     }
@@ -202,12 +236,12 @@ public class Turtle {
      * @param newY la coordinata Y di destinazione
      */
     public void goTo(double newX, double newY) {
-        double distance = Math.sqrt(Math.pow(newX - x, 2) + Math.pow(newY - y, 2));
-        if (speed == 0) {
-            moveTo(newX, newY);
-        } else {
-            animateMove(newX, newY, distance);
+        if (deferred()) {
+            enqueueMove(Command.GOTO, newX, newY);
+            return;
         }
+        double distance = Math.sqrt(Math.pow(newX - x, 2) + Math.pow(newY - y, 2));
+        move(newX, newY, distance);
     }
 
     /**
@@ -236,6 +270,10 @@ public class Turtle {
      * @param newX la nuova coordinata X
      */
     public void setX(double newX) {
+        if (deferred()) {
+            enqueueMove(Command.GOTO, newX, Double.NaN);
+            return;
+        }
         goTo(newX, y);
     }
 
@@ -245,6 +283,10 @@ public class Turtle {
      * @param newY la nuova coordinata Y
      */
     public void setY(double newY) {
+        if (deferred()) {
+            enqueueMove(Command.GOTO, Double.NaN, newY);
+            return;
+        }
         goTo(x, newY);
     }
 
@@ -256,46 +298,254 @@ public class Turtle {
         setHeading(0);
     }
 
+    /**
+     * Salva lo stato della tartaruga: posizione, orientamento, penna alzata o
+     * abbassata, colori di penna e riempimento e spessore della penna.
+     * Gli stati si ripristinano con {@link #popState()} in ordine inverso,
+     * come le parentesi quadre dei sistemi di Lindenmayer.
+     */
+    public void pushState() {
+        if (deferred()) {
+            queuedStateDepth++;
+            enqueue(this::pushState);
+            return;
+        }
+        if (stateDepth == statePen.length) {
+            int capacity = 2 * stateDepth;
+            stateValues = Arrays.copyOf(stateValues, 4 * capacity);
+            stateColors = Arrays.copyOf(stateColors, 2 * capacity);
+            statePen = Arrays.copyOf(statePen, capacity);
+        }
+        stateValues[4 * stateDepth] = x;
+        stateValues[4 * stateDepth + 1] = y;
+        stateValues[4 * stateDepth + 2] = heading;
+        stateValues[4 * stateDepth + 3] = penWidth;
+        stateColors[2 * stateDepth] = penArgb;
+        stateColors[2 * stateDepth + 1] = fillArgb;
+        statePen[stateDepth] = penDown;
+        stateDepth++;
+    }
+
+    /**
+     * Ripristina l'ultimo stato salvato con {@link #pushState()}.
+     *
+     * <p>La tartaruga salta alla posizione salvata all'istante, senza animazione
+     * e senza disegnare, qualunque sia la penna. Un riempimento in corso resta
+     * aperto: come con uno spostamento a penna alzata, la sua figura prosegue
+     * fino alla posizione ripristinata.</p>
+     *
+     * @throws IllegalStateException se non ci sono stati salvati; in modalità
+     *         asincrona viene lanciata subito, contando anche i comandi in coda
+     */
+    public void popState() {
+        if (deferred()) {
+            if (queuedStateDepth == 0) {
+                throw new IllegalStateException("Nessuno stato salvato con pushState()");
+            }
+            queuedStateDepth--;
+            enqueue(this::popState);
+            return;
+        }
+        if (stateDepth == 0) {
+            throw new IllegalStateException("Nessuno stato salvato con pushState()");
+        }
+        stateDepth--;
+        double newX = stateValues[4 * stateDepth];
+        double newY = stateValues[4 * stateDepth + 1];
+        if (filling && fillPath != null) {
+            fillPath.lineTo(newX, newY);
+        }
+        x = newX;
+        y = newY;
+        heading = stateValues[4 * stateDepth + 2];
+        penWidth = stateValues[4 * stateDepth + 3];
+        penArgb = stateColors[2 * stateDepth];
+        fillArgb = stateColors[2 * stateDepth + 1];
+        penDown = statePen[stateDepth];
+    }
+
+    /**
+     * Restituisce il numero di stati salvati con {@link #pushState()} e non ancora ripristinati.
+     *
+     * @return la profondità della pila degli stati
+     */
+    public int getStateDepth() {
+        return stateDepth;
+    }
+
     /**
      * Disegna un cerchio completo con il raggio specificato.
-     * Il cerchio viene disegnato a sinistra della tartaruga.
+     * Il cerchio viene disegnato a sinistra della tartaruga, con un numero di
+     * segmenti adatto al raggio (vedi {@link TurtleScreen#setArcTolerance(double)}).
      *
      * @param radius il raggio del cerchio (negativo per disegnare a destra)
      */
     public void circle(double radius) {
-        circle(radius, 360, 36);
+        arc(radius, 360, 36, false);
     }
 
     /**
-     * Disegna un arco di cerchio con il raggio e l'estensione specificati.
+     * Disegna un arco di cerchio con il raggio e l'estensione specificati,
+     * con un numero di segmenti adatto al raggio.
      *
      * @param radius il raggio del cerchio
      * @param extent l'angolo dell'arco in gradi (360 per un cerchio completo)
      */
     public void circle(double radius, double extent) {
         int steps = Math.max(1, (int) Math.abs(extent / 10));
-        circle(radius, extent, steps);
+        arc(radius, extent, steps, false);
     }
 
     /**
      * Disegna un arco di cerchio con controllo sul numero di segmenti.
+     * Con pochi segmenti si ottengono poligoni regolari: {@code circle(50, 360, 6)}
+     * disegna un esagono.
      *
      * @param radius il raggio del cerchio
      * @param extent l'angolo dell'arco in gradi
      * @param steps il numero di segmenti per approssimare l'arco
      */
     public void circle(double radius, double extent, int steps) {
+        arc(radius, extent, steps, true);
+    }
+
+    /**
+     * Disegna un arco come un'unica spezzata.
+     *
+     * <p>La posizione e l'orientamento finali sono calcolati ripetendo
+     * {@code steps} volte {@code forward(corda); left(angolo)}, con la stessa
+     * aritmetica di quei comandi, quindi coincidono esattamente con quelli del
+     * poligono di {@code steps} lati. Se {@code polygon} è falso la spezzata segue
+     * invece il cerchio passante per i vertici di quel poligono, con i segmenti
+     * scelti in base al raggio sullo schermo.</p>
+     *
+     * @param steps i lati del poligono che fissa la posizione finale
+     * @param polygon true per disegnare proprio quel poligono
+     */
+    private void arc(double radius, double extent, int steps, boolean polygon) {
+        if (deferred()) {
+            enqueue(new Command(Command.ARC, radius, extent, steps, polygon));
+            return;
+        }
+        ArcPlan plan = planArc(radius, extent, steps, polygon);
+        if (speed == 0 || !screen.animatesMoves() || isInvisibleMove()) {
+            for (int k = 1; k <= plan.segments; k++) {
+                moveTo(plan.points[2 * k], plan.points[2 * k + 1]);
+            }
+            heading = plan.endHeading;
+            operations = screen.countOperation(operations);
+        } else {
+            animateArc(plan);
+        }
+    }
+
+    /**
+     * Calcola i vertici di un arco a partire dallo stato corrente della tartaruga.
+     */
+    private ArcPlan planArc(double radius, double extent, int steps, boolean polygon) {
+        steps = Math.max(1, steps);
         double angleStep = extent / steps;
         double stepLen = 2 * Math.abs(radius) * Math.sin(Math.toRadians(Math.abs(angleStep) / 2));
-
         if (radius < 0) {
             angleStep = -angleStep;
         }
 
+        ArcPlan plan = new ArcPlan();
+        plan.startHeading = heading;
+        plan.sweep = steps * angleStep;
+        plan.segments = polygon ? steps : arcSegments(Math.abs(radius), Math.abs(plan.sweep));
+        plan.points = new double[2 * plan.segments + 2];
+        plan.points[0] = x;
+        plan.points[1] = y;
+
+        // Percorso del poligono, con la stessa aritmetica di forward() e left()
+        double px = x;
+        double py = y;
+        double h = heading;
         for (int i = 0; i < steps; i++) {
-            forward(stepLen);
-            left(angleStep);
+            double radians = Math.toRadians(h);
+            px = px + stepLen * Math.cos(radians);
+            py = py + stepLen * Math.sin(radians);
+            h = normalizeAngle(h + angleStep);
+            if (polygon) {
+                plan.points[2 * i + 2] = px;
+                plan.points[2 * i + 3] = py;
+            }
+        }
+        plan.endHeading = h;
+
+        if (!polygon) {
+            // Cerchio circoscritto al poligono: la tangente iniziale è ruotata di mezzo passo
+            double side = Math.signum(angleStep);
+            double toCenter = Math.toRadians(heading - angleStep / 2 + 90 * side);
+            double r = Math.abs(radius);
+            double cx = x + r * Math.cos(toCenter);
+            double cy = y + r * Math.sin(toCenter);
+            double start = toCenter + Math.PI;
+            double sweep = Math.toRadians(plan.sweep);
+            for (int k = 1; k < plan.segments; k++) {
+                double angle = start + sweep * k / plan.segments;
+                plan.points[2 * k] = cx + r * Math.cos(angle);
+                plan.points[2 * k + 1] = cy + r * Math.sin(angle);
+            }
+            plan.points[2 * plan.segments] = px;
+            plan.points[2 * plan.segments + 1] = py;
+        }
+
+        for (int k = 1; k <= plan.segments; k++) {
+            plan.length += Math.hypot(plan.points[2 * k] - plan.points[2 * k - 2],
+                    plan.points[2 * k + 1] - plan.points[2 * k - 1]);
+        }
+        return plan;
+    }
+
+    /**
+     * Sceglie il numero di segmenti di un arco: ogni corda si scosta dal cerchio
+     * al più della tolleranza dello schermo. Il raggio viene misurato in pixel
+     * con la vista corrente del canvas.
+     *
+     * @param radius il raggio in unità turtle, non negativo
+     * @param sweep l'ampiezza in gradi, non negativa
+     */
+    private int arcSegments(double radius, double sweep) {
+        radius *= canvas.getView().maxScale();
+        double tolerance = screen.getArcTolerance();
+        double maxAngle = radius > tolerance ? 2 * Math.acos(1 - tolerance / radius) : Math.PI;
+        int minimum = (int) Math.ceil(sweep / 120);
+        int segments = (int) Math.ceil(Math.toRadians(sweep) / maxAngle);
+        return Math.max(1, Math.min(MAX_ARC_SEGMENTS, Math.max(minimum, segments)));
+    }
+
+    /**
+     * Anima la tartaruga lungo un arco: i vertici entrano nella spezzata in
+     * costruzione man mano che vengono raggiunti, quindi l'arco viene disegnato
+     * una sola volta. Le pause seguono la velocità come in {@link #animateMove}.
+     */
+    private void animateArc(ArcPlan plan) {
+        double stepSize = getStepSize();
+        double travelled = 0;
+        for (int k = 1; k <= plan.segments; k++) {
+            double x0 = plan.points[2 * k - 2];
+            double y0 = plan.points[2 * k - 1];
+            double x1 = plan.points[2 * k];
+            double y1 = plan.points[2 * k + 1];
+            double chord = Math.hypot(x1 - x0, y1 - y0);
+            int sub = Math.max(1, (int) (chord / stepSize));
+            for (int j = 1; j <= sub; j++) {
+                if (j == sub) {
+                    moveTo(x1, y1);
+                } else {
+                    moveTo(x0 + (x1 - x0) * j / sub, y0 + (y1 - y0) * j / sub);
+                }
+                travelled += chord / sub;
+                if (travelled >= stepSize) {
+                    travelled = 0;
+                    heading = normalizeAngle(plan.startHeading + plan.sweep * (k - 1 + (double) j / sub) / plan.segments);
+                    delayIfNeeded();
+                }
+            }
         }
+        heading = plan.endHeading;
     }
 
     /**
@@ -304,7 +554,7 @@ public class Turtle {
      * @param size il diametro del punto
      */
     public void dot(double size) {
-        dot(size, penColor);
+        dot(size, penArgb);
     }
 
     /**
@@ -314,13 +564,49 @@ public class Turtle {
      * @param color il colore del punto
      */
     public void dot(double size, Color color) {
-        Graphics2D g2d = canvas.getBufferGraphics();
-        double screenX = canvas.toScreenX(x);
-        double screenY = canvas.toScreenY(y);
-        g2d.setColor(color);
-        double halfSize = size / 2;
-        g2d.fill(new Ellipse2D.Double(screenX - halfSize, screenY - halfSize, size, size));
-        g2d.dispose();
+        dot(size, color.getRGB());
+    }
+
+    /**
+     * Disegna un punto colorato alla posizione corrente.
+     *
+     * @param size il diametro del punto
+     * @param argb il colore del punto come 0xAARRGGBB
+     */
+    public void dot(double size, int argb) {
+        if (deferred()) {
+            enqueue(() -> dot(size, argb));
+            return;
+        }
+        flushPath();
+        graphics.fillDot(x, y, size, argb);
+        metrics.recordDot();
+        operations = screen.countOperation(operations);
+    }
+
+    /**
+     * Lascia sul canvas una copia del cursore della tartaruga alla posizione
+     * corrente, come {@code stamp()} del turtle di Python: stessa forma,
+     * dimensione, colore di riempimento e direzione (arrotondata a 5 gradi).
+     * Funziona anche se la tartaruga è nascosta; con la forma "blank" non lascia nulla.
+     *
+     * <p>Il timbro è copiato dalla stessa cache di immagini dei cursori, quindi
+     * lasciarne migliaia costa poco; viene anche registrato nella display list
+     * (come poligoni, o come immagine per le forme bitmap) e compare nei
+     * ridisegni e nell'esportazione SVG.</p>
+     */
+    public void stamp() {
+        if (deferred()) {
+            enqueue(this::stamp);
+            return;
+        }
+        flushPath();
+        TurtleSprites.Sprite sprite = canvas.getSprites().sprite(shape, turtleSize, fillArgb, heading);
+        if (sprite == null) {
+            return;
+        }
+        graphics.drawSprite(sprite, fillArgb, x, y);
+        operations = screen.countOperation(operations);
     }
 
     /**
@@ -345,6 +631,10 @@ public class Turtle {
      * Abbassa la penna. I movimenti successivi lasceranno una traccia.
      */
     public void penDown() {
+        if (deferred()) {
+            enqueue(this::penDown);
+            return;
+        }
         penDown = true;
     }
 
@@ -366,6 +656,10 @@ public class Turtle {
      * Alza la penna. I movimenti successivi non lasceranno traccia.
      */
     public void penUp() {
+        if (deferred()) {
+            enqueue(this::penUp);
+            return;
+        }
         penDown = false;
     }
 
@@ -398,6 +692,10 @@ public class Turtle {
      * @param width lo spessore in pixel
      */
     public void setPenSize(double width) {
+        if (deferred()) {
+            enqueue(() -> setPenSize(width));
+            return;
+        }
         this.penWidth = width;
     }
 
@@ -416,7 +714,22 @@ public class Turtle {
      * @param color il colore
      */
     public void setPenColor(Color color) {
-        this.penColor = color;
+        setPenColor(color.getRGB());
+    }
+
+    /**
+     * Imposta il colore della penna come intero ARGB, senza creare oggetti.
+     * Il canale alfa conta: per un colore opaco usare {@code 0xFFRRGGBB}.
+     * Vedi anche {@link ColorPalette} per scegliere un colore a ogni segmento.
+     *
+     * @param argb il colore come 0xAARRGGBB
+     */
+    public void setPenColor(int argb) {
+        if (deferred()) {
+            enqueue(() -> setPenColor(argb));
+            return;
+        }
+        this.penArgb = argb;
     }
 
     /**
@@ -425,7 +738,19 @@ public class Turtle {
      * @param colorName il nome del colore (es. "red") o codice hex (es. "#FF0000")
      */
     public void setPenColor(String colorName) {
-        setPenColor(parseColor(colorName));
+        setPenColor(TurtleColors.parse(colorName));
+    }
+
+    /**
+     * Imposta il colore della penna con tinta, saturazione e luminosità,
+     * come {@link Color#getHSBColor(float, float, float)} ma senza creare oggetti.
+     *
+     * @param hue la tinta, da 0 a 1 (i valori fuori ripetono il cerchio dei colori)
+     * @param saturation la saturazione, da 0 a 1
+     * @param brightness la luminosità, da 0 a 1
+     */
+    public void setPenColorHSB(float hue, float saturation, float brightness) {
+        setPenColor(Color.HSBtoRGB(hue, saturation, brightness));
     }
 
     /**
@@ -434,7 +759,7 @@ public class Turtle {
      * @return il colore della penna
      */
     public Color getPenColor() {
-        return penColor;
+        return TurtleColors.color(penArgb);
     }
 
     /**
@@ -443,7 +768,20 @@ public class Turtle {
      * @param color il colore di riempimento
      */
     public void setFillColor(Color color) {
-        this.fillColor = color;
+        setFillColor(color.getRGB());
+    }
+
+    /**
+     * Imposta il colore di riempimento come intero ARGB, senza creare oggetti.
+     *
+     * @param argb il colore come 0xAARRGGBB
+     */
+    public void setFillColor(int argb) {
+        if (deferred()) {
+            enqueue(() -> setFillColor(argb));
+            return;
+        }
+        this.fillArgb = argb;
     }
 
     /**
@@ -452,7 +790,7 @@ public class Turtle {
      * @param colorName il nome del colore o codice hex
      */
     public void setFillColor(String colorName) {
-        setFillColor(parseColor(colorName));
+        setFillColor(TurtleColors.parse(colorName));
     }
 
     /**
@@ -461,7 +799,14 @@ public class Turtle {
      * @return il colore di riempimento
      */
     public Color getFillColor() {
-        return fillColor;
+        return TurtleColors.color(fillArgb);
+    }
+
+    /**
+     * Restituisce il colore di riempimento come 0xAARRGGBB, senza creare un Color.
+     */
+    int getFillArgb() {
+        return fillArgb;
     }
 
     /**
@@ -511,9 +856,13 @@ public class Turtle {
      * Tutti i movimenti successivi verranno registrati fino a {@link #endFill()}.
      */
     public void beginFill() {
+        if (deferred()) {
+            enqueue(this::beginFill);
+            return;
+        }
         filling = true;
         fillPath = new Path2D.Double();
-        fillPath.moveTo(canvas.toScreenX(x), canvas.toScreenY(y));
+        fillPath.moveTo(x, y);
     }
 
     /**
@@ -521,17 +870,16 @@ public class Turtle {
      * Il percorso viene chiuso automaticamente e riempito con il colore di riempimento.
      */
     public void endFill() {
+        if (deferred()) {
+            enqueue(this::endFill);
+            return;
+        }
+        flushPath();
         if (filling && fillPath != null) {
             fillPath.closePath();
-            Graphics2D g2d = canvas.getBufferGraphics();
-            g2d.setColor(fillColor);
-            g2d.fill(fillPath);
-            if (penDown) {
-                g2d.setColor(penColor);
-                g2d.setStroke(new BasicStroke((float) penWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                g2d.draw(fillPath);
-            }
-            g2d.dispose();
+            graphics.fillShape(fillPath, fillArgb, penDown, penArgb, penWidth);
+            metrics.recordFill();
+            operations = screen.countOperation(operations);
         }
         filling = false;
         fillPath = null;
@@ -542,12 +890,17 @@ public class Turtle {
      * Posizione all'origine, orientamento a destra, penna nera abbassata.
      */
     public void reset() {
+        if (deferred()) {
+            enqueue(this::reset);
+            return;
+        }
+        flushPath();
         x = 0;
         y = 0;
         heading = 0;
         penDown = true;
-        penColor = Color.BLACK;
-        fillColor = Color.BLACK;
+        penArgb = TurtleColors.BLACK;
+        fillArgb = TurtleColors.BLACK;
         penWidth = 1.0;
         visible = true;
         shape = "arrow";
@@ -562,6 +915,10 @@ public class Turtle {
      * La posizione e l'orientamento della tartaruga non vengono modificati.
      */
     public void clear() {
+        if (deferred()) {
+            enqueue(this::clear);
+            return;
+        }
         canvas.clearBuffer();
     }
 
@@ -572,6 +929,10 @@ public class Turtle {
      * @param angle l'angolo in gradi
      */
     public void setHeading(double angle) {
+        if (deferred()) {
+            enqueue(() -> setHeading(angle));
+            return;
+        }
         heading = normalizeAngle(angle);
     }
 
@@ -600,6 +961,10 @@ public class Turtle {
      * @param targetY la coordinata Y del punto di destinazione
      */
     public void towards(double targetX, double targetY) {
+        if (deferred()) {
+            enqueue(() -> towards(targetX, targetY));
+            return;
+        }
         double dx = targetX - x;
         double dy = targetY - y;
         setHeading(Math.toDegrees(Math.atan2(dy, dx)));
@@ -647,6 +1012,10 @@ public class Turtle {
      * Rende visibile la tartaruga sul canvas.
      */
     public void showTurtle() {
+        if (deferred()) {
+            enqueue(this::showTurtle);
+            return;
+        }
         visible = true;
     }
 
@@ -662,6 +1031,10 @@ public class Turtle {
      * La tartaruga continua a disegnare anche se nascosta.
      */
     public void hideTurtle() {
+        if (deferred()) {
+            enqueue(this::hideTurtle);
+            return;
+        }
         visible = false;
     }
 
@@ -683,11 +1056,17 @@ public class Turtle {
 
     /**
      * Imposta la forma del cursore della tartaruga.
-     * Forme disponibili: "arrow", "classic", "turtle", "circle", "square", "blank".
+     * Forme disponibili: "arrow", "classic", "turtle", "circle", "square", "blank"
+     * e quelle registrate con {@link TurtleScreen#registerShape(String, Shape)}
+     * o {@link TurtleScreen#registerShape(String, Image)}.
      *
      * @param name il nome della forma
      */
     public void setShape(String name) {
+        if (deferred()) {
+            enqueue(() -> setShape(name));
+            return;
+        }
         this.shape = name;
     }
 
@@ -706,6 +1085,10 @@ public class Turtle {
      * @param size il fattore di scala (1.0 = dimensione normale)
      */
     public void setTurtleSize(double size) {
+        if (deferred()) {
+            enqueue(() -> setTurtleSize(size));
+            return;
+        }
         this.turtleSize = size;
     }
 
@@ -718,6 +1101,40 @@ public class Turtle {
         return turtleSize;
     }
 
+    /**
+     * Sposta i disegni successivi della tartaruga su un altro livello del canvas.
+     *
+     * <p>Il livello 0 è quello predefinito, con lo sfondo; i livelli con id
+     * maggiore vengono creati al primo utilizzo e sovrapposti in ordine di id.
+     * Un livello può essere cancellato da solo con {@link TurtleScreen#clearLayer(int)},
+     * ad esempio per ridisegnare a ogni frame solo una tartaruga che si muove
+     * sopra uno sfondo disegnato una volta sola.</p>
+     *
+     * @param id l'id del livello, non negativo
+     */
+    public void setLayer(int id) {
+        if (deferred()) {
+            enqueue(() -> setLayer(id));
+            return;
+        }
+        TurtleLayer target = canvas.getLayer(id);
+        if (target != layer) {
+            flushPath();
+            graphics.dispose();
+            layer = target;
+            graphics = new TurtleGraphics(target);
+        }
+    }
+
+    /**
+     * Restituisce l'id del livello su cui la tartaruga disegna.
+     *
+     * @return l'id del livello
+     */
+    public int getLayer() {
+        return layer.getId();
+    }
+
     /**
      * Scrive testo alla posizione corrente della tartaruga.
      * Usa il font predefinito e allineamento a sinistra.
@@ -725,7 +1142,7 @@ public class Turtle {
      * @param text il testo da scrivere
      */
     public void write(String text) {
-        write(text, "left", new Font("SansSerif", Font.PLAIN, 12));
+        write(text, "left", DEFAULT_FONT);
     }
 
     /**
@@ -736,21 +1153,14 @@ public class Turtle {
      * @param font il font da utilizzare
      */
     public void write(String text, String align, Font font) {
-        Graphics2D g2d = canvas.getBufferGraphics();
-        g2d.setColor(penColor);
-        g2d.setFont(font);
-        FontMetrics fm = g2d.getFontMetrics();
-        int textWidth = fm.stringWidth(text);
-        double screenX = canvas.toScreenX(x);
-        double screenY = canvas.toScreenY(y);
-
-        switch (align.toLowerCase()) {
-            case "center" -> screenX -= textWidth / 2.0;
-            case "right" -> screenX -= textWidth;
+        if (deferred()) {
+            enqueue(() -> write(text, align, font));
+            return;
         }
-
-        g2d.drawString(text, (float) screenX, (float) screenY);
-        g2d.dispose();
+        flushPath();
+        graphics.drawString(text, font, align, x, y, penArgb);
+        metrics.recordText();
+        operations = screen.countOperation(operations);
     }
 
     /**
@@ -758,15 +1168,37 @@ public class Turtle {
      */
     private void moveTo(double newX, double newY) {
         if (penDown) {
-            drawLine(x, y, newX, newY);
+            extendPath(x, y, newX, newY);
         }
         if (filling && fillPath != null) {
-            fillPath.lineTo(canvas.toScreenX(newX), canvas.toScreenY(newY));
+            fillPath.lineTo(newX, newY);
         }
         x = newX;
         y = newY;
     }
 
+    /**
+     * Sposta la tartaruga, animando il movimento solo se la velocità e il
+     * tracer dello schermo lo richiedono e se c'è qualcosa da vedere.
+     */
+    private void move(double newX, double newY, double distance) {
+        if (speed == 0 || !screen.animatesMoves() || isInvisibleMove()) {
+            moveTo(newX, newY);
+            operations = screen.countOperation(operations);
+        } else {
+            animateMove(newX, newY, distance);
+        }
+    }
+
+    /**
+     * Verifica se un movimento non cambia nulla sullo schermo: con la penna
+     * alzata e la tartaruga nascosta non c'è niente da animare, quindi il
+     * movimento avviene all'istante, senza pause né aggiornamenti dello schermo.
+     */
+    private boolean isInvisibleMove() {
+        return !penDown && !visible;
+    }
+
     /**
      * Anima il movimento della tartaruga verso le coordinate specificate.
      */
@@ -786,18 +1218,20 @@ public class Turtle {
     }
 
     /**
-     * Calcola la dimensione del passo in base alla velocità.
+     * Calcola la dimensione del passo in base alla velocità: il passo è
+     * misurato in pixel e convertito in unità turtle con la vista corrente.
      */
     private double getStepSize() {
         if (speed == 0) return Double.MAX_VALUE;
-        return 1 + (256 - speed) / 10.0;
+        return (1 + (256 - speed) / 10.0) / canvas.getView().maxScale();
     }
 
     /**
      * Aggiunge un ritardo tra i passi dell'animazione se necessario.
+     * In modalità headless non c'è nulla da mostrare e il ritardo viene saltato.
      */
     private void delayIfNeeded() {
-        if (speed > 0) {
+        if (speed > 0 && !screen.isHeadless()) {
             screen.refresh();
             int delay = Math.max(1, speed / 3);
             try {
@@ -809,17 +1243,518 @@ public class Turtle {
     }
 
     /**
-     * Disegna una linea tra due punti.
+     * Aggiunge un segmento alla spezzata in costruzione.
+     * Se la penna è cambiata o il segmento non parte dall'ultimo punto,
+     * la spezzata precedente viene prima disegnata.
+     */
+    private void extendPath(double x1, double y1, double x2, double y2) {
+        synchronized (livePath) {
+            appendToPath(x1, y1, x2, y2);
+        }
+    }
+
+    /**
+     * Corpo di {@link #extendPath}, eseguito con il lock della spezzata.
+     */
+    private void appendToPath(double x1, double y1, double x2, double y2) {
+        if (pathSize > 0 && (pathWidth != penWidth || pathArgb != penArgb
+                || pathPoints[2 * pathSize - 2] != x1 || pathPoints[2 * pathSize - 1] != y1
+                || pathSize >= MAX_PATH_POINTS)) {
+            flushPath();
+        }
+        if (pathSize == 0) {
+            pathArgb = penArgb;
+            pathWidth = penWidth;
+            pathMinX = pathMaxX = x1;
+            pathMinY = pathMaxY = y1;
+            pathPoints[0] = x1;
+            pathPoints[1] = y1;
+            pathSize = 1;
+        } else if (x2 == x1 && y2 == y1) {
+            return;
+        }
+        pathMinX = Math.min(pathMinX, x2);
+        pathMinY = Math.min(pathMinY, y2);
+        pathMaxX = Math.max(pathMaxX, x2);
+        pathMaxY = Math.max(pathMaxY, y2);
+
+        // I sotto-passi dell'animazione sono allineati: basta spostare l'ultimo punto
+        if (pathSize >= 2) {
+            double ax = pathPoints[2 * pathSize - 4];
+            double ay = pathPoints[2 * pathSize - 3];
+            double dx1 = x1 - ax;
+            double dy1 = y1 - ay;
+            double dx2 = x2 - x1;
+            double dy2 = y2 - y1;
+            double cross = dx1 * dy2 - dy1 * dx2;
+            double dot = dx1 * dx2 + dy1 * dy2;
+            if (dot > 0 && cross * cross <= 1e-18 * (dx1 * dx1 + dy1 * dy1) * (dx2 * dx2 + dy2 * dy2)) {
+                pathPoints[2 * pathSize - 2] = x2;
+                pathPoints[2 * pathSize - 1] = y2;
+                return;
+            }
+        }
+        if (2 * pathSize + 2 > pathPoints.length) {
+            pathPoints = Arrays.copyOf(pathPoints, pathPoints.length * 2);
+        }
+        pathPoints[2 * pathSize] = x2;
+        pathPoints[2 * pathSize + 1] = y2;
+        pathSize++;
+    }
+
+    /**
+     * Disegna sul back buffer la spezzata in costruzione e la registra
+     * nella display list. Chiamato prima di ogni altro disegno della
+     * tartaruga e dal canvas quando serve un back buffer completo.
+     */
+    void flushPath() {
+        synchronized (livePath) {
+            drawPendingPath();
+        }
+    }
+
+    /**
+     * Corpo di {@link #flushPath()}, eseguito con il lock della spezzata.
+     */
+    private void drawPendingPath() {
+        if (pathSize >= 2) {
+            graphics.drawPath(pathPoints, pathSize, pathArgb, pathWidth,
+                    pathMinX, pathMinY, pathMaxX, pathMaxY);
+            metrics.recordSegments(pathSize - 1);
+        }
+        pathSize = 0;
+    }
+
+    /**
+     * Scarta la spezzata in costruzione senza disegnarla.
+     * Chiamato dal canvas quando il back buffer viene cancellato.
+     */
+    void discardPath() {
+        synchronized (livePath) {
+            pathSize = 0;
+        }
+    }
+
+    /**
+     * Scarta la spezzata in costruzione se la tartaruga disegna sul livello indicato.
+     * Chiamato dal canvas quando quel livello viene cancellato.
+     *
+     * @param target il livello cancellato
+     */
+    void discardPath(TurtleLayer target) {
+        synchronized (livePath) {
+            if (layer == target) {
+                pathSize = 0;
+            }
+        }
+    }
+
+    /**
+     * Comunica al canvas la zona occupata dalla spezzata in costruzione.
+     *
+     * @param target il canvas che sta eseguendo lo swap
+     */
+    void includePathBounds(TurtleCanvas target) {
+        synchronized (livePath) {
+            if (pathSize >= 2) {
+                TurtleView view = canvas.getView();
+                target.includeOverlay(view.screenX(pathMinX), view.screenY(pathMaxY),
+                        view.screenX(pathMaxX), view.screenY(pathMinY), pathWidth / 2);
+            }
+        }
+    }
+
+    /**
+     * Disegna la spezzata in costruzione su un altro contesto grafico,
+     * tipicamente il front buffer durante la presentazione di un frame,
+     * se la tartaruga disegna sul livello indicato. La forma viene ricostruita
+     * dai punti, quindi i sotto-passi uniti non la allungano e il costo resta
+     * limitato da {@link #MAX_PATH_POINTS}.
+     *
+     * @param g il contesto grafico di destinazione
+     * @param target il livello che si sta componendo
+     */
+    void paintPath(Graphics2D g, TurtleLayer target) {
+        synchronized (livePath) {
+            if (pathSize >= 2 && layer == target) {
+                g.setColor(TurtleColors.color(pathArgb));
+                g.setStroke(TurtleGraphics.stroke((float) pathWidth));
+                TurtleView view = canvas.getView();
+                livePath.reset();
+                livePath.moveTo(view.screenX(pathPoints[0]), view.screenY(pathPoints[1]));
+                for (int k = 2; k < 2 * pathSize; k += 2) {
+                    livePath.lineTo(view.screenX(pathPoints[k]), view.screenY(pathPoints[k + 1]));
+                }
+                g.draw(livePath);
+            }
+        }
+    }
+
+    /**
+     * Attiva o disattiva la modalità asincrona.
+     * In modalità asincrona movimenti, rotazioni e cambi di stato vengono
+     * accodati e il metodo ritorna subito; l'animatore dello schermo li esegue
+     * in ordine alla velocità impostata con {@link #setAnimationRate(double, double)}.
+     * Se la coda è piena il chiamante attende che si liberi un posto.
+     * Le interrogazioni come {@link #xcor()} restituiscono lo stato già animato:
+     * usare {@link #waitUntilDone()} per attendere la fine dei comandi.
+     * Un'eccezione lanciata da un comando accodato viene passata al gestore
+     * delle eccezioni non catturate e il comando viene saltato; alla chiusura
+     * dello schermo i comandi in coda vengono scartati.
+     * In modalità headless i comandi vengono sempre eseguiti subito.
+     *
+     * @param enabled true per accodare i comandi
+     */
+    public void setAsync(boolean enabled) {
+        if (enabled == async) {
+            return;
+        }
+        if (enabled) {
+            if (commands == null) {
+                commands = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            }
+            if (!screen.isHeadless() && animator == null) {
+                animator = screen.getAnimator();
+            }
+            queuedStateDepth = stateDepth;
+            async = true;
+            if (animator != null) {
+                animator.register(this);
+            }
+        } else {
+            waitUntilDone();
+            async = false;
+        }
+    }
+
+    /**
+     * Verifica se la tartaruga è in modalità asincrona.
+     *
+     * @return true se i comandi vengono accodati
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Imposta la velocità dell'animazione in modalità asincrona.
+     *
+     * @param pixelsPerSecond i pixel percorsi al secondo (default: 300)
+     * @param degreesPerSecond i gradi di rotazione al secondo (default: 360)
+     */
+    public void setAnimationRate(double pixelsPerSecond, double degreesPerSecond) {
+        this.pixelsPerSecond = Math.max(1e-6, pixelsPerSecond);
+        this.degreesPerSecond = Math.max(1e-6, degreesPerSecond);
+    }
+
+    /**
+     * Attende che tutti i comandi accodati siano stati animati.
+     * Ritorna subito se la tartaruga non è in modalità asincrona.
+     */
+    public void waitUntilDone() {
+        synchronized (commandLock) {
+            while (pending > 0) {
+                try {
+                    commandLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifica se il comando corrente va accodato invece che eseguito:
+     * vero in modalità asincrona, tranne quando è l'animatore a eseguirlo.
+     * Conta anche il comando per le metriche, una sola volta: i comandi
+     * eseguiti dall'animatore sono già stati contati quando sono stati accodati.
+     * L'animatore è quello memorizzato da {@link #setAsync(boolean)}, così
+     * ogni comando non passa dal lock dello schermo.
+     */
+    private boolean deferred() {
+        if (async && animator != null) {
+            if (animator.isAnimatorThread()) {
+                return false;
+            }
+            commandCounter.increment();
+            return true;
+        }
+        commandCounter.increment();
+        return false;
+    }
+
+    /**
+     * Accoda un comando istantaneo.
+     */
+    private void enqueue(Runnable action) {
+        enqueue(new Command(Command.ACTION, 0, 0, action));
+    }
+
+    /**
+     * Accoda un movimento o una rotazione da animare.
+     */
+    private void enqueueMove(int type, double a, double b) {
+        enqueue(new Command(type, a, b, null));
+    }
+
+    /**
+     * Inserisce un comando in coda, attendendo se la coda è piena.
+     */
+    private void enqueue(Command command) {
+        synchronized (commandLock) {
+            pending++;
+        }
+        try {
+            commands.put(command);
+        } catch (InterruptedException e) {
+            synchronized (commandLock) {
+                pending--;
+                commandLock.notifyAll();
+            }
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (animator.isStopped()) {
+            discardCommands();
+        } else {
+            animator.wake();
+        }
+    }
+
+    /**
+     * Scarta i comandi accodati e non ancora eseguiti e risveglia chi li attende.
+     * Chiamato dall'animatore quando si ferma e da chi accoda dopo la sua fermata.
+     */
+    void discardCommands() {
+        if (commands == null) {
+            return;
+        }
+        int discarded = 0;
+        if (animator.isAnimatorThread() && current != null) {
+            current = null;
+            discarded++;
+        }
+        while (commands.poll() != null) {
+            discarded++;
+        }
+        synchronized (commandLock) {
+            pending -= discarded;
+            commandLock.notifyAll();
+        }
+    }
+
+    /**
+     * Restituisce il contatore dei comandi ricevuti, usato da {@link TurtleMetrics}.
+     */
+    LongAdder getCommandCounter() {
+        return commandCounter;
+    }
+
+    /**
+     * Verifica se ci sono comandi accodati non ancora completati.
+     */
+    boolean hasPendingCommands() {
+        synchronized (commandLock) {
+            return pending > 0;
+        }
+    }
+
+    /**
+     * Fa avanzare i comandi accodati di {@code seconds} secondi di animazione.
+     * Chiamato solo dal thread dell'animatore.
+     *
+     * @param seconds il tempo trascorso dall'ultimo avanzamento
+     * @return true se almeno un comando è stato eseguito o è in corso
+     */
+    boolean animate(double seconds) {
+        double budget = seconds;
+        boolean progressed = false;
+        while (true) {
+            if (current == null) {
+                current = commands == null ? null : commands.poll();
+                if (current == null) {
+                    return progressed;
+                }
+            }
+            progressed = true;
+            try {
+                budget = advance(current, budget);
+            } catch (RuntimeException e) {
+                // Il comando viene saltato: l'animatore è condiviso da tutte le
+                // tartarughe dello schermo e non deve fermarsi
+                current.done = true;
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            } finally {
+                if (current.done) {
+                    current = null;
+                    synchronized (commandLock) {
+                        pending--;
+                        commandLock.notifyAll();
+                    }
+                }
+            }
+            if (current != null || budget <= 0) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Esegue il comando per al massimo {@code budget} secondi.
+     *
+     * @return il tempo avanzato dopo il completamento, o 0 se il comando non è finito
+     */
+    private double advance(Command c, double budget) {
+        if (c.type == Command.ACTION) {
+            c.action.run();
+            c.done = true;
+            return budget;
+        }
+        if (!c.started) {
+            c.started = true;
+            c.fromX = x;
+            c.fromY = y;
+            c.fromHeading = heading;
+            switch (c.type) {
+                case Command.FORWARD -> {
+                    double radians = Math.toRadians(heading);
+                    c.toX = x + c.a * Math.cos(radians);
+                    c.toY = y + c.a * Math.sin(radians);
+                    c.length = Math.abs(c.a);
+                }
+                case Command.GOTO -> {
+                    c.toX = Double.isNaN(c.a) ? x : c.a;
+                    c.toY = Double.isNaN(c.b) ? y : c.b;
+                    c.length = Math.sqrt(Math.pow(c.toX - x, 2) + Math.pow(c.toY - y, 2));
+                }
+                case Command.ARC -> {
+                    c.plan = planArc(c.a, c.b, c.steps, c.polygon);
+                    c.length = c.plan.length;
+                }
+                default -> c.length = Math.abs(c.a);
+            }
+        }
+        if (c.type != Command.TURN && isInvisibleMove()) {
+            c.progress = c.length;
+        }
+        if (c.type == Command.ARC) {
+            return advanceArc(c, budget);
+        }
+        double rate = c.type == Command.TURN ? degreesPerSecond : pixelsPerSecond;
+        double needed = (c.length - c.progress) / rate;
+        if (budget >= needed) {
+            if (c.type == Command.TURN) {
+                heading = normalizeAngle(c.fromHeading + c.a);
+            } else {
+                moveTo(c.toX, c.toY);
+            }
+            c.done = true;
+            return budget - needed;
+        }
+        c.progress += budget * rate;
+        double t = c.progress / c.length;
+        if (c.type == Command.TURN) {
+            heading = normalizeAngle(c.fromHeading + c.a * t);
+        } else {
+            moveTo(c.fromX + (c.toX - c.fromX) * t, c.fromY + (c.toY - c.fromY) * t);
+        }
+        return 0;
+    }
+
+    /**
+     * Avanza un arco accodato lungo i suoi vertici, che hanno corde tutte uguali.
+     */
+    private double advanceArc(Command c, double budget) {
+        ArcPlan plan = c.plan;
+        double needed = (c.length - c.progress) / pixelsPerSecond;
+        if (budget >= needed) {
+            while (c.vertex < plan.segments) {
+                c.vertex++;
+                moveTo(plan.points[2 * c.vertex], plan.points[2 * c.vertex + 1]);
+            }
+            heading = plan.endHeading;
+            c.done = true;
+            return budget - Math.max(0, needed);
+        }
+        c.progress += budget * pixelsPerSecond;
+        double position = c.progress / c.length * plan.segments;
+        int reached = Math.min(plan.segments, (int) position);
+        while (c.vertex < reached) {
+            c.vertex++;
+            moveTo(plan.points[2 * c.vertex], plan.points[2 * c.vertex + 1]);
+        }
+        double t = position - reached;
+        if (reached < plan.segments && t > 0) {
+            int k = 2 * reached;
+            moveTo(plan.points[k] + (plan.points[k + 2] - plan.points[k]) * t,
+                    plan.points[k + 1] + (plan.points[k + 3] - plan.points[k + 1]) * t);
+        }
+        heading = normalizeAngle(plan.startHeading + plan.sweep * c.progress / c.length);
+        return 0;
+    }
+
+    /**
+     * Comando accodato in modalità asincrona.
+     */
+    private static final class Command {
+        static final int FORWARD = 0;
+        static final int GOTO = 1;
+        static final int TURN = 2;
+        static final int ACTION = 3;
+        static final int ARC = 4;
+
+        final int type;
+        final double a;
+        final double b;
+        final Runnable action;
+
+        // Solo per ARC: lati del poligono di riferimento e se disegnarlo
+        final int steps;
+        final boolean polygon;
+
+        // Stato dell'esecuzione, usato solo dall'animatore
+        boolean started;
+        boolean done;
+        double fromX;
+        double fromY;
+        double fromHeading;
+        double toX;
+        double toY;
+        double length;
+        double progress;
+        ArcPlan plan;
+        int vertex;
+
+        Command(int type, double a, double b, Runnable action) {
+            this(type, a, b, 0, false, action);
+        }
+
+        Command(int type, double radius, double extent, int steps, boolean polygon) {
+            this(type, radius, extent, steps, polygon, null);
+        }
+
+        private Command(int type, double a, double b, int steps, boolean polygon, Runnable action) {
+            this.type = type;
+            this.a = a;
+            this.b = b;
+            this.steps = steps;
+            this.polygon = polygon;
+            this.action = action;
+        }
+    }
+
+    /**
+     * Vertici di un arco, calcolati da {@link #planArc}.
      */
-    private void drawLine(double x1, double y1, double x2, double y2) {
-        Graphics2D g2d = canvas.getBufferGraphics();
-        g2d.setColor(penColor);
-        g2d.setStroke(new BasicStroke((float) penWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-        g2d.draw(new Line2D.Double(
-                canvas.toScreenX(x1), canvas.toScreenY(y1),
-                canvas.toScreenX(x2), canvas.toScreenY(y2)
-        ));
-        g2d.dispose();
+    private static final class ArcPlan {
+        double[] points;
+        int segments;
+        double length;
+        double startHeading;
+        double sweep;
+        double endHeading;
     }
 
     /**
@@ -0,0 +1,141 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Animatore dei comandi accodati dalle tartarughe in modalità asincrona.
+ *
+ * <p>Un unico thread per schermo, sincronizzato sul clock di rendering
+ * (60 frame al secondo), fa avanzare a ogni frame i comandi di tutte le
+ * tartarughe asincrone in base al tempo reale trascorso e poi presenta il
+ * frame. Quando non ci sono comandi in attesa il thread resta fermo.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TurtleAnimator implements Runnable {
+
+    /** Durata di un frame in nanosecondi */
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+
+    /** Tempo massimo animato in un solo frame, per non saltare dopo una pausa */
+    private static final double MAX_STEP_SECONDS = 0.25;
+
+    private final TurtleScreen screen;
+    private final CopyOnWriteArrayList<Turtle> turtles = new CopyOnWriteArrayList<>();
+    private final Object wakeLock = new Object();
+    private final Thread thread;
+    private volatile boolean stopped;
+
+    /**
+     * Crea e avvia l'animatore dello schermo indicato.
+     *
+     * @param screen lo schermo da animare
+     */
+    TurtleAnimator(TurtleScreen screen) {
+        this.screen = screen;
+        this.thread = new Thread(this, "turtle-animator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Aggiunge una tartaruga asincrona all'animatore.
+     */
+    void register(Turtle turtle) {
+        turtles.addIfAbsent(turtle);
+        wake();
+    }
+
+    /**
+     * Risveglia l'animatore dopo l'arrivo di nuovi comandi.
+     */
+    void wake() {
+        synchronized (wakeLock) {
+            wakeLock.notifyAll();
+        }
+    }
+
+    /**
+     * Ferma il thread dell'animatore alla chiusura dello schermo: i comandi
+     * ancora in coda vengono scartati e chi li attende viene risvegliato.
+     */
+    void stop() {
+        stopped = true;
+        thread.interrupt();
+        wake();
+    }
+
+    /**
+     * Verifica se l'animatore è stato fermato con {@link #stop()}.
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Verifica se il thread corrente è quello dell'animatore.
+     */
+    boolean isAnimatorThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Verifica se qualche tartaruga ha comandi da eseguire.
+     */
+    private boolean hasWork() {
+        for (Turtle turtle : turtles) {
+            if (turtle.hasPendingCommands()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void run() {
+        try {
+            animate();
+        } finally {
+            stopped = true;
+            for (Turtle turtle : turtles) {
+                turtle.discardCommands();
+            }
+        }
+    }
+
+    /**
+     * Ciclo dell'animatore, fino a {@link #stop()}.
+     */
+    private void animate() {
+        long last = System.nanoTime();
+        while (!stopped) {
+            long frameStart = System.nanoTime();
+            double seconds = Math.min(MAX_STEP_SECONDS, (frameStart - last) / 1e9);
+            last = frameStart;
+
+            boolean busy = false;
+            for (Turtle turtle : turtles) {
+                busy |= turtle.animate(seconds);
+            }
+
+            if (busy) {
+                screen.getCanvas().swapBuffers();
+                long remaining = FRAME_NANOS - (System.nanoTime() - frameStart);
+                if (remaining > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+            } else {
+                synchronized (wakeLock) {
+                    while (!stopped && !hasWork()) {
+                        try {
+                            wakeLock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                last = System.nanoTime();
+            }
+        }
+    }
+}
@@ -4,7 +4,12 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 /**
  * Canvas per il rendering grafico delle tartarughe.
@@ -17,8 +22,34 @@ import java.util.List;
  *   <li>{@link #swapBuffers()} copia il back buffer nel front buffer</li>
  * </ul>
  *
+ * <p>Entrambi i buffer sono immagini compatibili con lo schermo, che Java2D
+ * può tenere in cache. Il front buffer viene caricato in una
+ * {@link VolatileImage} accelerata solo quando il suo contenuto cambia;
+ * negli altri ridisegni Swing copia direttamente l'immagine accelerata.</p>
+ *
+ * <p>Il canvas tiene traccia del rettangolo modificato dall'ultimo swap:
+ * {@link #swapBuffers()} copia e ridisegna sullo schermo solo quella zona.</p>
+ *
+ * <p>Il back buffer è diviso in tile protette da lock separati (vedi {@link TileLocks}):
+ * tartarughe guidate da thread diversi disegnano in parallelo finché lavorano
+ * su zone diverse, mentre le operazioni sull'intero buffer le bloccano tutte.</p>
+ *
+ * <p>Oltre al back buffer (livello 0) il canvas può avere altri livelli
+ * trasparenti, creati alla prima {@link Turtle#setLayer(int)} con un nuovo id.
+ * Ogni livello ha buffer e display list propri e può essere cancellato da solo;
+ * lo swap li sovrappone in ordine di id solo nella zona modificata.</p>
+ *
+ * <p>Per scene molto grandi si può attivare il rendering differito
+ * ({@link #setDeferredRendering(boolean)}): le tartarughe registrano soltanto
+ * i comandi, e lo swap li rasterizza in parallelo a tile con {@link TileRenderer}
+ * prima di presentare il frame.</p>
+ *
  * <p>Il sistema di coordinate ha l'origine al centro del canvas,
- * con X positivo verso destra e Y positivo verso l'alto.</p>
+ * con X positivo verso destra e Y positivo verso l'alto, e un'unità per pixel.
+ * La vista si può cambiare con {@link #setWorldCoordinates(double, double, double, double)},
+ * {@link #zoom(double, double, double)}, {@link #pan(double, double)} e
+ * {@link #zoomToFit()}: a ogni cambio tutti i livelli vengono ridisegnati
+ * dalle display list, quindi anche ciò che era fuori dal canvas ricompare.</p>
  *
  * @author JavaTurtle
  * @version 1.0
@@ -31,18 +62,102 @@ public class TurtleCanvas extends JPanel {
     /** Buffer su cui le tartarughe disegnano */
     private BufferedImage backBuffer;
 
+    /** Copia accelerata del front buffer usata da paintComponent (solo EDT) */
+    private VolatileImage screenImage;
+
+    // Zona del front buffer cambiata dall'ultimo caricamento in screenImage (protetta da swapLock)
+    private int uploadX0 = Integer.MAX_VALUE;
+    private int uploadY0 = Integer.MAX_VALUE;
+    private int uploadX1 = Integer.MIN_VALUE;
+    private int uploadY1 = Integer.MIN_VALUE;
+
     /** Lock per sincronizzare lo swap dei buffer */
     private final Object swapLock = new Object();
 
+    /** Margine aggiunto alle zone modificate per l'antialiasing */
+    private static final double AA_MARGIN = 2;
+
+    /**
+     * Lock per il rettangolo modificato. Le tartarughe non lo prendono: segnano
+     * le zone sul proprio livello, che le passa qui a ogni swap (vedi {@link TurtleLayer#collectDirty()})
+     */
+    private final Object dirtyLock = new Object();
+
+    // Rettangolo del back buffer modificato dall'ultimo swap (vuoto se x0 >= x1)
+    private int dirtyX0 = Integer.MAX_VALUE;
+    private int dirtyY0 = Integer.MAX_VALUE;
+    private int dirtyX1 = Integer.MIN_VALUE;
+    private int dirtyY1 = Integer.MIN_VALUE;
+
+    // Zona occupata sul front buffer dalle spezzate in costruzione allo swap precedente
+    private int overlayX0 = Integer.MAX_VALUE;
+    private int overlayY0 = Integer.MAX_VALUE;
+    private int overlayX1 = Integer.MIN_VALUE;
+    private int overlayY1 = Integer.MIN_VALUE;
+
+    // Zona delle spezzate accumulata durante lo swap corrente
+    private int nextOverlayX0;
+    private int nextOverlayY0;
+    private int nextOverlayX1;
+    private int nextOverlayY1;
+
+    /** Zona occupata dai cursori all'ultimo tick del timer (solo EDT) */
+    private Rectangle cursorBounds = new Rectangle();
+
     /** Lista delle tartarughe da renderizzare */
     private List<Turtle> turtles;
 
+    /** Sciami di tartarughe da renderizzare */
+    private List<TurtleSwarm> swarms = List.of();
+
+    /** Forme dei cursori e sprite già disegnati */
+    private final TurtleSprites sprites = new TurtleSprites();
+
     /** Colore di sfondo del canvas */
     private Color backgroundColor = Color.WHITE;
 
     /** Timer per il refresh automatico del display */
     private Timer renderTimer;
 
+    /** true se il canvas non è mostrato in una finestra */
+    private final boolean headless;
+
+    /** Livello 0: il back buffer con lo sfondo */
+    private final TurtleLayer baseLayer;
+
+    /** Livelli sopra il back buffer, in ordine di id */
+    private volatile TurtleLayer[] layers = new TurtleLayer[0];
+
+    /** true se i disegni vengono rasterizzati solo allo swap */
+    private volatile boolean deferredRendering = false;
+
+    /** Registrazione in corso, che cattura un frame a ogni swap */
+    private volatile FrameRecorder recorder;
+
+    /** Destinatario dei comandi di disegno di tutti i livelli (protetto da swapLock) */
+    private DisplayList.Listener drawingListener;
+
+    /** Metriche dello schermo, null per un canvas usato da solo */
+    private volatile TurtleMetrics metrics;
+
+    /** true se paintComponent disegna il riquadro delle metriche */
+    private volatile boolean statsOverlay = false;
+
+    /** Zona occupata dal riquadro delle metriche */
+    private static final Rectangle STATS_BOUNDS = new Rectangle(8, 8, 250, 118);
+
+    /** Corrispondenza corrente tra coordinate turtle e pixel del canvas */
+    private volatile TurtleView view;
+
+    /**
+     * Lock che rende atomici i cambi di vista e il ridisegno che li segue;
+     * preso anche alla creazione dei livelli, che un cambio di vista deve vedere tutti
+     */
+    private final Object viewLock = new Object();
+
+    /** Margine in pixel lasciato attorno al disegno da {@link #zoomToFit()} */
+    private static final double FIT_MARGIN = 10;
+
     /**
      * Crea un nuovo canvas con le dimensioni specificate.
      *
@@ -50,22 +165,115 @@ public class TurtleCanvas extends JPanel {
      * @param height l'altezza in pixel
      */
     public TurtleCanvas(int width, int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * Crea un nuovo canvas, eventualmente in modalità headless.
+     * In modalità headless il timer di rendering non viene avviato
+     * e il canvas ha subito la dimensione richiesta.
+     *
+     * @param width la larghezza in pixel
+     * @param height l'altezza in pixel
+     * @param headless true se il canvas non verrà mostrato in una finestra
+     */
+    public TurtleCanvas(int width, int height, boolean headless) {
+        this.headless = headless;
         setPreferredSize(new Dimension(width, height));
         setDoubleBuffered(true);
-        frontBuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        backBuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        frontBuffer = createBuffer(width, height);
+        backBuffer = createBuffer(width, height);
+        view = TurtleView.standard(width, height);
+        baseLayer = new TurtleLayer(this, 0, backBuffer);
         clearBothBuffers();
-        startRenderLoop();
+        if (headless) {
+            setSize(width, height);
+        } else {
+            startRenderLoop();
+        }
+    }
+
+    /**
+     * Crea un buffer compatibile con lo schermo principale, se ce n'è uno,
+     * così che Java2D possa gestirlo e accelerarne le copie.
+     */
+    private BufferedImage createBuffer(int width, int height) {
+        if (!headless && !GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Verifica se il canvas è in modalità headless.
+     *
+     * @return true se il canvas non è mostrato in una finestra
+     */
+    public boolean isHeadless() {
+        return headless;
     }
 
     /**
      * Avvia il loop di rendering a 60 FPS.
      */
     private void startRenderLoop() {
-        renderTimer = new Timer(1000 / 60, e -> repaint());
+        renderTimer = new Timer(1000 / 60, e -> repaintCursors());
         renderTimer.start();
     }
 
+    /**
+     * Ridisegna solo la zona occupata dai cursori, ora e al tick precedente.
+     */
+    private void repaintCursors() {
+        int x0 = Integer.MAX_VALUE;
+        int y0 = Integer.MAX_VALUE;
+        int x1 = Integer.MIN_VALUE;
+        int y1 = Integer.MIN_VALUE;
+        if (turtles != null) {
+            for (Turtle turtle : turtles) {
+                if (turtle.isVisible()) {
+                    double r = sprites.radius(turtle.getShape(), turtle.getTurtleSize()) + AA_MARGIN;
+                    double sx = toScreenX(turtle.xcor());
+                    double sy = toScreenY(turtle.ycor());
+                    x0 = Math.min(x0, (int) Math.floor(sx - r));
+                    y0 = Math.min(y0, (int) Math.floor(sy - r));
+                    x1 = Math.max(x1, (int) Math.ceil(sx + r) + 1);
+                    y1 = Math.max(y1, (int) Math.ceil(sy + r) + 1);
+                }
+            }
+        }
+        for (TurtleSwarm swarm : swarms) {
+            if (swarm.isVisible() && swarm.size() > 0) {
+                double minX = Double.POSITIVE_INFINITY;
+                double minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY;
+                double maxY = Double.NEGATIVE_INFINITY;
+                for (int i = 0, n = swarm.size(); i < n; i++) {
+                    minX = Math.min(minX, swarm.xcor(i));
+                    minY = Math.min(minY, swarm.ycor(i));
+                    maxX = Math.max(maxX, swarm.xcor(i));
+                    maxY = Math.max(maxY, swarm.ycor(i));
+                }
+                double r = sprites.radius(swarm.getShape(), swarm.getTurtleSize()) + AA_MARGIN;
+                x0 = Math.min(x0, (int) Math.max(-1, Math.floor(toScreenX(minX) - r)));
+                y0 = Math.min(y0, (int) Math.max(-1, Math.floor(toScreenY(maxY) - r)));
+                x1 = Math.max(x1, (int) Math.min(getWidth() + 1, Math.ceil(toScreenX(maxX) + r) + 1));
+                y1 = Math.max(y1, (int) Math.min(getHeight() + 1, Math.ceil(toScreenY(minY) + r) + 1));
+            }
+        }
+        Rectangle current = x0 < x1 ? new Rectangle(x0, y0, x1 - x0, y1 - y0) : new Rectangle();
+        Rectangle area = cursorBounds.isEmpty() ? current : current.isEmpty() ? cursorBounds : current.union(cursorBounds);
+        cursorBounds = current;
+        if (!area.isEmpty()) {
+            repaint(area);
+        }
+        if (statsOverlay) {
+            repaint(STATS_BOUNDS);
+        }
+    }
+
     /**
      * Ferma il loop di rendering.
      */
@@ -84,6 +292,34 @@ public class TurtleCanvas extends JPanel {
         this.turtles = turtles;
     }
 
+    /**
+     * Imposta la lista degli sciami da visualizzare.
+     *
+     * @param swarms la lista degli sciami
+     */
+    void setSwarms(List<TurtleSwarm> swarms) {
+        this.swarms = swarms;
+    }
+
+    /**
+     * Imposta le metriche in cui registrare i tempi di swap e di disegno.
+     *
+     * @param metrics le metriche dello schermo
+     */
+    void setMetrics(TurtleMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Mostra o nasconde il riquadro delle metriche disegnato da paintComponent.
+     *
+     * @param show true per mostrare il riquadro
+     */
+    public void setStatsOverlay(boolean show) {
+        statsOverlay = show;
+        repaint(STATS_BOUNDS);
+    }
+
     /**
      * Restituisce un contesto grafico per disegnare sul back buffer.
      * Il contesto ha antialiasing e rendering di alta qualità abilitati.
@@ -93,21 +329,539 @@ public class TurtleCanvas extends JPanel {
      * @return un Graphics2D configurato per il disegno
      */
     public Graphics2D getBufferGraphics() {
-        Graphics2D g2d = backBuffer.createGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-        return g2d;
+        return baseLayer.createGraphics();
+    }
+
+    /**
+     * Restituisce la generazione corrente del back buffer.
+     * Cambia ogni volta che il buffer viene cancellato o sostituito: i contesti
+     * grafici persistenti creati con una generazione precedente vanno ricreati.
+     *
+     * @return la generazione del back buffer
+     */
+    public int getBufferGeneration() {
+        return baseLayer.getGeneration();
+    }
+
+    /**
+     * Restituisce la lista dei comandi di disegno registrati sul livello 0.
+     *
+     * @return la display list del back buffer
+     */
+    public DisplayList getDisplayList() {
+        return baseLayer.getDisplayList();
+    }
+
+    /**
+     * Restituisce la display list di un livello.
+     *
+     * @param id l'id del livello
+     * @return la display list del livello, creato se non esiste
+     */
+    public DisplayList getDisplayList(int id) {
+        return getLayer(id).getDisplayList();
+    }
+
+    /**
+     * Restituisce i lock delle tile del back buffer.
+     * Chi disegna sul back buffer da un thread qualsiasi deve bloccare la zona che tocca.
+     *
+     * @return i lock delle tile
+     */
+    TileLocks getTileLocks() {
+        return baseLayer.getTileLocks();
+    }
+
+    /**
+     * Restituisce il livello con l'id indicato, creandolo se non esiste.
+     * Il livello 0 è il back buffer; gli altri sono trasparenti e vengono
+     * sovrapposti in ordine di id crescente.
+     *
+     * @param id l'id del livello, non negativo
+     * @return il livello
+     */
+    TurtleLayer getLayer(int id) {
+        if (id == 0) {
+            return baseLayer;
+        }
+        if (id < 0) {
+            throw new IllegalArgumentException("Id di livello negativo: " + id);
+        }
+        TurtleLayer layer = findLayer(id);
+        if (layer != null) {
+            return layer;
+        }
+        synchronized (viewLock) {
+            synchronized (swapLock) {
+                layer = findLayer(id);
+                if (layer == null) {
+                    BufferedImage image = createBuffer(backBuffer.getWidth(), backBuffer.getHeight());
+                    layer = new TurtleLayer(this, id, image);
+                    layer.erase(null);
+                    layer.getDisplayList().setListener(drawingListener);
+                    TurtleLayer[] grown = Arrays.copyOf(layers, layers.length + 1);
+                    int i = grown.length - 1;
+                    while (i > 0 && grown[i - 1].getId() > id) {
+                        grown[i] = grown[i - 1];
+                        i--;
+                    }
+                    grown[i] = layer;
+                    layers = grown;
+                }
+                return layer;
+            }
+        }
+    }
+
+    /**
+     * Cerca un livello già creato.
+     */
+    private TurtleLayer findLayer(int id) {
+        for (TurtleLayer layer : layers) {
+            if (layer.getId() == id) {
+                return layer;
+            }
+        }
+        return null;
     }
 
     /**
-     * Cancella il back buffer con il colore di sfondo.
+     * Cancella solo il livello indicato, lasciando intatti gli altri.
+     * Viene ridisegnata solo la zona in cui il livello aveva disegnato.
+     *
+     * @param id l'id del livello
+     */
+    public void clearLayer(int id) {
+        TurtleLayer layer = getLayer(id);
+        if (turtles != null) {
+            for (Turtle turtle : turtles) {
+                turtle.discardPath(layer);
+            }
+        }
+        for (TurtleSwarm swarm : swarms) {
+            swarm.discardTrails(layer);
+        }
+        layer.clear(backgroundColor);
+        if (layer == baseLayer) {
+            markAllDirty();
+        }
+    }
+
+    /**
+     * Indica se un livello deve essere mantenuto tra un frame e l'altro.
+     * In modalità loop {@link TurtleScreen#run()} cancella a ogni frame solo
+     * i livelli non persistenti: un livello persistente viene disegnato una
+     * volta sola e poi solo ricomposto.
+     *
+     * @param id l'id del livello
+     * @param persistent true per non cancellarlo a ogni frame
+     */
+    public void setLayerPersistent(int id, boolean persistent) {
+        getLayer(id).setPersistent(persistent);
+    }
+
+    /**
+     * Inizia l'esportazione SVG di tutto ciò che il canvas ha disegnato e disegnerà.
+     * Il contenuto già registrato viene scritto subito; i comandi successivi
+     * vengono scritti man mano, finché l'esportatore non viene chiuso.
+     *
+     * @param out il Writer di destinazione, chiuso insieme all'esportatore
+     * @return l'esportatore, da chiudere al termine del disegno
+     * @throws IllegalStateException se un'altra esportazione è in corso;
+     *         anche in questo caso {@code out} viene chiuso
+     */
+    public SvgExporter startSvgExport(Writer out) {
+        flushPaths();
+        SvgExporter exporter = new SvgExporter(this, out);
+        synchronized (swapLock) {
+            if (drawingListener != null) {
+                IllegalStateException e = new IllegalStateException("Esportazione SVG già in corso");
+                try {
+                    out.close();
+                } catch (IOException closeError) {
+                    e.addSuppressed(closeError);
+                }
+                throw e;
+            }
+            drawingListener = exporter;
+            attachListener(baseLayer.getDisplayList(), exporter);
+            for (TurtleLayer layer : layers) {
+                attachListener(layer.getDisplayList(), exporter);
+            }
+        }
+        return exporter;
+    }
+
+    /**
+     * Invia a un listener il contenuto di una lista e lo collega ai comandi futuri,
+     * senza che nel frattempo possano aggiungersi altri comandi.
+     */
+    private static void attachListener(DisplayList list, DisplayList.Listener listener) {
+        synchronized (list) {
+            list.emit(listener);
+            list.setListener(listener);
+        }
+    }
+
+    /**
+     * Scollega un esportatore dalle display list dei livelli.
+     */
+    void removeDrawingListener(DisplayList.Listener listener) {
+        synchronized (swapLock) {
+            if (drawingListener != listener) {
+                return;
+            }
+            drawingListener = null;
+            baseLayer.getDisplayList().setListener(null);
+            for (TurtleLayer layer : layers) {
+                layer.getDisplayList().setListener(null);
+            }
+        }
+    }
+
+    /**
+     * Attiva o disattiva il rendering differito.
+     *
+     * <p>Con il rendering differito le tartarughe non disegnano sul buffer ma
+     * registrano solo i comandi nella display list; {@link #swapBuffers()} e
+     * {@link #getImage()} rasterizzano i comandi nuovi in parallelo, a tile,
+     * sul pool ForkJoin comune. Il risultato è identico al disegno diretto,
+     * ma scene con milioni di segmenti usano tutti i core. Richiede che la
+     * display list sia abilitata: se è disabilitata si disegna subito.</p>
+     *
+     * @param deferred true per rasterizzare i disegni solo allo swap
+     */
+    public void setDeferredRendering(boolean deferred) {
+        flushPaths();
+        if (deferred && !deferredRendering) {
+            baseLayer.markRendered();
+            for (TurtleLayer layer : layers) {
+                layer.markRendered();
+            }
+        } else if (!deferred && deferredRendering) {
+            rasterizePending();
+        }
+        deferredRendering = deferred;
+    }
+
+    /**
+     * Verifica se il rendering differito è attivo.
+     *
+     * @return true se i disegni vengono rasterizzati solo allo swap
+     */
+    public boolean isDeferredRendering() {
+        return deferredRendering;
+    }
+
+    /**
+     * Rasterizza i comandi registrati in rendering differito e non ancora disegnati.
+     */
+    private void rasterizePending() {
+        baseLayer.rasterizePending();
+        for (TurtleLayer layer : layers) {
+            layer.rasterizePending();
+        }
+    }
+
+    /**
+     * Cancella tutti i livelli non persistenti, all'inizio di ogni frame.
+     */
+    public void clearTransientLayers() {
+        if (!baseLayer.isPersistent()) {
+            clearLayer(0);
+        }
+        for (TurtleLayer layer : layers) {
+            if (!layer.isPersistent()) {
+                clearLayer(layer.getId());
+            }
+        }
+    }
+
+    /**
+     * Restituisce la trasformazione dalle coordinate turtle a quelle del canvas.
+     *
+     * @return una nuova trasformazione affine mondo → schermo
+     */
+    public AffineTransform getWorldTransform() {
+        return view.toTransform();
+    }
+
+    /**
+     * Restituisce la vista corrente.
+     */
+    TurtleView getView() {
+        return view;
+    }
+
+    /**
+     * Fa corrispondere al canvas il rettangolo turtle indicato, come
+     * {@code setworldcoordinates} del turtle di Python: l'angolo (llx, lly)
+     * va in basso a sinistra e (urx, ury) in alto a destra. Le scale dei due
+     * assi possono essere diverse; spessori, punti e testi restano in pixel.
+     * Il disegno già fatto viene ridisegnato con le nuove coordinate.
+     *
+     * @param llx la X dell'angolo in basso a sinistra
+     * @param lly la Y dell'angolo in basso a sinistra
+     * @param urx la X dell'angolo in alto a destra
+     * @param ury la Y dell'angolo in alto a destra
+     * @throws IllegalArgumentException se il rettangolo è vuoto o capovolto
+     * @throws IllegalStateException se il disegno non può essere ridisegnato,
+     *         vedi {@link #isViewChangeable()}
+     */
+    public void setWorldCoordinates(double llx, double lly, double urx, double ury) {
+        if (!(urx > llx) || !(ury > lly) || Double.isInfinite(urx - llx) || Double.isInfinite(ury - lly)) {
+            throw new IllegalArgumentException("Coordinate del mondo non valide: ("
+                    + llx + ", " + lly + ") - (" + urx + ", " + ury + ")");
+        }
+        changeView(current -> TurtleView.fit(llx, lly, urx, ury, backBuffer.getWidth(), backBuffer.getHeight()));
+    }
+
+    /**
+     * Ingrandisce la vista attorno al centro del canvas.
+     *
+     * @param factor il fattore di ingrandimento (maggiore di 1 per avvicinarsi)
+     */
+    public void zoom(double factor) {
+        checkZoomFactor(factor);
+        changeView(current -> current.zoomed(factor, backBuffer.getWidth() / 2.0, backBuffer.getHeight() / 2.0));
+    }
+
+    /**
+     * Ingrandisce la vista lasciando fermo sul canvas il punto turtle indicato,
+     * ad esempio quello sotto il mouse.
+     *
+     * @param factor il fattore di ingrandimento (maggiore di 1 per avvicinarsi)
+     * @param x la X del punto fisso in coordinate turtle
+     * @param y la Y del punto fisso in coordinate turtle
+     */
+    public void zoom(double factor, double x, double y) {
+        checkZoomFactor(factor);
+        changeView(current -> current.zoomed(factor, current.screenX(x), current.screenY(y)));
+    }
+
+    private static void checkZoomFactor(double factor) {
+        if (!(factor > 0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("Fattore di zoom non valido: " + factor);
+        }
+    }
+
+    /**
+     * Sposta la vista: il disegno scorre di {@code dx} pixel a destra e
+     * {@code dy} pixel in basso, come trascinandolo con il mouse.
+     *
+     * @param dx lo spostamento orizzontale in pixel
+     * @param dy lo spostamento verticale in pixel
+     */
+    public void pan(double dx, double dy) {
+        changeView(current -> current.panned(dx, dy));
+    }
+
+    /**
+     * Verifica se la vista può cambiare. Un cambio di vista cancella i livelli
+     * e li ridisegna dalle display list, quindi non è possibile se una di
+     * queste ha scartato dei comandi perché disabilitata
+     * (vedi {@link DisplayList#isComplete()}): il disegno andrebbe perso.
+     *
+     * @return true se zoom, spostamenti e coordinate del mondo sono disponibili
+     */
+    public boolean isViewChangeable() {
+        if (!baseLayer.getDisplayList().isComplete()) {
+            return false;
+        }
+        for (TurtleLayer layer : layers) {
+            if (!layer.getDisplayList().isComplete()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sposta la vista e poi la ingrandisce attorno a un punto schermo, con un
+     * solo ridisegno. Usato dalla navigazione con il mouse di {@link TurtleScreen}.
+     */
+    void navigate(double dx, double dy, double factor, double sx, double sy) {
+        checkZoomFactor(factor);
+        changeView(current -> current.panned(dx, dy).zoomed(factor, sx, sy));
+    }
+
+    /**
+     * Sceglie zoom e posizione in modo che tutto il disegno registrato nelle
+     * display list sia visibile, con un piccolo margine. Il rapporto tra le
+     * scale dei due assi non cambia. Senza disegni torna alla vista predefinita.
+     */
+    public void zoomToFit() {
+        flushPaths();
+        Rectangle2D extents = getExtents();
+        if (extents == null) {
+            resetView();
+            return;
+        }
+        int w = backBuffer.getWidth();
+        int h = backBuffer.getHeight();
+        changeView(current -> {
+            double ratio = current.scaleY / current.scaleX;
+            double scale = Double.POSITIVE_INFINITY;
+            if (extents.getWidth() > 0) {
+                scale = Math.max(1, w - 2 * FIT_MARGIN) / extents.getWidth();
+            }
+            if (extents.getHeight() > 0) {
+                scale = Math.min(scale, Math.max(1, h - 2 * FIT_MARGIN) / (extents.getHeight() * ratio));
+            }
+            if (Double.isInfinite(scale)) {
+                scale = current.scaleX;
+            }
+            return new TurtleView(scale, scale * ratio, w / 2.0 - extents.getCenterX() * scale,
+                    h / 2.0 + extents.getCenterY() * scale * ratio, 1);
+        });
+    }
+
+    /**
+     * Torna alla vista predefinita: un'unità turtle per pixel, origine al centro.
+     */
+    public void resetView() {
+        changeView(current -> TurtleView.standard(backBuffer.getWidth(), backBuffer.getHeight()));
+    }
+
+    /**
+     * Restituisce il rettangolo in coordinate turtle che contiene tutto ciò che
+     * è registrato nelle display list dei livelli (vedi {@link DisplayList#getExtents()}).
+     * Le estensioni sono aggiornate a ogni comando, quindi la chiamata non
+     * scorre il disegno.
+     *
+     * @return un nuovo rettangolo, o null se non c'è nulla di registrato
+     */
+    public Rectangle2D getExtents() {
+        Rectangle2D extents = baseLayer.getDisplayList().getExtents();
+        for (TurtleLayer layer : layers) {
+            Rectangle2D more = layer.getDisplayList().getExtents();
+            if (more != null) {
+                if (extents == null) {
+                    extents = more;
+                } else {
+                    extents.add(more);
+                }
+            }
+        }
+        return extents;
+    }
+
+    /**
+     * Applica un cambio di vista e ridisegna tutti i livelli dalle display list.
+     *
+     * <p>Le spezzate in costruzione vengono prima scritte nelle liste, così
+     * nulla va perso. Il ridisegno usa il LOD di {@link DisplayList} e salta i
+     * comandi fuori dal canvas; il front buffer resta intatto finché lo swap
+     * finale non presenta il nuovo frame, quindi non c'è sfarfallio.</p>
+     *
+     * <p>Vista, cancellazione e ridisegno avvengono tenendo tutte le tile di
+     * tutti i livelli: le tartarughe disegnano e registrano tenendo le tile che
+     * toccano (vedi {@link TurtleLayer#lockWorld}), quindi ogni loro comando
+     * viene disegnato una sola volta e con la vista giusta. Le spezzate in
+     * costruzione sono in coordinate turtle e non dipendono dalla vista.</p>
+     *
+     * @throws IllegalStateException se un livello non può essere ridisegnato
+     *         (vedi {@link #isViewChangeable()})
+     */
+    private void changeView(UnaryOperator<TurtleView> change) {
+        synchronized (viewLock) {
+            if (!isViewChangeable()) {
+                throw new IllegalStateException(
+                        "Vista non modificabile: la display list di un livello è stata disabilitata");
+            }
+            flushPaths();
+            TurtleLayer[] above = layers;
+            long baseMask = baseLayer.getTileLocks().lockAll();
+            for (TurtleLayer layer : above) {
+                layer.getTileLocks().lockAll();
+            }
+            try {
+                view = change.apply(view);
+                baseLayer.erase(backgroundColor);
+                for (TurtleLayer layer : above) {
+                    layer.erase(null);
+                }
+                baseLayer.replay(true);
+                for (TurtleLayer layer : above) {
+                    layer.replay(true);
+                }
+                markAllDirty();
+            } finally {
+                for (TurtleLayer layer : above) {
+                    layer.getTileLocks().unlock(TileLocks.ALL);
+                }
+                baseLayer.getTileLocks().unlock(baseMask);
+            }
+        }
+        swapBuffers();
+    }
+
+    /**
+     * Segna come modificata una zona del back buffer, in coordinate schermo.
+     * La zona viene allargata di {@code pad} pixel più il margine per l'antialiasing.
+     *
+     * @param x0 la X di un angolo
+     * @param y0 la Y di un angolo
+     * @param x1 la X dell'angolo opposto
+     * @param y1 la Y dell'angolo opposto
+     * @param pad il margine da aggiungere, tipicamente metà spessore della penna
+     */
+    public void markDirty(double x0, double y0, double x1, double y1, double pad) {
+        double margin = pad + AA_MARGIN;
+        int ix0 = (int) Math.floor(Math.min(x0, x1) - margin);
+        int iy0 = (int) Math.floor(Math.min(y0, y1) - margin);
+        int ix1 = (int) Math.ceil(Math.max(x0, x1) + margin);
+        int iy1 = (int) Math.ceil(Math.max(y0, y1) + margin);
+        synchronized (dirtyLock) {
+            dirtyX0 = Math.min(dirtyX0, ix0);
+            dirtyY0 = Math.min(dirtyY0, iy0);
+            dirtyX1 = Math.max(dirtyX1, ix1);
+            dirtyY1 = Math.max(dirtyY1, iy1);
+        }
+    }
+
+    /**
+     * Segna come modificato l'intero back buffer.
+     */
+    private void markAllDirty() {
+        synchronized (dirtyLock) {
+            dirtyX0 = 0;
+            dirtyY0 = 0;
+            dirtyX1 = backBuffer.getWidth();
+            dirtyY1 = backBuffer.getHeight();
+        }
+    }
+
+    /**
+     * Aggiunge alla zona dello swap corrente l'area di una spezzata in costruzione.
+     * Chiamato dalle tartarughe durante {@link #swapBuffers()}.
+     */
+    void includeOverlay(double x0, double y0, double x1, double y1, double pad) {
+        double margin = pad + AA_MARGIN;
+        nextOverlayX0 = Math.min(nextOverlayX0, (int) Math.floor(x0 - margin));
+        nextOverlayY0 = Math.min(nextOverlayY0, (int) Math.floor(y0 - margin));
+        nextOverlayX1 = Math.max(nextOverlayX1, (int) Math.ceil(x1 + margin));
+        nextOverlayY1 = Math.max(nextOverlayY1, (int) Math.ceil(y1 + margin));
+    }
+
+    /**
+     * Cancella il back buffer con il colore di sfondo e tutti gli altri livelli.
+     * Svuota anche le display list.
      */
     public void clearBuffer() {
-        Graphics2D g2d = backBuffer.createGraphics();
-        g2d.setColor(backgroundColor);
-        g2d.fillRect(0, 0, backBuffer.getWidth(), backBuffer.getHeight());
-        g2d.dispose();
+        if (turtles != null) {
+            for (Turtle turtle : turtles) {
+                turtle.discardPath();
+            }
+        }
+        for (TurtleSwarm swarm : swarms) {
+            swarm.discardTrails();
+        }
+        baseLayer.clear(backgroundColor);
+        for (TurtleLayer layer : layers) {
+            layer.clear(backgroundColor);
+        }
+        markAllDirty();
     }
 
     /**
@@ -119,32 +873,298 @@ public class TurtleCanvas extends JPanel {
         g2d.fillRect(0, 0, frontBuffer.getWidth(), frontBuffer.getHeight());
         g2d.dispose();
 
-        g2d = backBuffer.createGraphics();
-        g2d.setColor(backgroundColor);
-        g2d.fillRect(0, 0, backBuffer.getWidth(), backBuffer.getHeight());
-        g2d.dispose();
+        baseLayer.erase(backgroundColor);
+        markAllDirty();
+        synchronized (swapLock) {
+            uploadX0 = 0;
+            uploadY0 = 0;
+            uploadX1 = frontBuffer.getWidth();
+            uploadY1 = frontBuffer.getHeight();
+        }
+        if (!headless) {
+            repaint();
+        }
     }
 
     /**
-     * Copia il contenuto del back buffer nel front buffer.
+     * Copia nel front buffer la zona del back buffer modificata dall'ultimo swap
+     * e chiede a Swing di ridisegnare solo quella zona.
+     * Le spezzate ancora in costruzione delle tartarughe vengono disegnate
+     * solo sul front buffer, così crescono senza sovrapporsi a se stesse;
+     * la zona che occupavano allo swap precedente viene ripristinata.
+     * In modalità headless non c'è nulla da presentare e la copia viene saltata.
+     * Se è attiva una registrazione, il frame viene anche catturato.
      * Questa operazione è thread-safe.
      */
     public void swapBuffers() {
+        long start = System.nanoTime();
+        for (TurtleSwarm swarm : swarms) {
+            swarm.flushTrails();
+        }
+        if (deferredRendering) {
+            rasterizePending();
+        }
+        baseLayer.collectDirty();
+        for (TurtleLayer layer : layers) {
+            layer.collectDirty();
+        }
+        boolean presented;
+        int x0;
+        int y0;
+        int x1;
+        int y1;
         synchronized (swapLock) {
-            Graphics2D g = frontBuffer.createGraphics();
-            g.drawImage(backBuffer, 0, 0, null);
-            g.dispose();
+            synchronized (dirtyLock) {
+                x0 = dirtyX0;
+                y0 = dirtyY0;
+                x1 = dirtyX1;
+                y1 = dirtyY1;
+                dirtyX0 = Integer.MAX_VALUE;
+                dirtyY0 = Integer.MAX_VALUE;
+                dirtyX1 = Integer.MIN_VALUE;
+                dirtyY1 = Integer.MIN_VALUE;
+            }
+
+            nextOverlayX0 = Integer.MAX_VALUE;
+            nextOverlayY0 = Integer.MAX_VALUE;
+            nextOverlayX1 = Integer.MIN_VALUE;
+            nextOverlayY1 = Integer.MIN_VALUE;
+            if (turtles != null) {
+                for (Turtle turtle : turtles) {
+                    turtle.includePathBounds(this);
+                }
+            }
+            x0 = Math.max(0, Math.min(x0, Math.min(overlayX0, nextOverlayX0)));
+            y0 = Math.max(0, Math.min(y0, Math.min(overlayY0, nextOverlayY0)));
+            x1 = Math.min(backBuffer.getWidth(), Math.max(x1, Math.max(overlayX1, nextOverlayX1)));
+            y1 = Math.min(backBuffer.getHeight(), Math.max(y1, Math.max(overlayY1, nextOverlayY1)));
+            overlayX0 = nextOverlayX0;
+            overlayY0 = nextOverlayY0;
+            overlayX1 = nextOverlayX1;
+            overlayY1 = nextOverlayY1;
+            presented = !headless && x0 < x1 && y0 < y1;
+            if (presented) {
+                Graphics2D g = frontBuffer.createGraphics();
+                g.clipRect(x0, y0, x1 - x0, y1 - y0);
+                g.setComposite(AlphaComposite.Src);
+                composite(g, baseLayer, x0, y0, x1, y1);
+                g.setComposite(AlphaComposite.SrcOver);
+                boolean overlays = turtles != null && nextOverlayX0 < nextOverlayX1;
+                if (overlays) {
+                    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                    g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+                    paintPaths(g, baseLayer);
+                }
+                for (TurtleLayer layer : layers) {
+                    composite(g, layer, x0, y0, x1, y1);
+                    if (overlays) {
+                        paintPaths(g, layer);
+                    }
+                }
+                g.dispose();
+
+                uploadX0 = Math.min(uploadX0, x0);
+                uploadY0 = Math.min(uploadY0, y0);
+                uploadX1 = Math.max(uploadX1, x1);
+                uploadY1 = Math.max(uploadY1, y1);
+            }
+        }
+        if (presented) {
+            repaint(x0, y0, x1 - x0, y1 - y0);
+        }
+        FrameRecorder recorder = this.recorder;
+        if (recorder != null) {
+            recorder.capture();
+        }
+        TurtleMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordSwap(System.nanoTime() - start);
         }
     }
 
     /**
-     * Imposta il colore di sfondo e cancella i buffer.
+     * Copia una zona di un livello sul contesto indicato, bloccandone le tile.
+     */
+    private static void composite(Graphics2D g, TurtleLayer layer, int x0, int y0, int x1, int y1) {
+        long mask = layer.getTileLocks().lock(x0, y0, x1, y1);
+        try {
+            g.drawImage(layer.getImage(), x0, y0, x1, y1, x0, y0, x1, y1, null);
+        } finally {
+            layer.getTileLocks().unlock(mask);
+        }
+    }
+
+    /**
+     * Disegna le spezzate in costruzione delle tartarughe di un livello.
+     */
+    private void paintPaths(Graphics2D g, TurtleLayer layer) {
+        for (Turtle turtle : turtles) {
+            turtle.paintPath(g, layer);
+        }
+    }
+
+    /**
+     * Disegna sul back buffer le spezzate ancora in costruzione di tutte le tartarughe
+     * e le scie non ancora disegnate degli sciami.
+     * Dopo questa chiamata back buffer e display list contengono tutto il disegno.
+     */
+    public void flushPaths() {
+        if (turtles != null) {
+            for (Turtle turtle : turtles) {
+                turtle.flushPath();
+            }
+        }
+        for (TurtleSwarm swarm : swarms) {
+            swarm.flushTrails();
+        }
+    }
+
+    /**
+     * Restituisce una copia del contenuto disegnato finora.
+     * Utile soprattutto in modalità headless per salvare il risultato.
+     *
+     * @return una nuova immagine con il contenuto di tutti i livelli
+     */
+    public BufferedImage getImage() {
+        flushPaths();
+        if (deferredRendering) {
+            rasterizePending();
+        }
+        int w = backBuffer.getWidth();
+        int h = backBuffer.getHeight();
+        BufferedImage copy = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = copy.createGraphics();
+        composite(g, baseLayer, 0, 0, w, h);
+        for (TurtleLayer layer : layers) {
+            composite(g, layer, 0, 0, w, h);
+        }
+        g.dispose();
+        return copy;
+    }
+
+    /**
+     * Restituisce una copia di quanto visibile ora, senza toccare le tartarughe.
+     *
+     * <p>A differenza di {@link #getImage()} le spezzate in costruzione non vengono
+     * scritte sul back buffer ma solo disegnate sulla copia, quindi la chiamata
+     * è sicura da qualunque thread mentre le tartarughe disegnano. I livelli
+     * vengono copiati uno alla volta, bloccandone le tile solo per la copia.</p>
+     *
+     * @return una nuova immagine ARGB con il contenuto di tutti i livelli
+     */
+    public BufferedImage snapshot() {
+        BufferedImage copy = new BufferedImage(backBuffer.getWidth(), backBuffer.getHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+        snapshotInto(copy);
+        return copy;
+    }
+
+    /**
+     * Copia quanto visibile ora in un'immagine esistente, come {@link #snapshot()}.
+     * Permette di riutilizzare le stesse immagini per molti frame.
+     *
+     * @param copy l'immagine di destinazione, delle dimensioni del canvas
+     */
+    void snapshotInto(BufferedImage copy) {
+        if (deferredRendering) {
+            rasterizePending();
+        }
+        int w = backBuffer.getWidth();
+        int h = backBuffer.getHeight();
+        Graphics2D g = copy.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        composite(g, baseLayer, 0, 0, w, h);
+        g.setComposite(AlphaComposite.SrcOver);
+        if (turtles != null) {
+            paintPaths(g, baseLayer);
+        }
+        for (TurtleLayer layer : layers) {
+            composite(g, layer, 0, 0, w, h);
+            if (turtles != null) {
+                paintPaths(g, layer);
+            }
+        }
+        g.dispose();
+    }
+
+    /**
+     * Imposta la registrazione che cattura un frame a ogni {@link #swapBuffers()}.
+     *
+     * @param recorder la registrazione, o null per nessuna
+     * @throws IllegalStateException se un'altra registrazione è in corso
+     */
+    synchronized void setRecorder(FrameRecorder recorder) {
+        if (recorder != null && this.recorder != null) {
+            throw new IllegalStateException("Registrazione già in corso");
+        }
+        this.recorder = recorder;
+    }
+
+    /**
+     * Restituisce la registrazione in corso.
+     *
+     * @return la registrazione, o null se non ce n'è una
+     */
+    FrameRecorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Ridisegna il contenuto del canvas in un'immagine di dimensioni diverse.
+     * Il disegno, visto come nella vista corrente, viene scalato per adattarsi
+     * alla nuova dimensione mantenendo le proporzioni, ridisegnando i comandi registrati senza rieseguire il programma.
+     * Le scene grandi vengono ridisegnate a tile in parallelo.
+     *
+     * @param width la larghezza dell'immagine
+     * @param height l'altezza dell'immagine
+     * @return una nuova immagine con il disegno ridisegnato
+     */
+    public BufferedImage render(int width, int height) {
+        flushPaths();
+        double scale = Math.min(width / (double) backBuffer.getWidth(), height / (double) backBuffer.getHeight());
+        TurtleView scaled = view.scaled(scale, (width - backBuffer.getWidth() * scale) / 2,
+                (height - backBuffer.getHeight() * scale) / 2);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(backgroundColor);
+        g2d.fillRect(0, 0, width, height);
+        g2d.dispose();
+        renderLayer(baseLayer, image, scaled);
+        for (TurtleLayer layer : layers) {
+            renderLayer(layer, image, scaled);
+        }
+        return image;
+    }
+
+    /**
+     * Ridisegna la display list di un livello su un'immagine, a tile in parallelo.
+     */
+    private static void renderLayer(TurtleLayer layer, BufferedImage image, TurtleView view) {
+        DisplayList list = layer.getDisplayList();
+        synchronized (list) {
+            TileRenderer.render(list, 0, list.size(), image, view, false);
+        }
+    }
+
+    /**
+     * Imposta il colore di sfondo e ridisegna il contenuto sul nuovo sfondo.
      *
      * @param color il nuovo colore di sfondo
      */
     public void setBackgroundColor(Color color) {
         this.backgroundColor = color;
+        flushPaths();
         clearBothBuffers();
+        if (baseLayer.getDisplayList().size() > 0) {
+            baseLayer.replay(false);
+        }
+        if (baseLayer.getDisplayList().size() > 0 || layers.length > 0) {
+            swapBuffers();
+        }
     }
 
     /**
@@ -157,14 +1177,14 @@ public class TurtleCanvas extends JPanel {
     }
 
     /**
-     * Converte una coordinata X del mondo turtle in coordinata schermo.
-     * L'origine del mondo turtle è al centro del canvas.
+     * Converte una coordinata X del mondo turtle in coordinata schermo,
+     * secondo la vista corrente (per default l'origine è al centro del canvas).
      *
      * @param x la coordinata X nel sistema turtle
      * @return la coordinata X sullo schermo
      */
     public double toScreenX(double x) {
-        return backBuffer.getWidth() / 2.0 + x;
+        return view.screenX(x);
     }
 
     /**
@@ -175,144 +1195,195 @@ public class TurtleCanvas extends JPanel {
      * @return la coordinata Y sullo schermo
      */
     public double toScreenY(double y) {
-        return backBuffer.getHeight() / 2.0 - y;
+        return view.screenY(y);
+    }
+
+    /**
+     * Converte una coordinata X dello schermo, ad esempio del mouse, in coordinata turtle.
+     *
+     * @param x la coordinata X sullo schermo
+     * @return la coordinata X nel sistema turtle
+     */
+    public double toWorldX(double x) {
+        return view.worldX(x);
+    }
+
+    /**
+     * Converte una coordinata Y dello schermo in coordinata turtle.
+     *
+     * @param y la coordinata Y sullo schermo
+     * @return la coordinata Y nel sistema turtle
+     */
+    public double toWorldY(double y) {
+        return view.worldY(y);
     }
 
     /**
      * Disegna il contenuto del canvas.
-     * Visualizza il front buffer e i cursori delle tartarughe visibili.
+     * Visualizza il front buffer e i cursori delle tartarughe visibili,
+     * più il riquadro delle metriche se è attivo (vedi {@link #setStatsOverlay(boolean)}).
      */
     @Override
     protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
 
-        synchronized (swapLock) {
-            g2d.drawImage(frontBuffer, 0, 0, null);
-        }
+        boolean restored = false;
+        do {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            int status = screenImage == null ? VolatileImage.IMAGE_INCOMPATIBLE : screenImage.validate(gc);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                if (screenImage != null) {
+                    screenImage.flush();
+                }
+                screenImage = gc.createCompatibleVolatileImage(frontBuffer.getWidth(), frontBuffer.getHeight(),
+                        Transparency.TRANSLUCENT);
+                restored = true;
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                restored = true;
+            }
+            uploadFrontBuffer(restored);
+            g2d.drawImage(screenImage, 0, 0, null);
+            restored = true;
+        } while (screenImage.contentsLost());
 
         if (turtles != null) {
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             for (Turtle turtle : turtles) {
                 if (turtle.isVisible()) {
                     drawTurtleCursor(g2d, turtle);
                 }
             }
         }
-    }
-
-    /**
-     * Disegna il cursore di una tartaruga alla sua posizione corrente.
-     *
-     * @param g2d il contesto grafico
-     * @param turtle la tartaruga da disegnare
-     */
-    private void drawTurtleCursor(Graphics2D g2d, Turtle turtle) {
-        double x = turtle.xcor();
-        double y = turtle.ycor();
-        double heading = turtle.heading();
-        double size = turtle.getTurtleSize();
-        String shape = turtle.getShape();
-        Color fillColor = turtle.getFillColor();
-
-        double screenX = toScreenX(x);
-        double screenY = toScreenY(y);
-
-        AffineTransform oldTransform = g2d.getTransform();
-        g2d.translate(screenX, screenY);
-        g2d.rotate(-Math.toRadians(heading));
-
-        g2d.setColor(fillColor);
-
-        switch (shape) {
-            case "arrow" -> drawArrowShape(g2d, size);
-            case "classic" -> drawClassicShape(g2d, size);
-            case "turtle" -> drawTurtleShape(g2d, size);
-            case "circle" -> drawCircleShape(g2d, size);
-            case "square" -> drawSquareShape(g2d, size);
-            case "blank" -> {}
-            default -> drawArrowShape(g2d, size);
+        for (TurtleSwarm swarm : swarms) {
+            if (swarm.isVisible()) {
+                drawSwarmCursors(g2d, swarm);
+            }
         }
 
-        g2d.setTransform(oldTransform);
+        TurtleMetrics metrics = this.metrics;
+        if (metrics != null) {
+            if (statsOverlay) {
+                drawStats(g2d, metrics);
+            }
+            metrics.recordPaint(System.nanoTime() - start);
+        }
     }
 
     /**
-     * Disegna la forma "arrow" (freccia).
+     * Disegna il riquadro delle metriche nell'angolo in alto a sinistra.
      */
-    private void drawArrowShape(Graphics2D g2d, double size) {
-        double s = 10 * size;
-        Path2D.Double path = new Path2D.Double();
-        path.moveTo(s, 0);
-        path.lineTo(-s * 0.7, -s * 0.5);
-        path.lineTo(-s * 0.4, 0);
-        path.lineTo(-s * 0.7, s * 0.5);
-        path.closePath();
-        g2d.fill(path);
-        g2d.setColor(Color.BLACK);
-        g2d.draw(path);
+    private void drawStats(Graphics2D g2d, TurtleMetrics metrics) {
+        String[] lines = {
+                String.format("%.1f FPS  frame p50 %.2f ms", metrics.getFps(), metrics.getFrameTimeP50()),
+                String.format("p95 %.2f ms  p99 %.2f ms", metrics.getFrameTimeP95(), metrics.getFrameTimeP99()),
+                String.format("loop %.2f ms  swap %.2f ms", metrics.getLoopTimeMean(), metrics.getSwapTimeMean()),
+                String.format("paint %.2f ms  swap %d", metrics.getPaintTimeMean(), metrics.getSwapCount()),
+                String.format("segmenti %d  punti %d", metrics.getSegments(), metrics.getDots()),
+                String.format("riempimenti %d  testi %d", metrics.getFills(), metrics.getTexts()),
+                String.format("%d tartarughe, %.0f comandi/s", metrics.getTurtleCount(), metrics.getCommandRate())
+        };
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setColor(new Color(0, 0, 0, 170));
+        g2d.fillRect(STATS_BOUNDS.x, STATS_BOUNDS.y, STATS_BOUNDS.width, STATS_BOUNDS.height);
+        g2d.setColor(Color.WHITE);
+        g2d.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        int lineHeight = g2d.getFontMetrics().getHeight();
+        int y = STATS_BOUNDS.y + 4 + g2d.getFontMetrics().getAscent();
+        for (String line : lines) {
+            g2d.drawString(line, STATS_BOUNDS.x + 6, y);
+            y += lineHeight;
+        }
     }
 
     /**
-     * Disegna la forma "classic" (triangolo classico).
+     * Carica nell'immagine accelerata la zona del front buffer cambiata
+     * dall'ultimo caricamento, oppure tutto il front buffer se il contenuto
+     * dell'immagine accelerata è andato perso.
+     *
+     * @param all true per ricaricare l'intero front buffer
      */
-    private void drawClassicShape(Graphics2D g2d, double size) {
-        double s = 6 * size;
-        Path2D.Double path = new Path2D.Double();
-        path.moveTo(s, 0);
-        path.lineTo(-s, -s * 0.5);
-        path.lineTo(-s * 0.5, 0);
-        path.lineTo(-s, s * 0.5);
-        path.closePath();
-        g2d.fill(path);
-        g2d.setColor(Color.BLACK);
-        g2d.draw(path);
+    private void uploadFrontBuffer(boolean all) {
+        synchronized (swapLock) {
+            int x0 = all ? 0 : uploadX0;
+            int y0 = all ? 0 : uploadY0;
+            int x1 = all ? frontBuffer.getWidth() : uploadX1;
+            int y1 = all ? frontBuffer.getHeight() : uploadY1;
+            uploadX0 = Integer.MAX_VALUE;
+            uploadY0 = Integer.MAX_VALUE;
+            uploadX1 = Integer.MIN_VALUE;
+            uploadY1 = Integer.MIN_VALUE;
+            if (x0 >= x1 || y0 >= y1) {
+                return;
+            }
+            Graphics2D g = screenImage.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(frontBuffer, x0, y0, x1, y1, x0, y0, x1, y1, null);
+            g.dispose();
+        }
     }
 
     /**
-     * Disegna la forma "turtle" (tartaruga stilizzata).
+     * Disegna il cursore di una tartaruga alla sua posizione corrente,
+     * copiando lo sprite già pronto per la sua forma, dimensione, colore e direzione.
+     *
+     * @param g2d il contesto grafico
+     * @param turtle la tartaruga da disegnare
      */
-    private void drawTurtleShape(Graphics2D g2d, double size) {
-        double s = 10 * size;
-        Ellipse2D.Double body = new Ellipse2D.Double(-s * 0.6, -s * 0.4, s * 1.2, s * 0.8);
-        g2d.fill(body);
-
-        Ellipse2D.Double head = new Ellipse2D.Double(s * 0.4, -s * 0.15, s * 0.4, s * 0.3);
-        g2d.fill(head);
-
-        double legSize = s * 0.25;
-        Ellipse2D.Double leg1 = new Ellipse2D.Double(-s * 0.4, -s * 0.55, legSize, legSize);
-        Ellipse2D.Double leg2 = new Ellipse2D.Double(s * 0.15, -s * 0.55, legSize, legSize);
-        Ellipse2D.Double leg3 = new Ellipse2D.Double(-s * 0.4, s * 0.3, legSize, legSize);
-        Ellipse2D.Double leg4 = new Ellipse2D.Double(s * 0.15, s * 0.3, legSize, legSize);
-        g2d.fill(leg1);
-        g2d.fill(leg2);
-        g2d.fill(leg3);
-        g2d.fill(leg4);
-
-        g2d.setColor(Color.BLACK);
-        g2d.draw(body);
+    private void drawTurtleCursor(Graphics2D g2d, Turtle turtle) {
+        TurtleSprites.Sprite sprite = sprites.sprite(turtle.getShape(), turtle.getTurtleSize(),
+                turtle.getFillArgb(), turtle.heading());
+        if (sprite == null) {
+            return;
+        }
+        int x = (int) Math.round(toScreenX(turtle.xcor())) - sprite.anchorX;
+        int y = (int) Math.round(toScreenY(turtle.ycor())) - sprite.anchorY;
+        g2d.drawImage(sprite.image, x, y, null);
     }
 
     /**
-     * Disegna la forma "circle" (cerchio).
+     * Disegna i cursori di uno sciame in un solo passaggio: salta le tartarughe
+     * fuori dalla zona da ridisegnare e cerca gli sprite nella cache solo
+     * quando il colore cambia da una tartaruga alla successiva.
+     *
+     * @param g2d il contesto grafico
+     * @param swarm lo sciame da disegnare
      */
-    private void drawCircleShape(Graphics2D g2d, double size) {
-        double s = 8 * size;
-        Ellipse2D.Double circle = new Ellipse2D.Double(-s, -s, s * 2, s * 2);
-        g2d.fill(circle);
-        g2d.setColor(Color.BLACK);
-        g2d.draw(circle);
+    private void drawSwarmCursors(Graphics2D g2d, TurtleSwarm swarm) {
+        String shape = swarm.getShape();
+        double size = swarm.getTurtleSize();
+        double r = sprites.radius(shape, size);
+        Rectangle clip = g2d.getClipBounds();
+        double minX = (clip != null ? clip.x : 0) - r;
+        double minY = (clip != null ? clip.y : 0) - r;
+        double maxX = (clip != null ? clip.x + clip.width : getWidth()) + r;
+        double maxY = (clip != null ? clip.y + clip.height : getHeight()) + r;
+        TurtleSprites.Rotations rotations = null;
+        int rotationsArgb = 0;
+        for (int i = 0, n = swarm.size(); i < n; i++) {
+            double sx = toScreenX(swarm.xcor(i));
+            double sy = toScreenY(swarm.ycor(i));
+            if (sx < minX || sx > maxX || sy < minY || sy > maxY) {
+                continue;
+            }
+            int argb = swarm.getPenArgb(i);
+            if (rotations == null || argb != rotationsArgb) {
+                rotations = sprites.rotations(shape, size, argb);
+                if (rotations == null) {
+                    return;
+                }
+                rotationsArgb = argb;
+            }
+            TurtleSprites.Sprite sprite = rotations.get(swarm.heading(i));
+            g2d.drawImage(sprite.image, (int) Math.round(sx) - sprite.anchorX,
+                    (int) Math.round(sy) - sprite.anchorY, null);
+        }
     }
 
     /**
-     * Disegna la forma "square" (quadrato).
+     * Restituisce le forme dei cursori e la cache dei loro sprite.
      */
-    private void drawSquareShape(Graphics2D g2d, double size) {
-        double s = 8 * size;
-        Rectangle2D.Double square = new Rectangle2D.Double(-s, -s, s * 2, s * 2);
-        g2d.fill(square);
-        g2d.setColor(Color.BLACK);
-        g2d.draw(square);
+    TurtleSprites getSprites() {
+        return sprites;
     }
 }
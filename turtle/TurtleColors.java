@@ -0,0 +1,137 @@
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Colori della libreria come interi ARGB impacchettati.
+ *
+ * <p>Le tartarughe, il contesto di disegno e le display list portano i colori
+ * come {@code int}; un oggetto {@link Color} serve solo quando si chiama
+ * {@link Graphics2D#setColor(Color)} o un getter pubblico, e viene preso da
+ * una cache condivisa invece di essere allocato. Anche le stringhe passate a
+ * {@link Turtle#parseColor(String)} vengono analizzate una volta sola.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TurtleColors {
+
+    /** Nero opaco, il colore predefinito di penna e riempimento */
+    static final int BLACK = 0xFF000000;
+
+    /** Colori predefiniti accessibili per nome */
+    private static final Map<String, Integer> NAMES = new HashMap<>();
+
+    static {
+        NAMES.put("red", Color.RED.getRGB());
+        NAMES.put("blue", Color.BLUE.getRGB());
+        NAMES.put("green", Color.GREEN.getRGB());
+        NAMES.put("black", Color.BLACK.getRGB());
+        NAMES.put("white", Color.WHITE.getRGB());
+        NAMES.put("yellow", Color.YELLOW.getRGB());
+        NAMES.put("orange", Color.ORANGE.getRGB());
+        NAMES.put("purple", 0xFF800080);
+        NAMES.put("pink", Color.PINK.getRGB());
+        NAMES.put("cyan", Color.CYAN.getRGB());
+        NAMES.put("magenta", Color.MAGENTA.getRGB());
+        NAMES.put("brown", 0xFF8B4513);
+        NAMES.put("gray", Color.GRAY.getRGB());
+        NAMES.put("grey", Color.GRAY.getRGB());
+    }
+
+    /** Numero massimo di stringhe diverse ricordate da {@link #parse(String)} */
+    private static final int MAX_PARSED = 4096;
+
+    /** Stringhe già analizzate, così come sono state passate */
+    private static final ConcurrentHashMap<String, Integer> PARSED = new ConcurrentHashMap<>();
+
+    /** Dimensione della cache dei Color, come potenza di 2 */
+    private static final int CACHE_SIZE = 4096;
+
+    /**
+     * Cache a indirizzamento diretto dei Color: una collisione sostituisce la
+     * voce precedente. Le scritture concorrenti sono innocue perché Color è
+     * immutabile e ha campi final, quindi non serve sincronizzazione.
+     */
+    private static final Color[] CACHE = new Color[CACHE_SIZE];
+
+    private TurtleColors() {
+    }
+
+    /**
+     * Restituisce un Color con il valore ARGB indicato, riusando quello già
+     * creato per lo stesso valore finché non viene sostituito nella cache.
+     *
+     * @param argb il colore come 0xAARRGGBB
+     * @return il Color corrispondente
+     */
+    static Color color(int argb) {
+        int index = (argb * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(CACHE_SIZE));
+        Color cached = CACHE[index];
+        if (cached != null && cached.getRGB() == argb) {
+            return cached;
+        }
+        Color created = new Color(argb, true);
+        CACHE[index] = created;
+        return created;
+    }
+
+    /**
+     * Converte un nome di colore o un codice esadecimale in ARGB.
+     * Le stringhe già viste vengono trovate senza lavoro né allocazioni.
+     *
+     * @param text il nome (es. "red") o il codice ("#FF0000", "#F00")
+     * @return il colore, nero se la stringa non è riconosciuta
+     */
+    static int parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return BLACK;
+        }
+        Integer cached = PARSED.get(text);
+        if (cached != null) {
+            return cached;
+        }
+        int argb = parseUncached(text);
+        if (PARSED.size() < MAX_PARSED) {
+            PARSED.put(text, argb);
+        }
+        return argb;
+    }
+
+    private static int parseUncached(String text) {
+        String lower = text.toLowerCase().trim();
+        Integer named = NAMES.get(lower);
+        if (named != null) {
+            return named;
+        }
+        if (lower.startsWith("#")) {
+            if (lower.length() == 4) {
+                int r = hexDigit(lower.charAt(1));
+                int g = hexDigit(lower.charAt(2));
+                int b = hexDigit(lower.charAt(3));
+                if ((r | g | b) >= 0) {
+                    return 0xFF000000 | r * 0x110000 | g * 0x1100 | b * 0x11;
+                }
+            } else if (lower.length() == 7) {
+                int rgb = 0;
+                for (int i = 1; i < 7; i++) {
+                    int digit = hexDigit(lower.charAt(i));
+                    if (digit < 0) {
+                        return BLACK;
+                    }
+                    rgb = rgb << 4 | digit;
+                }
+                return 0xFF000000 | rgb;
+            }
+        }
+        return BLACK;
+    }
+
+    /**
+     * @return il valore della cifra esadecimale, -1 se non lo è
+     */
+    private static int hexDigit(char c) {
+        return Character.digit(c, 16);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Un evento di input dello schermo: tasto premuto o rilasciato, pulsante del
+ * mouse premuto o rilasciato, movimento del mouse.
+ *
+ * <p>Si ottiene con {@link TurtleScreen#pollEvent()} o nei callback registrati
+ * con {@link TurtleScreen#onKey(java.util.function.Consumer)} e
+ * {@link TurtleScreen#onClick(java.util.function.Consumer)}.
+ * Le coordinate sono quelle delle tartarughe, con l'origine al centro dello schermo.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public final class TurtleEvent {
+
+    /**
+     * Il tipo di un evento.
+     */
+    public enum Type {
+        KEY_PRESSED, KEY_RELEASED, MOUSE_PRESSED, MOUSE_RELEASED, MOUSE_MOVED
+    }
+
+    private final Type type;
+    private final long time;
+    private final String key;
+    private final int keyCode;
+    private final double x;
+    private final double y;
+    private final int button;
+
+    TurtleEvent(Type type, long time, String key, int keyCode, double x, double y, int button) {
+        this.type = type;
+        this.time = time;
+        this.key = key;
+        this.keyCode = keyCode;
+        this.x = x;
+        this.y = y;
+        this.button = button;
+    }
+
+    /**
+     * Restituisce il tipo dell'evento.
+     *
+     * @return il tipo
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Restituisce l'istante in cui l'evento è arrivato allo schermo.
+     *
+     * @return il valore di {@link System#nanoTime()} alla ricezione
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Restituisce il nome del tasto, come {@link TurtleScreen#getLastKey()}.
+     *
+     * @return il nome (es. "a", "space", "up"), null per gli eventi del mouse
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Restituisce il codice del tasto.
+     *
+     * @return il codice {@code KeyEvent.VK_...}, 0 per gli eventi del mouse
+     */
+    public int getKeyCode() {
+        return keyCode;
+    }
+
+    /**
+     * Restituisce la coordinata X del mouse al momento dell'evento.
+     *
+     * @return la X nel sistema delle tartarughe
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Restituisce la coordinata Y del mouse al momento dell'evento.
+     *
+     * @return la Y nel sistema delle tartarughe
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Restituisce il pulsante del mouse.
+     *
+     * @return 1 sinistro, 2 centrale, 3 destro; 0 per i tasti e i movimenti
+     */
+    public int getButton() {
+        return button;
+    }
+
+    /**
+     * Verifica se l'evento riguarda la tastiera.
+     *
+     * @return true per KEY_PRESSED e KEY_RELEASED
+     */
+    public boolean isKey() {
+        return type == Type.KEY_PRESSED || type == Type.KEY_RELEASED;
+    }
+
+    @Override
+    public String toString() {
+        return isKey() ? type + " " + key : type + " (" + x + ", " + y + ") " + button;
+    }
+}
@@ -0,0 +1,364 @@
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Contesto di disegno persistente di una tartaruga.
+ *
+ * <p>Mantiene aperto un unico {@link Graphics2D} sul livello della tartaruga,
+ * applica colore e spessore solo quando cambiano e riutilizza le forme
+ * geometriche, così un {@code forward()} senza cambi di stato non alloca
+ * nulla. Il contesto viene ricreato solo quando il livello viene cancellato
+ * (vedi {@link TurtleLayer#getGeneration()}).</p>
+ *
+ * <p>I disegni sono in coordinate turtle e vengono anche registrati nella
+ * display list del livello. Ogni disegno blocca solo le tile del livello che
+ * tocca (vedi {@link TurtleLayer#lockWorld}), così tartarughe guidate da thread
+ * diversi possono disegnare in parallelo; la registrazione avviene prima di
+ * rilasciarle, quindi un cambio di vista trova ogni comando o già sul buffer e
+ * nella lista, o in nessuno dei due.
+ * Con il rendering differito del canvas i disegni vengono solo registrati
+ * nella display list e rasterizzati in parallelo allo swap (vedi {@link TileRenderer}).</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TurtleGraphics {
+
+    /** Margine per l'antialiasing attorno alle zone bloccate */
+    private static final double AA_MARGIN = 2;
+
+    /** Passo degli spessori memorizzati nella cache condivisa */
+    private static final float STROKE_STEP = 0.5f;
+
+    /** Cache degli stroke per gli spessori multipli di 0.5 fino a 64 */
+    private static final BasicStroke[] STROKES = new BasicStroke[129];
+
+    private final TurtleLayer layer;
+    private Graphics2D g2d;
+    private int generation;
+
+    private int argb;
+    private boolean colorSet;
+    private Font font;
+    private float strokeWidth = -1;
+    private BasicStroke stroke;
+
+    private final Ellipse2D.Double ellipse = new Ellipse2D.Double();
+    private final AffineTransform transform = new AffineTransform();
+    private final Path2D.Double screenPath = new Path2D.Double();
+
+    /**
+     * Crea un contesto associato al livello indicato.
+     * Il Graphics2D viene creato solo al primo disegno.
+     *
+     * @param layer il livello su cui disegnare
+     */
+    TurtleGraphics(TurtleLayer layer) {
+        this.layer = layer;
+    }
+
+    /**
+     * Restituisce uno stroke con estremi e giunzioni arrotondati.
+     * Gli spessori più comuni sono condivisi tra tutte le tartarughe.
+     *
+     * @param width lo spessore in pixel
+     * @return lo stroke corrispondente
+     */
+    static BasicStroke stroke(float width) {
+        float steps = width / STROKE_STEP;
+        int index = (int) steps;
+        if (index == steps && index >= 0 && index < STROKES.length) {
+            BasicStroke cached = STROKES[index];
+            if (cached == null) {
+                cached = new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+                STROKES[index] = cached;
+            }
+            return cached;
+        }
+        return new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    }
+
+    /**
+     * Restituisce il contesto grafico valido per il livello,
+     * ricreandolo se il livello è stato cancellato.
+     *
+     * @return il Graphics2D della tartaruga
+     */
+    Graphics2D graphics() {
+        int current = layer.getGeneration();
+        if (g2d == null || generation != current) {
+            if (g2d != null) {
+                g2d.dispose();
+            }
+            g2d = layer.createGraphics();
+            generation = current;
+            colorSet = false;
+            font = null;
+            strokeWidth = -1;
+        }
+        return g2d;
+    }
+
+    /**
+     * Applica il colore solo se diverso dall'ultimo usato.
+     * Il Color viene preso dalla cache condivisa, senza allocarlo.
+     */
+    private void applyColor(Graphics2D g, int c) {
+        if (!colorSet || c != argb) {
+            g.setColor(TurtleColors.color(c));
+            argb = c;
+            colorSet = true;
+        }
+    }
+
+    /**
+     * Applica lo spessore solo se diverso dall'ultimo usato.
+     */
+    private void applyStroke(Graphics2D g, double width) {
+        float w = (float) width;
+        if (w != strokeWidth) {
+            if (stroke == null || stroke.getLineWidth() != w) {
+                stroke = stroke(w);
+            }
+            g.setStroke(stroke);
+            strokeWidth = w;
+        }
+    }
+
+    /**
+     * Porta una forma in coordinate turtle nelle coordinate schermo della vista,
+     * riusando sempre la stessa spezzata.
+     */
+    private Shape toScreen(Shape shape, TurtleView view) {
+        transform.setTransform(view.scaleX, 0, 0, -view.scaleY, view.originX, view.originY);
+        screenPath.reset();
+        screenPath.append(shape.getPathIterator(transform), false);
+        return screenPath;
+    }
+
+    /**
+     * Disegna una spezzata di {@code count} punti in coordinate turtle e la registra
+     * nella display list come linea o come spezzata.
+     * I limiti, in coordinate turtle, sono passati dal chiamante che li conosce già.
+     */
+    void drawPath(double[] points, int count, int c, double width,
+                  double minX, double minY, double maxX, double maxY) {
+        DisplayList list = layer.getDisplayList();
+        if (layer.isDeferred()) {
+            recordPath(list, points, count, c, width);
+            return;
+        }
+        Graphics2D g = graphics();
+        long mask = layer.lockWorld(minX, minY, maxX, maxY, width / 2 + AA_MARGIN);
+        TurtleView view = layer.getView();
+        try {
+            screenPath.reset();
+            screenPath.moveTo(view.screenX(points[0]), view.screenY(points[1]));
+            for (int k = 2; k < 2 * count; k += 2) {
+                screenPath.lineTo(view.screenX(points[k]), view.screenY(points[k + 1]));
+            }
+            applyColor(g, c);
+            applyStroke(g, width);
+            g.draw(screenPath);
+            recordPath(list, points, count, c, width);
+        } finally {
+            layer.getTileLocks().unlock(mask);
+        }
+        layer.markDirty(view.screenX(minX), view.screenY(maxY), view.screenX(maxX), view.screenY(minY), width / 2);
+    }
+
+    private static void recordPath(DisplayList list, double[] points, int count, int c, double width) {
+        if (count == 2) {
+            list.addLine(points[0], points[1], points[2], points[3], c, width);
+        } else {
+            list.addPolyline(points, count, c, width);
+        }
+    }
+
+    /**
+     * Disegna i segmenti di indice da {@code from} a {@code to} escluso, tutti
+     * dello stesso colore, e li registra nella display list.
+     *
+     * @param xy le coordinate turtle x1, y1, x2, y2 di ogni segmento, una dopo l'altra
+     * @param argb il colore di ogni segmento
+     */
+    void drawLines(double[] xy, int[] argb, int from, int to, double width) {
+        DisplayList list = layer.getDisplayList();
+        if (layer.isDeferred()) {
+            list.addLines(xy, argb, from, to, width);
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int k = 4 * from; k < 4 * to; k += 2) {
+            minX = Math.min(minX, xy[k]);
+            minY = Math.min(minY, xy[k + 1]);
+            maxX = Math.max(maxX, xy[k]);
+            maxY = Math.max(maxY, xy[k + 1]);
+        }
+        Graphics2D g = graphics();
+        long mask = layer.lockWorld(minX, minY, maxX, maxY, width / 2 + AA_MARGIN);
+        TurtleView view = layer.getView();
+        try {
+            screenPath.reset();
+            for (int n = from; n < to; n++) {
+                screenPath.moveTo(view.screenX(xy[4 * n]), view.screenY(xy[4 * n + 1]));
+                screenPath.lineTo(view.screenX(xy[4 * n + 2]), view.screenY(xy[4 * n + 3]));
+            }
+            applyColor(g, argb[from]);
+            applyStroke(g, width);
+            g.draw(screenPath);
+            list.addLines(xy, argb, from, to, width);
+        } finally {
+            layer.getTileLocks().unlock(mask);
+        }
+        layer.markDirty(view.screenX(minX), view.screenY(maxY), view.screenX(maxX), view.screenY(minY), width / 2);
+    }
+
+    /**
+     * Riempie un cerchio di diametro {@code size} pixel centrato in coordinate turtle
+     * e lo registra nella display list.
+     */
+    void fillDot(double x, double y, double size, int c) {
+        DisplayList list = layer.getDisplayList();
+        if (layer.isDeferred()) {
+            list.addDot(x, y, size, c);
+            return;
+        }
+        Graphics2D g = graphics();
+        double half = size / 2;
+        long mask = layer.lockWorld(x, y, x, y, half + AA_MARGIN);
+        TurtleView view = layer.getView();
+        double cx = view.screenX(x);
+        double cy = view.screenY(y);
+        try {
+            applyColor(g, c);
+            ellipse.setFrame(cx - half, cy - half, size, size);
+            g.fill(ellipse);
+            list.addDot(x, y, size, c);
+        } finally {
+            layer.getTileLocks().unlock(mask);
+        }
+        layer.markDirty(cx - half, cy - half, cx + half, cy + half, 0);
+    }
+
+    /**
+     * Copia uno sprite con il centro della tartaruga in coordinate turtle
+     * e lo registra nella display list come timbro.
+     */
+    void drawSprite(TurtleSprites.Sprite sprite, int fill, double x, double y) {
+        DisplayList list = layer.getDisplayList();
+        if (layer.isDeferred()) {
+            TurtleSprites.record(list, sprite, fill, x, y, layer.getView());
+            return;
+        }
+        Graphics2D g = graphics();
+        BufferedImage image = sprite.image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        long mask = layer.lockWorld(x, y, x, y, Math.max(w, h));
+        TurtleView view = layer.getView();
+        int px = (int) Math.round(view.screenX(x)) - sprite.anchorX;
+        int py = (int) Math.round(view.screenY(y)) - sprite.anchorY;
+        try {
+            g.drawImage(image, px, py, null);
+            TurtleSprites.record(list, sprite, fill, x, y, view);
+        } finally {
+            layer.getTileLocks().unlock(mask);
+        }
+        layer.markDirty(px, py, px + w, py + h, 0);
+    }
+
+    /**
+     * Riempie una forma in coordinate turtle, se richiesto ne disegna il contorno,
+     * e la registra nella display list.
+     */
+    void fillShape(Path2D shape, int fill, boolean outline, int pen, double width) {
+        DisplayList list = layer.getDisplayList();
+        if (layer.isDeferred()) {
+            list.addFill(shape, fill, outline, pen, width);
+            return;
+        }
+        Graphics2D g = graphics();
+        Rectangle2D world = shape.getBounds2D();
+        double pad = (outline ? width / 2 : 0) + AA_MARGIN;
+        long mask = layer.lockWorld(world.getMinX(), world.getMinY(), world.getMaxX(), world.getMaxY(), pad);
+        Rectangle2D bounds;
+        try {
+            Shape screen = toScreen(shape, layer.getView());
+            bounds = screen.getBounds2D();
+            applyColor(g, fill);
+            g.fill(screen);
+            if (outline) {
+                applyColor(g, pen);
+                applyStroke(g, width);
+                g.draw(screen);
+            }
+            list.addFill(shape, fill, outline, pen, width);
+        } finally {
+            layer.getTileLocks().unlock(mask);
+        }
+        layer.markDirty(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(),
+                outline ? width / 2 : 0);
+    }
+
+    /**
+     * Applica il font solo se diverso dall'ultimo usato.
+     */
+    private void applyFont(Graphics2D g, Font f) {
+        if (f != font) {
+            g.setFont(f);
+            font = f;
+        }
+    }
+
+    /**
+     * Disegna un testo nel font indicato con la linea di base in coordinate turtle,
+     * allineato come in {@link DisplayList#addText}, e lo registra nella display list.
+     * Il font viene applicato qui perché il contesto può essere stato ricreato,
+     * se nel frattempo il livello è stato cancellato.
+     */
+    void drawString(String text, Font f, String align, double x, double y, int c) {
+        DisplayList list = layer.getDisplayList();
+        if (layer.isDeferred()) {
+            list.addText(x, y, text, f, align, c);
+            return;
+        }
+        Graphics2D g = graphics();
+        applyFont(g, f);
+        FontMetrics fm = g.getFontMetrics();
+        int textWidth = fm.stringWidth(text);
+        double pad = f.getSize2D() / 4 + AA_MARGIN;
+        long mask = layer.lockWorld(x, y, x, y,
+                Math.max(textWidth, fm.getMaxAscent() + fm.getMaxDescent()) + pad);
+        TurtleView view = layer.getView();
+        double left = view.screenX(x);
+        double baseline = view.screenY(y);
+        switch (align.toLowerCase()) {
+            case "center" -> left -= textWidth / 2.0;
+            case "right" -> left -= textWidth;
+        }
+        try {
+            applyColor(g, c);
+            g.drawString(text, (float) left, (float) baseline);
+            list.addText(x, y, text, f, align, c);
+        } finally {
+            layer.getTileLocks().unlock(mask);
+        }
+        layer.markDirty(left, baseline - fm.getMaxAscent(), left + textWidth, baseline + fm.getMaxDescent(),
+                f.getSize2D() / 4);
+    }
+
+    /**
+     * Rilascia il contesto grafico, se presente.
+     */
+    void dispose() {
+        if (g2d != null) {
+            g2d.dispose();
+            g2d = null;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+import java.awt.event.KeyEvent;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Input di uno schermo: coda degli eventi, stato dei tasti e callback.
+ *
+ * <p>I listener AWT (un solo produttore, l'EDT) scrivono gli eventi in un
+ * buffer circolare di dimensione fissa, con campi primitivi per ogni posizione:
+ * pubblicare un evento non alloca memoria e non prende lock. Ogni consumatore
+ * ({@link #poll()}, {@link #pollKey()} e il dispatcher dei callback) ha il
+ * proprio cursore, quindi vede tutti gli eventi indipendentemente dagli altri.
+ * Un consumatore che resta indietro di più di {@link #CAPACITY} eventi perde
+ * i più vecchi, che vengono contati in {@link #getDropped()}.</p>
+ *
+ * <p>Una posizione viene riscritta mentre un consumatore la sta leggendo solo
+ * se questo è indietro di un giro intero: il produttore annuncia la scrittura in
+ * {@code claimed} prima di toccare i campi e la conclude in {@code published},
+ * e il consumatore scarta la lettura se nel frattempo {@code claimed} ha
+ * raggiunto il giro successivo, come in un seqlock.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TurtleInput {
+
+    /** Numero di eventi conservati, come potenza di 2 */
+    static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+
+    /** Codici dei tasti seguiti dalla bitmap, {@code KeyEvent.VK_...} */
+    private static final int KEY_CODES = 1 << 16;
+
+    /** Dopo questo tempo una pressione non ancora verificata con {@link #checkKey} viene dimenticata */
+    static final long PRESS_TIMEOUT_NANOS = 500_000_000L;
+
+    private static final TurtleEvent.Type[] TYPES = TurtleEvent.Type.values();
+    private static final VarHandle BITS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** Nomi dei caratteri ASCII, per non creare una stringa per ogni tasto */
+    private static final String[] ASCII_NAMES = new String[128];
+
+    static {
+        for (char c = 0; c < ASCII_NAMES.length; c++) {
+            ASCII_NAMES[c] = String.valueOf(Character.toLowerCase(c));
+        }
+    }
+
+    // Posizioni del buffer circolare, un array per campo
+    private final byte[] types = new byte[CAPACITY];
+    private final long[] times = new long[CAPACITY];
+    private final int[] codes = new int[CAPACITY];
+    private final char[] chars = new char[CAPACITY];
+    private final double[] xs = new double[CAPACITY];
+    private final double[] ys = new double[CAPACITY];
+    private final byte[] buttons = new byte[CAPACITY];
+
+    //  Eventi di cui è iniziata / terminata la scrittura
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+
+    private final AtomicLong pollCursor = new AtomicLong();
+    private final AtomicLong keyCursor = new AtomicLong();
+    private final AtomicLong dispatchCursor = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    //  Tasti tenuti premuti, un bit per codice
+    private final long[] keysDown = new long[KEY_CODES / 64];
+
+    //  Ultimo tasto premuto, per getLastKey(), e istante dell'ultima pressione
+    //  non ancora verificata di ogni tasto, per nome come li vede il programma:
+    //  "+" è il carattere digitato, qualunque tasto lo produca
+    private final AtomicReference<String> lastKey = new AtomicReference<>();
+    private final ConcurrentHashMap<String, Long> pressedAt = new ConcurrentHashMap<>();
+
+    //  Codice dell'ultimo tasto che ha prodotto ogni nome, per isKeyDown(String)
+    private final ConcurrentHashMap<String, Integer> nameCodes = new ConcurrentHashMap<>();
+
+    private final List<Consumer<TurtleEvent>> keyCallbacks = new CopyOnWriteArrayList<>();
+    private final List<Consumer<TurtleEvent>> clickCallbacks = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Timer> newTimers = new ConcurrentLinkedQueue<>();
+    private final AtomicLong timerCount = new AtomicLong();
+
+    private ExecutorService executor;
+    private volatile Thread dispatcher;
+    private volatile boolean closed;
+
+    /**
+     * Registra la pressione di un tasto. Solo dall'EDT.
+     */
+    void keyPressed(int code, char c, long time) {
+        if (code > 0 && code < KEY_CODES) {
+            BITS.getAndBitwiseOr(keysDown, code >>> 6, 1L << code);
+        }
+        String name = keyName(code, c);
+        lastKey.set(name);
+        pressedAt.put(name, time);
+        nameCodes.put(name, code);
+        publish(TurtleEvent.Type.KEY_PRESSED, code, c, 0, 0, 0, time);
+    }
+
+    /**
+     * Registra il rilascio di un tasto. Solo dall'EDT.
+     */
+    void keyReleased(int code, char c, long time) {
+        if (code > 0 && code < KEY_CODES) {
+            BITS.getAndBitwiseAnd(keysDown, code >>> 6, ~(1L << code));
+        }
+        publish(TurtleEvent.Type.KEY_RELEASED, code, c, 0, 0, 0, time);
+    }
+
+    /**
+     * Registra un evento del mouse, già in coordinate turtle. Solo dall'EDT.
+     */
+    void mouse(TurtleEvent.Type type, double x, double y, int button, long time) {
+        publish(type, 0, KeyEvent.CHAR_UNDEFINED, x, y, button, time);
+    }
+
+    /**
+     * Considera rilasciati tutti i tasti, per esempio quando la finestra perde
+     * il fuoco e i rilasci non arriverebbero più.
+     */
+    void releaseAllKeys() {
+        for (int i = 0; i < keysDown.length; i++) {
+            BITS.setVolatile(keysDown, i, 0L);
+        }
+    }
+
+    private void publish(TurtleEvent.Type type, int code, char c, double x, double y, int button, long time) {
+        long seq = published.getPlain();
+        claimed.setPlain(seq + 1);
+        VarHandle.storeStoreFence();
+        int i = (int) (seq & MASK);
+        types[i] = (byte) type.ordinal();
+        times[i] = time;
+        codes[i] = code;
+        chars[i] = c;
+        xs[i] = x;
+        ys[i] = y;
+        buttons[i] = (byte) button;
+        published.setRelease(seq + 1);
+        Thread waiting = dispatcher;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Preleva il prossimo evento non ancora letto con {@link #poll()}.
+     *
+     * @return l'evento, null se non ce ne sono
+     */
+    TurtleEvent poll() {
+        return take(pollCursor, null);
+    }
+
+    /**
+     * Preleva il nome del prossimo tasto premuto non ancora letto con questo metodo.
+     *
+     * @return il nome del tasto, null se non ce ne sono
+     */
+    String pollKey() {
+        TurtleEvent event = take(keyCursor, TurtleEvent.Type.KEY_PRESSED);
+        return event == null ? null : event.getKey();
+    }
+
+    /**
+     * Legge l'evento sotto un cursore e lo fa avanzare.
+     *
+     * @param cursor il cursore del consumatore
+     * @param only il tipo da restituire, gli altri vengono saltati; null per tutti
+     * @return l'evento, null se il consumatore è in pari
+     */
+    private TurtleEvent take(AtomicLong cursor, TurtleEvent.Type only) {
+        while (true) {
+            long seq = cursor.get();
+            long available = published.getAcquire();
+            if (seq >= available) {
+                return null;
+            }
+            long oldest = available - CAPACITY;
+            if (seq < oldest) {
+                if (cursor.compareAndSet(seq, oldest)) {
+                    dropped.add(oldest - seq);
+                }
+                continue;
+            }
+            int i = (int) (seq & MASK);
+            TurtleEvent.Type type = TYPES[types[i]];
+            long time = times[i];
+            int code = codes[i];
+            char c = chars[i];
+            double x = xs[i];
+            double y = ys[i];
+            int button = buttons[i];
+            VarHandle.loadLoadFence();
+            if (claimed.get() - CAPACITY > seq || !cursor.compareAndSet(seq, seq + 1)) {
+                // Riscritto durante la lettura, o letto da un altro thread
+                continue;
+            }
+            if (only != null && type != only) {
+                continue;
+            }
+            boolean key = type == TurtleEvent.Type.KEY_PRESSED || type == TurtleEvent.Type.KEY_RELEASED;
+            return new TurtleEvent(type, time, key ? keyName(code, c) : null, code, x, y, button);
+        }
+    }
+
+    /**
+     * Verifica se un tasto è tenuto premuto.
+     *
+     * @param code il codice {@code KeyEvent.VK_...}
+     */
+    boolean isKeyDown(int code) {
+        return code > 0 && code < KEY_CODES && ((long) BITS.getVolatile(keysDown, code >>> 6) & 1L << code) != 0;
+    }
+
+    /**
+     * Verifica se il tasto con il nome indicato è tenuto premuto. Un carattere
+     * come "+" viene cercato sul tasto che lo ha prodotto l'ultima volta,
+     * altrimenti su quello che lo produce senza modificatori.
+     *
+     * @param name il nome del tasto, come in {@link #keyName}
+     */
+    boolean isKeyDown(String name) {
+        String key = name.toLowerCase();
+        Integer code = nameCodes.get(key);
+        return isKeyDown(code != null ? code : keyCode(key));
+    }
+
+    /**
+     * Restituisce l'ultimo tasto premuto e lo dimentica, come il vecchio
+     * {@code getLastKey()}: i tasti premuti prima dell'ultimo vengono ignorati.
+     *
+     * @return il nome del tasto, null se nessun tasto è stato premuto dall'ultima chiamata
+     */
+    String lastKey() {
+        return lastKey.getAndSet(null);
+    }
+
+    /**
+     * Verifica se il tasto con il nome indicato è stato premuto dall'ultima
+     * verifica dello stesso tasto, al più {@link #PRESS_TIMEOUT_NANOS} fa.
+     * Il nome viene confrontato con quello dell'evento, quindi i caratteri
+     * ottenuti con le maiuscole come "+" o "?" vengono riconosciuti.
+     * Se era anche l'ultimo tasto premuto, {@link #lastKey()} non lo restituisce più.
+     *
+     * @param name il nome del tasto, come in {@link #keyName}
+     * @param now l'istante della verifica, come {@link System#nanoTime()}
+     */
+    boolean checkKey(String name, long now) {
+        String key = name.toLowerCase();
+        Long time = pressedAt.remove(key);
+        if (time == null || now - time > PRESS_TIMEOUT_NANOS) {
+            return false;
+        }
+        String last = lastKey.get();
+        if (key.equals(last)) {
+            lastKey.compareAndSet(last, null);
+        }
+        return true;
+    }
+
+    /**
+     * Restituisce gli eventi persi dai consumatori rimasti indietro di più di
+     * {@link #CAPACITY} eventi.
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    void onKey(Consumer<TurtleEvent> callback) {
+        keyCallbacks.add(callback);
+        startDispatcher();
+    }
+
+    void onClick(Consumer<TurtleEvent> callback) {
+        clickCallbacks.add(callback);
+        startDispatcher();
+    }
+
+    void onTimer(Runnable action, long millis) {
+        newTimers.add(new Timer(System.nanoTime() + millis * 1_000_000L, timerCount.getAndIncrement(), action));
+        startDispatcher();
+        Thread waiting = dispatcher;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Avvia il dispatcher dei callback se non è attivo, su un virtual thread
+     * se la JVM li supporta. Riceve solo gli eventi arrivati da quel momento.
+     */
+    private synchronized void startDispatcher() {
+        if (executor != null || closed) {
+            return;
+        }
+        dispatchCursor.set(published.get());
+        executor = TurtleThreads.newPerTaskExecutor("turtle-input");
+        executor.execute(this::dispatch);
+    }
+
+    /**
+     * Ferma il dispatcher; i callback e i timer in attesa non vengono più eseguiti.
+     */
+    synchronized void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Ferma il dispatcher se non ha più nulla da fare: nessun callback registrato
+     * e nessun timer in attesa. Un nuovo {@code onTimer} lo riavvia, quindi uno
+     * schermo che usa solo i timer non tiene un thread fermo per sempre.
+     *
+     * @return true se il dispatcher deve terminare
+     */
+    private synchronized boolean retireIfIdle(PriorityQueue<Timer> timers) {
+        if (!timers.isEmpty() || !newTimers.isEmpty() || !keyCallbacks.isEmpty() || !clickCallbacks.isEmpty()
+                || dispatchCursor.get() < published.get()) {
+            return false;
+        }
+        dispatcher = null;
+        executor.shutdown();
+        executor = null;
+        return true;
+    }
+
+    /**
+     * Verifica se il dispatcher dei callback è attivo.
+     */
+    synchronized boolean isDispatching() {
+        return executor != null && !closed;
+    }
+
+    /**
+     * Ciclo del dispatcher: esegue in ordine i callback degli eventi e i timer
+     * scaduti, poi si ferma fino al prossimo evento o alla prossima scadenza.
+     */
+    private void dispatch() {
+        dispatcher = Thread.currentThread();
+        PriorityQueue<Timer> timers = new PriorityQueue<>();
+        while (!closed) {
+            TurtleEvent event;
+            while ((event = take(dispatchCursor, null)) != null) {
+                List<Consumer<TurtleEvent>> callbacks = event.isKey() ? keyCallbacks
+                        : event.getType() == TurtleEvent.Type.MOUSE_PRESSED ? clickCallbacks : List.of();
+                for (Consumer<TurtleEvent> callback : callbacks) {
+                    try {
+                        callback.accept(event);
+                    } catch (RuntimeException e) {
+                        report(e);
+                    }
+                }
+            }
+
+            Timer timer;
+            while ((timer = newTimers.poll()) != null) {
+                timers.add(timer);
+            }
+            while (!timers.isEmpty() && timers.peek().deadline - System.nanoTime() <= 0) {
+                try {
+                    timers.poll().action.run();
+                } catch (RuntimeException e) {
+                    report(e);
+                }
+            }
+
+            if (dispatchCursor.get() < published.get() || !newTimers.isEmpty()) {
+                continue;
+            }
+            if (timers.isEmpty() && retireIfIdle(timers)) {
+                return;
+            }
+            if (timers.isEmpty()) {
+                LockSupport.park(this);
+            } else {
+                LockSupport.parkNanos(this, timers.peek().deadline - System.nanoTime());
+            }
+            if (Thread.interrupted() && closed) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Passa l'eccezione di un callback al gestore del thread, senza fermare il dispatcher.
+     */
+    private static void report(RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    /**
+     * Restituisce il nome di un tasto: "up", "down", "left", "right", "space",
+     * "enter", "escape" per i tasti speciali, altrimenti il carattere in minuscolo
+     * o, se manca, il nome del tasto di AWT.
+     */
+    static String keyName(int code, char c) {
+        String special = switch (code) {
+            case KeyEvent.VK_UP -> "up";
+            case KeyEvent.VK_DOWN -> "down";
+            case KeyEvent.VK_LEFT -> "left";
+            case KeyEvent.VK_RIGHT -> "right";
+            case KeyEvent.VK_SPACE -> "space";
+            case KeyEvent.VK_ENTER -> "enter";
+            case KeyEvent.VK_ESCAPE -> "escape";
+            default -> null;
+        };
+        if (special != null) {
+            return special;
+        }
+        if (c != KeyEvent.CHAR_UNDEFINED) {
+            return c < ASCII_NAMES.length ? ASCII_NAMES[c] : String.valueOf(c).toLowerCase();
+        }
+        return KeyEvent.getKeyText(code).toLowerCase();
+    }
+
+    /**
+     * Restituisce il codice del tasto con il nome indicato, l'inverso di {@link #keyName}.
+     *
+     * @param name un nome speciale o un singolo carattere
+     * @return il codice {@code KeyEvent.VK_...}, {@code VK_UNDEFINED} se il nome non è riconosciuto
+     */
+    static int keyCode(String name) {
+        String key = name.toLowerCase();
+        return switch (key) {
+            case "up" -> KeyEvent.VK_UP;
+            case "down" -> KeyEvent.VK_DOWN;
+            case "left" -> KeyEvent.VK_LEFT;
+            case "right" -> KeyEvent.VK_RIGHT;
+            case "space" -> KeyEvent.VK_SPACE;
+            case "enter" -> KeyEvent.VK_ENTER;
+            case "escape" -> KeyEvent.VK_ESCAPE;
+            default -> key.length() == 1 ? KeyEvent.getExtendedKeyCodeForChar(key.charAt(0)) : KeyEvent.VK_UNDEFINED;
+        };
+    }
+
+    /**
+     * Un timer in attesa, ordinato per scadenza e poi per ordine di registrazione.
+     */
+    private static final class Timer implements Comparable<Timer> {
+        final long deadline;
+        final long order;
+        final Runnable action;
+
+        Timer(long deadline, long order, Runnable action) {
+            this.deadline = deadline;
+            this.order = order;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            int byDeadline = Long.compare(deadline - other.deadline, 0);
+            return byDeadline != 0 ? byDeadline : Long.compare(order, other.order);
+        }
+    }
+}
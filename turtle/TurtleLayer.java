@@ -0,0 +1,281 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Livello raster del canvas, con buffer, display list e lock propri.
+ *
+ * <p>Il livello 0 è il back buffer del canvas, con lo sfondo; gli altri livelli
+ * sono immagini trasparenti che il canvas sovrappone in ordine di id al momento
+ * della presentazione. Ogni livello ricorda la zona in cui ha disegnato dall'ultima
+ * cancellazione, così cancellarlo segna da ridisegnare solo quella zona.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TurtleLayer {
+
+    private final TurtleCanvas canvas;
+    private final int id;
+    private final BufferedImage image;
+    private final DisplayList displayList = new DisplayList();
+    private final TileLocks tileLocks = new TileLocks();
+
+    /** Incrementato ogni volta che il livello viene cancellato */
+    private volatile int generation = 0;
+
+    /** true se il livello non viene cancellato a ogni frame in modalità loop */
+    private volatile boolean persistent = false;
+
+    /** Comandi della display list già rasterizzati sul buffer (protetto dal lock della lista) */
+    private int rendered = 0;
+
+    // Zona in cui il livello ha disegnato dall'ultima cancellazione (protetta da this)
+    private double contentX0 = Double.POSITIVE_INFINITY;
+    private double contentY0 = Double.POSITIVE_INFINITY;
+    private double contentX1 = Double.NEGATIVE_INFINITY;
+    private double contentY1 = Double.NEGATIVE_INFINITY;
+
+    // Zona modificata dall'ultimo swap (protetta da this): ogni livello tiene
+    // la propria e il canvas le raccoglie allo swap con collectDirty(), così
+    // tartarughe su livelli diversi non si contendono un lock comune
+    private double dirtyX0 = Double.POSITIVE_INFINITY;
+    private double dirtyY0 = Double.POSITIVE_INFINITY;
+    private double dirtyX1 = Double.NEGATIVE_INFINITY;
+    private double dirtyY1 = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Crea un livello che disegna sull'immagine indicata.
+     *
+     * @param canvas il canvas che compone il livello
+     * @param id l'id del livello, che ne determina l'ordine
+     * @param image il buffer del livello
+     */
+    TurtleLayer(TurtleCanvas canvas, int id, BufferedImage image) {
+        this.canvas = canvas;
+        this.id = id;
+        this.image = image;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    BufferedImage getImage() {
+        return image;
+    }
+
+    DisplayList getDisplayList() {
+        return displayList;
+    }
+
+    TileLocks getTileLocks() {
+        return tileLocks;
+    }
+
+    /**
+     * Blocca le tile toccate da un rettangolo in coordinate turtle, allargato di
+     * {@code pad} pixel, con la vista corrente del canvas.
+     *
+     * <p>I cambi di vista bloccano tutte le tile (vedi {@code TurtleCanvas.changeView}):
+     * se la vista cambia mentre si attendono i lock, questi vengono rilasciati e
+     * la zona ricalcolata. Finché i lock sono tenuti la vista resta quella usata,
+     * quindi chi disegna e registra il comando prima di rilasciarli non può
+     * finire a metà di un cambio di vista.</p>
+     *
+     * @return la maschera dei lock, da rilasciare con {@code getTileLocks().unlock(mask)}
+     */
+    long lockWorld(double minX, double minY, double maxX, double maxY, double pad) {
+        while (true) {
+            TurtleView view = canvas.getView();
+            long mask = tileLocks.lock(view.screenX(minX) - pad, view.screenY(maxY) - pad,
+                    view.screenX(maxX) + pad, view.screenY(minY) + pad);
+            if (canvas.getView() == view) {
+                return mask;
+            }
+            tileLocks.unlock(mask);
+        }
+    }
+
+    TurtleView getView() {
+        return canvas.getView();
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    boolean isPersistent() {
+        return persistent;
+    }
+
+    void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    /**
+     * Verifica se i disegni su questo livello vanno solo registrati,
+     * lasciando la rasterizzazione a {@link #rasterizePending()}.
+     *
+     * @return true se il canvas è in rendering differito e la lista registra
+     */
+    boolean isDeferred() {
+        return canvas.isDeferredRendering() && displayList.isEnabled();
+    }
+
+    /**
+     * Rasterizza in parallelo i comandi registrati e non ancora disegnati sul buffer
+     * e segna come modificata la zona che toccano.
+     */
+    void rasterizePending() {
+        synchronized (displayList) {
+            if (rendered >= displayList.size()) {
+                return;
+            }
+        }
+        Rectangle area = null;
+        long mask = tileLocks.lockAll();
+        try {
+            synchronized (displayList) {
+                int to = displayList.size();
+                if (rendered < to) {
+                    area = TileRenderer.render(displayList, rendered, to, image, canvas.getView(), false);
+                    rendered = to;
+                }
+            }
+        } finally {
+            tileLocks.unlock(mask);
+        }
+        if (area != null) {
+            markDirty(area.x, area.y, area.x + area.width, area.y + area.height, 0);
+        }
+    }
+
+    /**
+     * Considera già rasterizzati tutti i comandi registrati finora,
+     * perché disegnati direttamente dalle tartarughe.
+     */
+    void markRendered() {
+        synchronized (displayList) {
+            rendered = displayList.size();
+        }
+    }
+
+    /**
+     * Restituisce un contesto grafico per disegnare sul livello,
+     * con antialiasing e rendering di alta qualità abilitati.
+     *
+     * @return un Graphics2D da rilasciare con {@code dispose()}
+     */
+    Graphics2D createGraphics() {
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        return g2d;
+    }
+
+    /**
+     * Segna come modificata una zona del livello, in coordinate schermo,
+     * e la aggiunge alla zona da presentare al prossimo swap.
+     */
+    void markDirty(double x0, double y0, double x1, double y1, double pad) {
+        double minX = Math.min(x0, x1) - pad;
+        double minY = Math.min(y0, y1) - pad;
+        double maxX = Math.max(x0, x1) + pad;
+        double maxY = Math.max(y0, y1) + pad;
+        synchronized (this) {
+            contentX0 = Math.min(contentX0, minX);
+            contentY0 = Math.min(contentY0, minY);
+            contentX1 = Math.max(contentX1, maxX);
+            contentY1 = Math.max(contentY1, maxY);
+            dirtyX0 = Math.min(dirtyX0, minX);
+            dirtyY0 = Math.min(dirtyY0, minY);
+            dirtyX1 = Math.max(dirtyX1, maxX);
+            dirtyY1 = Math.max(dirtyY1, maxY);
+        }
+    }
+
+    /**
+     * Passa al canvas la zona modificata dall'ultimo swap e la azzera.
+     * Chiamato dal canvas all'inizio di ogni swap.
+     */
+    void collectDirty() {
+        synchronized (this) {
+            if (dirtyX0 <= dirtyX1) {
+                canvas.markDirty(dirtyX0, dirtyY0, dirtyX1, dirtyY1, 0);
+            }
+            dirtyX0 = Double.POSITIVE_INFINITY;
+            dirtyY0 = Double.POSITIVE_INFINITY;
+            dirtyX1 = Double.NEGATIVE_INFINITY;
+            dirtyY1 = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Cancella il livello: il livello 0 viene riempito con il colore di sfondo,
+     * gli altri tornano trasparenti. Svuota anche la display list del livello.
+     *
+     * @param background il colore di sfondo, usato solo dal livello 0
+     */
+    void clear(Color background) {
+        synchronized (displayList) {
+            displayList.clear();
+            rendered = 0;
+        }
+        erase(background);
+    }
+
+    /**
+     * Cancella il contenuto del livello mantenendo la display list,
+     * ad esempio per ridisegnarla su un nuovo sfondo.
+     *
+     * @param background il colore di sfondo, usato solo dal livello 0
+     */
+    void erase(Color background) {
+        generation++;
+        long mask = tileLocks.lockAll();
+        try {
+            Graphics2D g2d = image.createGraphics();
+            if (id == 0) {
+                g2d.setColor(background);
+            } else {
+                g2d.setComposite(AlphaComposite.Clear);
+            }
+            g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g2d.dispose();
+        } finally {
+            tileLocks.unlock(mask);
+        }
+        synchronized (this) {
+            if (contentX0 < contentX1) {
+                canvas.markDirty(contentX0, contentY0, contentX1, contentY1, 0);
+            }
+            contentX0 = Double.POSITIVE_INFINITY;
+            contentY0 = Double.POSITIVE_INFINITY;
+            contentX1 = Double.NEGATIVE_INFINITY;
+            contentY1 = Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Ridisegna sul livello tutti i comandi della sua display list con la vista
+     * corrente del canvas e segna come modificata la zona che toccano.
+     *
+     * @param lod true per unire i segmenti più corti di un pixel, come dopo un cambio di vista
+     */
+    void replay(boolean lod) {
+        Rectangle area;
+        long mask = tileLocks.lockAll();
+        try {
+            synchronized (displayList) {
+                area = TileRenderer.render(displayList, 0, displayList.size(), image, canvas.getView(), lod);
+                rendered = displayList.size();
+            }
+        } finally {
+            tileLocks.unlock(mask);
+        }
+        if (area != null) {
+            markDirty(area.x, area.y, area.x + area.width, area.y + area.height, 0);
+        }
+    }
+}
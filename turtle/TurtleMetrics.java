@@ -0,0 +1,380 @@
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metriche di rendering di uno schermo: contatori dei disegni, istogrammi
+ * dei tempi e frequenza dei comandi di ogni tartaruga.
+ *
+ * <p>Si ottengono con {@link TurtleScreen#getMetrics()}, via JMX (vedi
+ * {@link TurtleMetricsMBean}) o a video con {@link TurtleScreen#showStats(boolean)}.
+ * La raccolta è sempre attiva: i contatori sono {@link LongAdder}, che
+ * distribuiscono gli incrementi concorrenti su celle separate, e gli istogrammi
+ * hanno secchi fissi, quindi registrare un evento non alloca memoria e non
+ * prende lock. Percentili e frequenze si calcolano solo quando vengono letti.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public final class TurtleMetrics implements TurtleMetricsMBean {
+
+    /** Finestra su cui si misurano i comandi al secondo delle tartarughe */
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+    private final List<Turtle> turtles;
+    private final FrameStats frameStats;
+
+    private final LongAdder segments = new LongAdder();
+    private final LongAdder fills = new LongAdder();
+    private final LongAdder dots = new LongAdder();
+    private final LongAdder texts = new LongAdder();
+    private final Histogram swapTime = new Histogram();
+    private final Histogram paintTime = new Histogram();
+    private final Histogram loopTime = new Histogram();
+    private final Histogram frameTime = new Histogram();
+
+    // Ultimo campione dei comandi delle tartarughe (con il lock dell'oggetto)
+    private final Map<Turtle, Long> sampledCommands = new IdentityHashMap<>();
+    private long sampledAt;
+    private double[] rates = new double[0];
+
+    /**
+     * Crea le metriche di uno schermo.
+     *
+     * @param turtles le tartarughe dello schermo
+     * @param frameStats le statistiche del loop di animazione
+     */
+    TurtleMetrics(List<Turtle> turtles, FrameStats frameStats) {
+        this.turtles = turtles;
+        this.frameStats = frameStats;
+    }
+
+    void recordSegments(int n) {
+        segments.add(n);
+    }
+
+    void recordFill() {
+        fills.increment();
+    }
+
+    void recordDot() {
+        dots.increment();
+    }
+
+    void recordText() {
+        texts.increment();
+    }
+
+    void recordSwap(long nanos) {
+        swapTime.record(nanos);
+    }
+
+    void recordPaint(long nanos) {
+        paintTime.record(nanos);
+    }
+
+    void recordLoop(long nanos) {
+        loopTime.record(nanos);
+    }
+
+    void recordFrame(long nanos) {
+        frameTime.record(nanos);
+    }
+
+    @Override
+    public long getSegments() {
+        return segments.sum();
+    }
+
+    @Override
+    public long getFills() {
+        return fills.sum();
+    }
+
+    @Override
+    public long getDots() {
+        return dots.sum();
+    }
+
+    @Override
+    public long getTexts() {
+        return texts.sum();
+    }
+
+    @Override
+    public long getSwapCount() {
+        return swapTime.count();
+    }
+
+    @Override
+    public double getSwapTimeMean() {
+        return swapTime.mean();
+    }
+
+    @Override
+    public double getSwapTimeP99() {
+        return swapTime.percentile(0.99);
+    }
+
+    @Override
+    public long getPaintCount() {
+        return paintTime.count();
+    }
+
+    @Override
+    public double getPaintTimeMean() {
+        return paintTime.mean();
+    }
+
+    @Override
+    public double getPaintTimeP99() {
+        return paintTime.percentile(0.99);
+    }
+
+    @Override
+    public double getLoopTimeMean() {
+        return loopTime.mean();
+    }
+
+    @Override
+    public double getLoopTimeP99() {
+        return loopTime.percentile(0.99);
+    }
+
+    @Override
+    public double getFrameTimeP50() {
+        return frameTime.percentile(0.50);
+    }
+
+    @Override
+    public double getFrameTimeP95() {
+        return frameTime.percentile(0.95);
+    }
+
+    @Override
+    public double getFrameTimeP99() {
+        return frameTime.percentile(0.99);
+    }
+
+    @Override
+    public double getFrameTimeMax() {
+        return frameTime.max();
+    }
+
+    @Override
+    public double getFps() {
+        return frameStats.getFps();
+    }
+
+    @Override
+    public int getTurtleCount() {
+        return turtles.size();
+    }
+
+    @Override
+    public long[] getTurtleCommands() {
+        Turtle[] snapshot = turtles.toArray(new Turtle[0]);
+        long[] counts = new long[snapshot.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            counts[i] = snapshot[i].getCommandCounter().sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Restituisce i comandi al secondo di ogni tartaruga, misurati sull'ultima
+     * finestra di un secondo: il campione viene rinnovato alla prima lettura
+     * dopo la scadenza, così più lettori (JMX e overlay) vedono gli stessi valori.
+     * Una tartaruga appena creata vale 0 fino al campione successivo.
+     *
+     * @return i comandi al secondo, nell'ordine di creazione
+     */
+    @Override
+    public synchronized double[] getTurtleCommandRates() {
+        Turtle[] snapshot = turtles.toArray(new Turtle[0]);
+        long now = System.nanoTime();
+        long elapsed = now - sampledAt;
+        if (elapsed >= RATE_WINDOW_NANOS || rates.length != snapshot.length) {
+            double[] current = new double[snapshot.length];
+            for (int i = 0; i < snapshot.length; i++) {
+                long count = snapshot[i].getCommandCounter().sum();
+                Long previous = sampledCommands.put(snapshot[i], count);
+                if (previous != null && elapsed > 0) {
+                    current[i] = (count - previous) * 1e9 / elapsed;
+                }
+            }
+            rates = current;
+            sampledAt = now;
+        }
+        return rates.clone();
+    }
+
+    /**
+     * Restituisce la somma dei comandi al secondo di tutte le tartarughe.
+     *
+     * @return i comandi al secondo dello schermo
+     */
+    public double getCommandRate() {
+        double total = 0;
+        for (double rate : getTurtleCommandRates()) {
+            total += rate;
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized void reset() {
+        segments.reset();
+        fills.reset();
+        dots.reset();
+        texts.reset();
+        swapTime.reset();
+        paintTime.reset();
+        loopTime.reset();
+        frameTime.reset();
+        for (Turtle turtle : turtles) {
+            turtle.getCommandCounter().reset();
+        }
+        sampledCommands.clear();
+        sampledAt = 0;
+        rates = new double[0];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d segmenti, %d riempimenti, %d punti, %d testi; swap %d (%.2f ms, p99 %.2f ms); "
+                        + "frame p50 %.2f ms, p95 %.2f ms, p99 %.2f ms",
+                getSegments(), getFills(), getDots(), getTexts(), getSwapCount(), getSwapTimeMean(),
+                getSwapTimeP99(), getFrameTimeP50(), getFrameTimeP95(), getFrameTimeP99());
+    }
+
+    /**
+     * Istogramma di durate in nanosecondi con secchi logaritmici fissi.
+     *
+     * <p>Ogni potenza di 2 è divisa in 4 secchi, quindi l'errore relativo di un
+     * percentile è al più del 25% (in media molto meno, grazie all'interpolazione
+     * dentro il secchio). I secchi coprono fino a circa 18 minuti; le durate più
+     * lunghe finiscono nell'ultimo.</p>
+     */
+    static final class Histogram {
+
+        /** Secchi per ogni potenza di 2 */
+        private static final int SUB_BUCKETS = 4;
+
+        /** Esponente massimo rappresentato: 2^40 ns, circa 18 minuti */
+        private static final int MAX_EXPONENT = 40;
+
+        private static final int BUCKETS = (MAX_EXPONENT - 1) * SUB_BUCKETS + SUB_BUCKETS;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Registra una durata. Non alloca memoria.
+         */
+        void record(long nanos) {
+            long v = Math.max(0, nanos);
+            buckets[index(v)].increment();
+            total.add(v);
+            max.accumulate(v);
+        }
+
+        /**
+         * Secchio di un valore: i valori sotto 4 hanno un secchio ciascuno,
+         * gli altri sono divisi per esponente e per i due bit dopo quello più alto.
+         */
+        private static int index(long v) {
+            if (v < SUB_BUCKETS) {
+                return (int) v;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            if (exponent > MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            int sub = (int) (v >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return (exponent - 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * Limite inferiore del secchio indicato (il superiore è quello del successivo).
+         */
+        private static long lowerBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + 1;
+            int sub = index % SUB_BUCKETS;
+            return (long) (SUB_BUCKETS + sub) << (exponent - 2);
+        }
+
+        long count() {
+            long n = 0;
+            for (LongAdder bucket : buckets) {
+                n += bucket.sum();
+            }
+            return n;
+        }
+
+        /**
+         * @return la durata media in millisecondi
+         */
+        double mean() {
+            long n = count();
+            return n == 0 ? 0 : total.sum() / 1e6 / n;
+        }
+
+        /**
+         * @return la durata massima in millisecondi
+         */
+        double max() {
+            return max.get() / 1e6;
+        }
+
+        /**
+         * Calcola un percentile interpolando linearmente dentro il secchio che lo contiene.
+         *
+         * @param p il quantile, tra 0 e 1
+         * @return la durata in millisecondi, 0 se l'istogramma è vuoto
+         */
+        double percentile(double p) {
+            long[] counts = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                n += counts[i];
+            }
+            if (n == 0) {
+                return 0;
+            }
+            double rank = p * n;
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (counts[i] > 0 && seen + counts[i] >= rank) {
+                    long lo = lowerBound(i);
+                    long hi = i + 1 < BUCKETS ? lowerBound(i + 1) : Math.max(lo + 1, max.get());
+                    double value = lo + (hi - lo) * Math.max(0, rank - seen) / counts[i];
+                    return Math.min(value, max.get()) / 1e6;
+                }
+                seen += counts[i];
+            }
+            return max.get() / 1e6;
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            total.reset();
+            max.reset();
+        }
+    }
+}
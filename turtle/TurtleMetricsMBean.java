@@ -0,0 +1,77 @@
+/**
+ * Interfaccia JMX delle metriche di uno schermo (vedi {@link TurtleMetrics}).
+ *
+ * <p>Ogni {@link TurtleScreen} con finestra registra un MBean con nome
+ * {@code turtle:type=TurtleScreen,name=screen-N}, visibile da JConsole o
+ * VisualVM. I tempi sono in millisecondi.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public interface TurtleMetricsMBean {
+
+    /** @return i segmenti disegnati dalle tartarughe */
+    long getSegments();
+
+    /** @return i riempimenti eseguiti con endFill */
+    long getFills();
+
+    /** @return i punti disegnati con dot */
+    long getDots();
+
+    /** @return i testi scritti con write */
+    long getTexts();
+
+    /** @return il numero di chiamate a swapBuffers */
+    long getSwapCount();
+
+    /** @return la durata media di swapBuffers */
+    double getSwapTimeMean();
+
+    /** @return il 99° percentile della durata di swapBuffers */
+    double getSwapTimeP99();
+
+    /** @return il numero di chiamate a paintComponent */
+    long getPaintCount();
+
+    /** @return la durata media di paintComponent */
+    double getPaintTimeMean();
+
+    /** @return il 99° percentile della durata di paintComponent */
+    double getPaintTimeP99();
+
+    /** @return la durata media di un aggiornamento con loop() */
+    double getLoopTimeMean();
+
+    /** @return il 99° percentile della durata di loop() */
+    double getLoopTimeP99();
+
+    /** @return la mediana della durata dei frame */
+    double getFrameTimeP50();
+
+    /** @return il 95° percentile della durata dei frame */
+    double getFrameTimeP95();
+
+    /** @return il 99° percentile della durata dei frame */
+    double getFrameTimeP99();
+
+    /** @return il frame più lungo */
+    double getFrameTimeMax();
+
+    /** @return i frame al secondo del loop di animazione */
+    double getFps();
+
+    /** @return il numero di tartarughe dello schermo */
+    int getTurtleCount();
+
+    /** @return i comandi eseguiti da ogni tartaruga, nell'ordine di creazione */
+    long[] getTurtleCommands();
+
+    /** @return i comandi al secondo di ogni tartaruga, nell'ordine di creazione */
+    double[] getTurtleCommandRates();
+
+    /**
+     * Azzera tutti i contatori e gli istogrammi.
+     */
+    void reset();
+}
@@ -1,9 +1,30 @@
 
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * Classe principale per la gestione dello schermo della tartaruga.
@@ -42,8 +63,14 @@ public class TurtleScreen {
     //  Il canvas su cui vengono disegnate le tartarughe
     protected TurtleCanvas canvas;
 
-    //  Lista thread-safe di tutte le tartarughe registrate
-    protected final CopyOnWriteArrayList<Turtle> turtles = new CopyOnWriteArrayList<>();
+    //  Tartarughe registrate: la registrazione aggiunge in coda senza copiare la lista
+    private final List<Turtle> registered = new AppendOnlyList<>();
+
+    //  Lista thread-safe in sola lettura di tutte le tartarughe registrate (vedi turtles())
+    protected final List<Turtle> turtles = Collections.unmodifiableList(registered);
+
+    //  Sciami di tartarughe creati con createSwarm
+    private final CopyOnWriteArrayList<TurtleSwarm> swarms = new CopyOnWriteArrayList<>();
 
     //  Larghezza dello schermo in pixel
     protected int width;
@@ -51,13 +78,62 @@ public class TurtleScreen {
     //  Altezza dello schermo in pixel
     protected int height;
 
-    private volatile String lastKey = null;
+    //  true se lo schermo disegna solo in memoria, senza finestra né EDT
+    protected final boolean headless;
+
+    //  Eventi di tastiera e mouse, stato dei tasti e callback
+    private final TurtleInput input = new TurtleInput();
     private volatile boolean mouseClicked = false;
     private volatile int mouseX = 0;
     private volatile int mouseY = 0;
     private volatile boolean running = false;
     private volatile boolean looping = true;
-    private int frameRate = 60;
+    private volatile int frameRate = 60;
+
+    //  Timestep fisso: loop() riceve sempre 1 / frameRate e recupera i ritardi
+    private volatile boolean fixedTimestep = false;
+    private volatile int maxFrameSkip = 5;
+    private final FrameStats frameStats = new FrameStats();
+
+    //  Metriche di rendering, esposte via JMX con il nome mbeanName
+    private final TurtleMetrics metrics = new TurtleMetrics(turtles, frameStats);
+    private ObjectName mbeanName;
+    private static final AtomicInteger screenCount = new AtomicInteger();
+
+    //  Sotto questo anticipo l'attesa del frame prosegue in spin invece che con sleep
+    private static final long SPIN_NANOS = 1_500_000L;
+
+    //  Ogni quante operazioni di disegno presentare un frame (0 = solo con update())
+    private volatile int tracerSteps = 1;
+    private volatile int tracerDelay = 0;
+
+    //  Massimo scostamento in pixel tra le corde di circle() e il cerchio vero
+    private volatile double arcTolerance = 0.25;
+
+    //  Zoom con la rotella e spostamento trascinando con il tasto destro o centrale
+    private volatile boolean interactiveView = false;
+    private static final double WHEEL_ZOOM = 1.2;
+
+    //  Navigazione accumulata sull'EDT e applicata con un solo ridisegno (solo EDT)
+    private double pendingZoom = 1;
+    private double pendingZoomX;
+    private double pendingZoomY;
+    private double pendingPanX;
+    private double pendingPanY;
+    private boolean navigationScheduled = false;
+    private boolean panning = false;
+    private int dragX;
+    private int dragY;
+
+    //  Livello di compressione dei PNG salvati con saveImage (0-9)
+    private volatile int pngCompression = ImageSaver.DEFAULT_PNG_COMPRESSION;
+
+    //  Animatore delle tartarughe asincrone, creato al primo utilizzo
+    private TurtleAnimator animator;
+
+    //  Esecutore dei programmi avviati con spawn(), un thread per tartaruga
+    private ExecutorService turtleExecutor;
+    private final ConcurrentLinkedQueue<Future<Turtle>> spawned = new ConcurrentLinkedQueue<>();
 
     /**
      * Crea uno schermo con dimensioni predefinite (800x600).
@@ -68,14 +144,54 @@ public class TurtleScreen {
 
     /**
      * Crea uno schermo con le dimensioni specificate.
+     * Se l'ambiente è headless ({@code java.awt.headless=true}) lo schermo
+     * viene creato automaticamente in modalità headless.
      *
      * @param width la larghezza dello schermo in pixel
      * @param height l'altezza dello schermo in pixel
      */
     public TurtleScreen(int width, int height) {
+        this(width, height, GraphicsEnvironment.isHeadless());
+    }
+
+    /**
+     * Crea uno schermo con le dimensioni specificate, con o senza finestra.
+     *
+     * <p>In modalità headless le tartarughe disegnano in un raster in memoria:
+     * non viene creata alcuna finestra, non viene avviato il timer di rendering
+     * né l'Event Dispatch Thread, i movimenti non vengono animati e
+     * {@link #run()} ritorna appena termina {@link #setup()} (con {@link #noLoop()}).
+     * Il risultato si ottiene con {@link TurtleCanvas#getImage()}.</p>
+     *
+     * @param width la larghezza dello schermo in pixel
+     * @param height l'altezza dello schermo in pixel
+     * @param headless true per disegnare solo in memoria
+     */
+    public TurtleScreen(int width, int height, boolean headless) {
         this.width = width;
         this.height = height;
-        initWindow();
+        this.headless = headless;
+        if (headless) {
+            initHeadless();
+        } else {
+            initWindow();
+            try {
+                registerMBean();
+            } catch (IllegalStateException e) {
+                // JMX non disponibile: le metriche restano accessibili con getMetrics()
+            }
+        }
+    }
+
+    /**
+     * Inizializza il canvas in memoria per la modalità headless.
+     * Viene eseguito sul thread chiamante, senza passare dall'EDT.
+     */
+    private void initHeadless() {
+        canvas = new TurtleCanvas(width, height, true);
+        canvas.setTurtles(turtles);
+        canvas.setSwarms(swarms);
+        canvas.setMetrics(metrics);
     }
 
     /**
@@ -89,6 +205,8 @@ public class TurtleScreen {
 
                 canvas = new TurtleCanvas(width, height);
                 canvas.setTurtles(turtles);
+                canvas.setSwarms(swarms);
+                canvas.setMetrics(metrics);
                 frame.add(canvas);
                 frame.pack();
                 frame.setLocationRelativeTo(null);
@@ -97,8 +215,7 @@ public class TurtleScreen {
                 frame.addWindowListener(new WindowAdapter() {
                     @Override
                     public void windowClosing(WindowEvent e) {
-                        running = false;
-                        canvas.stopRenderLoop();
+                        shutdown();
                     }
                 });
 
@@ -108,48 +225,116 @@ public class TurtleScreen {
                 canvas.addKeyListener(new KeyAdapter() {
                     @Override
                     public void keyPressed(KeyEvent e) {
-                        int code = e.getKeyCode();
-
-                        // Tasti speciali con nomi specifici
-                        String key = switch (code) {
-                            case KeyEvent.VK_UP -> "up";
-                            case KeyEvent.VK_DOWN -> "down";
-                            case KeyEvent.VK_LEFT -> "left";
-                            case KeyEvent.VK_RIGHT -> "right";
-                            case KeyEvent.VK_SPACE -> "space";
-                            case KeyEvent.VK_ENTER -> "enter";
-                            case KeyEvent.VK_ESCAPE -> "escape";
-                            default -> null;
-                        };
-
-                        // Se non è un tasto speciale, usa il carattere
-                        if (key == null) {
-                            char c = e.getKeyChar();
-                            if (c != KeyEvent.CHAR_UNDEFINED) {
-                                key = String.valueOf(c).toLowerCase();
-                            } else {
-                                key = KeyEvent.getKeyText(code).toLowerCase();
-                            }
-                        }
+                        input.keyPressed(e.getKeyCode(), e.getKeyChar(), System.nanoTime());
+                    }
 
-                        lastKey = key;
+                    @Override
+                    public void keyReleased(KeyEvent e) {
+                        input.keyReleased(e.getKeyCode(), e.getKeyChar(), System.nanoTime());
                     }
                 });
 
-                canvas.addMouseListener(new MouseAdapter() {
+                canvas.addFocusListener(new FocusAdapter() {
+                    @Override
+                    public void focusLost(FocusEvent e) {
+                        input.releaseAllKeys();
+                    }
+                });
+
+                MouseAdapter mouseListener = new MouseAdapter() {
                     @Override
                     public void mouseClicked(MouseEvent e) {
-                        mouseX = e.getX() - canvas.getWidth() / 2;
-                        mouseY = canvas.getHeight() / 2 - e.getY();
+                        mouseX = (int) Math.round(canvas.toWorldX(e.getX()));
+                        mouseY = (int) Math.round(canvas.toWorldY(e.getY()));
                         mouseClicked = true;
                     }
-                });
+
+                    @Override
+                    public void mousePressed(MouseEvent e) {
+                        if (interactiveView && !SwingUtilities.isLeftMouseButton(e)) {
+                            panning = true;
+                            dragX = e.getX();
+                            dragY = e.getY();
+                        }
+                        publishMouse(TurtleEvent.Type.MOUSE_PRESSED, e);
+                    }
+
+                    @Override
+                    public void mouseReleased(MouseEvent e) {
+                        panning = false;
+                        publishMouse(TurtleEvent.Type.MOUSE_RELEASED, e);
+                    }
+
+                    @Override
+                    public void mouseMoved(MouseEvent e) {
+                        publishMouse(TurtleEvent.Type.MOUSE_MOVED, e);
+                    }
+
+                    @Override
+                    public void mouseDragged(MouseEvent e) {
+                        if (panning) {
+                            pendingPanX += e.getX() - dragX;
+                            pendingPanY += e.getY() - dragY;
+                            dragX = e.getX();
+                            dragY = e.getY();
+                            scheduleNavigation();
+                        }
+                        publishMouse(TurtleEvent.Type.MOUSE_MOVED, e);
+                    }
+
+                    @Override
+                    public void mouseWheelMoved(MouseWheelEvent e) {
+                        if (interactiveView) {
+                            pendingZoom *= Math.pow(WHEEL_ZOOM, -e.getPreciseWheelRotation());
+                            pendingZoomX = e.getX();
+                            pendingZoomY = e.getY();
+                            scheduleNavigation();
+                        }
+                    }
+                };
+                canvas.addMouseListener(mouseListener);
+                canvas.addMouseMotionListener(mouseListener);
+                canvas.addMouseWheelListener(mouseListener);
             });
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Accoda un evento del mouse convertendo la posizione in coordinate turtle.
+     */
+    private void publishMouse(TurtleEvent.Type type, MouseEvent e) {
+        double x = canvas.toWorldX(e.getX());
+        double y = canvas.toWorldY(e.getY());
+        input.mouse(type, x, y, type == TurtleEvent.Type.MOUSE_MOVED ? 0 : e.getButton(), System.nanoTime());
+    }
+
+    /**
+     * Programma sull'EDT l'applicazione della navigazione accumulata, se non
+     * è già in coda: rotellate e trascinamenti arrivati mentre il canvas si
+     * ridisegna vengono uniti in un solo cambio di vista.
+     */
+    private void scheduleNavigation() {
+        if (!navigationScheduled) {
+            navigationScheduled = true;
+            SwingUtilities.invokeLater(this::applyNavigation);
+        }
+    }
+
+    /**
+     * Applica con un solo ridisegno lo spostamento e lo zoom accumulati.
+     */
+    private void applyNavigation() {
+        navigationScheduled = false;
+        if ((pendingZoom != 1 || pendingPanX != 0 || pendingPanY != 0) && canvas.isViewChangeable()) {
+            canvas.navigate(pendingPanX, pendingPanY, pendingZoom, pendingZoomX, pendingZoomY);
+        }
+        pendingZoom = 1;
+        pendingPanX = 0;
+        pendingPanY = 0;
+    }
+
     /**
      * Restituisce l'istanza singleton dello schermo (800x600).
      *
@@ -185,6 +370,90 @@ public class TurtleScreen {
         return new Turtle(this);
     }
 
+    /**
+     * Restituisce le tartarughe create su questo schermo, in ordine di creazione,
+     * come {@code turtles()} del turtle di Python.
+     *
+     * <p>La lista è in sola lettura e si può scorrere da qualunque thread mentre
+     * se ne creano altre: un iteratore vede le tartarughe presenti quando è
+     * stato creato.</p>
+     *
+     * @return una vista non modificabile delle tartarughe dello schermo
+     */
+    public List<Turtle> turtles() {
+        return turtles;
+    }
+
+    /**
+     * Crea uno sciame di tartarughe, tutte nell'origine rivolte verso destra.
+     * Per simulazioni con decine di migliaia di agenti (boids, particelle)
+     * uno sciame è molto più leggero di altrettante {@link Turtle}.
+     *
+     * @param size il numero di tartarughe
+     * @return un nuovo sciame
+     * @see TurtleSwarm
+     */
+    public TurtleSwarm createSwarm(int size) {
+        return new TurtleSwarm(this, size);
+    }
+
+    /**
+     * Crea una nuova tartaruga ed esegue il suo programma su un thread dedicato.
+     *
+     * <p>Ogni tartaruga avviata così ha un thread proprio (virtuale, se la JVM
+     * li supporta) e disegna in parallelo alle altre: il canvas blocca solo le
+     * tile toccate da ogni operazione, quindi tartarughe in zone diverse non si
+     * aspettano a vicenda. Una tartaruga va usata solo dal thread del suo programma.</p>
+     *
+     * <pre>{@code
+     * for (int i = 0; i < 200; i++) {
+     *     int n = i;
+     *     spawn(t -> { t.right(n * 1.8); t.forward(250); });
+     * }
+     * awaitTurtles();
+     * }</pre>
+     *
+     * @param program il programma della tartaruga
+     * @return un Future completato con la tartaruga quando il programma termina
+     */
+    public Future<Turtle> spawn(Consumer<Turtle> program) {
+        Turtle turtle = createTurtle();
+        Future<Turtle> future = getTurtleExecutor().submit(() -> {
+            program.accept(turtle);
+            return turtle;
+        });
+        spawned.add(future);
+        return future;
+    }
+
+    /**
+     * Attende la fine di tutti i programmi avviati con {@link #spawn(Consumer)}.
+     * Se un programma è terminato con un'eccezione, questa viene rilanciata.
+     */
+    public void awaitTurtles() {
+        Future<Turtle> future;
+        while ((future = spawned.poll()) != null) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Restituisce l'esecutore dei programmi delle tartarughe, creandolo al primo utilizzo.
+     */
+    private synchronized ExecutorService getTurtleExecutor() {
+        if (turtleExecutor == null) {
+            turtleExecutor = TurtleThreads.newPerTaskExecutor("turtle");
+        }
+        return turtleExecutor;
+    }
+
     /**
      * Registra una tartaruga nello schermo
      * Chiamato automaticamente dal costruttore di Turtle
@@ -192,7 +461,30 @@ public class TurtleScreen {
      * @param turtle la tartaruga da registrare
      */
     void registerTurtle(Turtle turtle) {
-        turtles.add(turtle);
+        registered.add(turtle);
+    }
+
+    /**
+     * Registra uno sciame nello schermo, così il canvas ne disegna scie e cursori.
+     * Chiamato automaticamente dal costruttore di TurtleSwarm.
+     *
+     * @param swarm lo sciame da registrare
+     */
+    void registerSwarm(TurtleSwarm swarm) {
+        swarms.add(swarm);
+    }
+
+    /**
+     * Restituisce l'animatore delle tartarughe in modalità asincrona,
+     * creandolo al primo utilizzo.
+     *
+     * @return l'animatore dello schermo
+     */
+    synchronized TurtleAnimator getAnimator() {
+        if (animator == null) {
+            animator = new TurtleAnimator(this);
+        }
+        return animator;
     }
 
     /**
@@ -213,22 +505,211 @@ public class TurtleScreen {
         bgcolor(Turtle.parseColor(colorName));
     }
 
+    /**
+     * Registra una forma vettoriale per i cursori e i timbri, come
+     * {@code register_shape} del turtle di Python. La forma viene riempita con
+     * il colore di riempimento della tartaruga, contornata di nero e ruotata con lei.
+     *
+     * <pre>{@code
+     * Path2D.Double rombo = new Path2D.Double();
+     * rombo.moveTo(10, 0); rombo.lineTo(0, 5); rombo.lineTo(-10, 0); rombo.lineTo(0, -5);
+     * rombo.closePath();
+     * registerShape("rombo", rombo);
+     * t.setShape("rombo");
+     * }</pre>
+     *
+     * @param name il nome da usare con {@link Turtle#setShape(String)}
+     * @param shape il contorno in coordinate turtle, con la tartaruga nell'origine
+     *              rivolta verso destra; viene scalato da {@link Turtle#setTurtleSize(double)}
+     */
+    public void registerShape(String name, Shape shape) {
+        canvas.getSprites().register(name, shape);
+    }
+
+    /**
+     * Registra un'immagine come forma dei cursori e dei timbri. L'immagine viene
+     * centrata sulla tartaruga e, come nel turtle di Python, non ruota con lei.
+     *
+     * @param name il nome da usare con {@link Turtle#setShape(String)}
+     * @param image l'immagine, già caricata (per esempio con {@code ImageIO.read})
+     */
+    public void registerShape(String name, Image image) {
+        canvas.getSprites().register(name, image);
+    }
+
+    /**
+     * Cancella solo un livello del canvas (vedi {@link Turtle#setLayer(int)}).
+     *
+     * @param id l'id del livello
+     */
+    public void clearLayer(int id) {
+        canvas.clearLayer(id);
+    }
+
+    /**
+     * Indica se un livello va mantenuto tra un frame e l'altro in modalità loop.
+     * Per default ogni frame cancella tutti i livelli; un livello persistente
+     * viene disegnato una volta (tipicamente in {@link #setup()}) e poi solo ricomposto.
+     *
+     * @param id l'id del livello
+     * @param persistent true per non cancellarlo a ogni frame
+     */
+    public void setLayerPersistent(int id, boolean persistent) {
+        canvas.setLayerPersistent(id, persistent);
+    }
+
+    /**
+     * Inizia l'esportazione SVG del disegno su un Writer.
+     *
+     * <p>Quanto già disegnato viene scritto subito, il resto man mano che le
+     * tartarughe disegnano; chiudere l'esportatore al termine per completare
+     * il documento. La memoria usata non dipende dalla dimensione del disegno.</p>
+     *
+     * <pre>{@code
+     * try (SvgExporter svg = startSvgExport(Files.newBufferedWriter(path))) {
+     *     disegnaFrattale(t, 16);
+     * }
+     * }</pre>
+     *
+     * @param out il Writer di destinazione
+     * @return l'esportatore da chiudere
+     */
+    public SvgExporter startSvgExport(Writer out) {
+        return canvas.startSvgExport(out);
+    }
+
+    /**
+     * Inizia l'esportazione SVG del disegno su uno stream, in UTF-8.
+     *
+     * @param out lo stream di destinazione
+     * @return l'esportatore da chiudere
+     */
+    public SvgExporter startSvgExport(OutputStream out) {
+        return startSvgExport(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Salva in un file SVG quanto disegnato finora.
+     *
+     * @param file il file di destinazione
+     * @throws IOException se la scrittura fallisce
+     */
+    public void saveSvg(Path file) throws IOException {
+        startSvgExport(Files.newBufferedWriter(file, StandardCharsets.UTF_8)).close();
+    }
+
+    /**
+     * Salva un'istantanea del canvas senza fermare il disegno.
+     * Il formato dipende dall'estensione: {@code .bmp}, {@code .raw} o PNG.
+     *
+     * @param file il file di destinazione
+     * @return un future completato con il file quando è stato scritto
+     * @see #saveImage(Path, String)
+     */
+    public CompletableFuture<Path> saveImage(Path file) {
+        return saveImage(file, ImageSaver.formatOf(file));
+    }
+
+    /**
+     * Salva un'istantanea del canvas in un formato specifico, senza fermare il disegno.
+     *
+     * <p>Il chiamante copia solo i pixel visibili (livelli e spezzate in costruzione);
+     * la codifica avviene in background, quindi si possono salvare molte
+     * istantanee al secondo senza rallentare i frame. Formati: {@code "png"}
+     * (vedi {@link #setPngCompression(int)}), {@code "bmp"} a 24 bit e {@code "raw"},
+     * cioè i pixel ARGB come interi big-endian riga per riga, senza intestazione.</p>
+     *
+     * @param file il file di destinazione
+     * @param format "png", "bmp" o "raw"
+     * @return un future completato con il file, o con l'errore di scrittura
+     */
+    public CompletableFuture<Path> saveImage(Path file, String format) {
+        return ImageSaver.saveAsync(canvas.snapshot(), file, format, pngCompression);
+    }
+
+    /**
+     * Inizia a registrare i frame presentati dallo schermo.
+     *
+     * <p>Se il nome termina con {@code .gif} viene creata una GIF animata,
+     * altrimenti il percorso è una cartella in cui vengono scritti i frame
+     * come {@code frame-000000.png}, {@code frame-000001.png}... Viene catturato
+     * un frame a ogni aggiornamento dello schermo (passi animati, frame di
+     * {@link #loop()}, {@link #tracer(int)}); i frame identici al precedente
+     * vengono saltati. Quantizzazione e codifica avvengono in background.</p>
+     *
+     * @param target il file GIF o la cartella della sequenza PNG
+     * @return la registrazione in corso
+     * @throws IOException se la cartella non può essere creata
+     * @throws IllegalStateException se un'altra registrazione è in corso
+     */
+    public FrameRecorder startRecording(Path target) throws IOException {
+        boolean gif = target.getFileName().toString().toLowerCase().endsWith(".gif");
+        FrameRecorder recorder = new FrameRecorder(canvas, target, gif);
+        try {
+            canvas.setRecorder(recorder);
+        } catch (IllegalStateException e) {
+            recorder.close();
+            throw e;
+        }
+        return recorder;
+    }
+
+    /**
+     * Ferma la registrazione in corso e attende che tutti i frame siano scritti.
+     * Non fa nulla se non c'è una registrazione.
+     *
+     * @throws IOException se la scrittura di un frame è fallita
+     */
+    public void stopRecording() throws IOException {
+        FrameRecorder recorder = canvas.getRecorder();
+        if (recorder != null) {
+            recorder.close();
+        }
+    }
+
+    /**
+     * Imposta il livello di compressione dei PNG salvati con {@link #saveImage(Path)}:
+     * 0 scrive più in fretta file più grandi, 9 file più piccoli più lentamente.
+     *
+     * @param level il livello di compressione, da 0 a 9 (default 4)
+     */
+    public void setPngCompression(int level) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Livello di compressione non valido: " + level);
+        }
+        this.pngCompression = level;
+    }
+
     /**
      * Imposta il titolo della finestra.
      *
      * @param title il nuovo titolo
      */
     public void title(String title) {
-        SwingUtilities.invokeLater(() -> frame.setTitle(title));
+        if (frame != null) {
+            SwingUtilities.invokeLater(() -> frame.setTitle(title));
+        }
+    }
+
+    /**
+     * Verifica se lo schermo è in modalità headless.
+     *
+     * @return true se lo schermo disegna solo in memoria
+     */
+    public boolean isHeadless() {
+        return headless;
     }
 
     /**
      * Aggiorna lo schermo immediatamente.
      * Utile per vedere i progressi del disegno in modalità noLoop.
+     * In modalità headless non fa nulla.
      */
     public void refresh() {
+        if (headless) {
+            return;
+        }
         canvas.swapBuffers();
-        canvas.repaint();
         try {
             Thread.sleep(1);
         } catch (InterruptedException e) {
@@ -236,15 +717,216 @@ public class TurtleScreen {
         }
     }
 
+    /**
+     * Imposta ogni quante operazioni di disegno aggiornare lo schermo,
+     * come {@code tracer(n)} del turtle di Python.
+     *
+     * <p>Con {@code n = 1} (default) i movimenti vengono animati passo per passo
+     * secondo la velocità di ogni tartaruga. Con {@code n > 1} i movimenti non
+     * vengono più animati e lo schermo viene aggiornato ogni {@code n} operazioni
+     * (movimenti, punti, riempimenti, testi) di tutte le tartarughe.
+     * Con {@code n = 0} lo schermo viene aggiornato solo chiamando {@link #update()}.</p>
+     *
+     * @param n il numero di operazioni tra due aggiornamenti
+     */
+    public void tracer(int n) {
+        tracer(n, tracerDelay);
+    }
+
+    /**
+     * Imposta ogni quante operazioni aggiornare lo schermo e la pausa dopo ogni aggiornamento.
+     *
+     * @param n il numero di operazioni tra due aggiornamenti (0 = solo con {@link #update()})
+     * @param delay la pausa in millisecondi dopo ogni aggiornamento
+     * @see #tracer(int)
+     */
+    public void tracer(int n, int delay) {
+        this.tracerSteps = Math.max(0, n);
+        this.tracerDelay = Math.max(0, delay);
+    }
+
+    /**
+     * Restituisce il numero di operazioni tra due aggiornamenti impostato con {@link #tracer(int)}.
+     *
+     * @return il valore corrente del tracer
+     */
+    public int getTracer() {
+        return tracerSteps;
+    }
+
+    /**
+     * Imposta la precisione dei cerchi disegnati con {@code circle(radius)} e
+     * {@code circle(radius, extent)}: il numero di segmenti viene scelto in modo
+     * che nessuna corda si scosti dal cerchio più di questa distanza, quindi i
+     * cerchi grandi restano lisci e quelli piccoli costano pochi segmenti.
+     *
+     * @param pixels lo scostamento massimo in pixel (default 0.25)
+     */
+    public void setArcTolerance(double pixels) {
+        if (!(pixels > 0)) {
+            throw new IllegalArgumentException("Tolleranza non valida: " + pixels);
+        }
+        this.arcTolerance = pixels;
+    }
+
+    /**
+     * Restituisce la precisione dei cerchi impostata con {@link #setArcTolerance(double)}.
+     *
+     * @return lo scostamento massimo in pixel
+     */
+    public double getArcTolerance() {
+        return arcTolerance;
+    }
+
+    /**
+     * Verifica se i movimenti delle tartarughe vanno animati passo per passo.
+     */
+    boolean animatesMoves() {
+        return !headless && tracerSteps == 1;
+    }
+
+    /**
+     * Conta un'operazione di disegno e, se il tracer lo richiede,
+     * presenta un frame. Chiamato dalle tartarughe dopo ogni operazione.
+     * In modalità headless i frame servono solo a una registrazione in corso.
+     *
+     * <p>Ogni tartaruga (e ogni sciame) tiene il proprio contatore e presenta un
+     * frame ogni {@code n} operazioni sue: in totale resta un frame ogni
+     * {@code n} operazioni, ma tartarughe guidate da thread diversi non si
+     * contendono un contatore condiviso.</p>
+     *
+     * @param count le operazioni contate finora dal chiamante
+     * @return il nuovo valore del contatore del chiamante
+     */
+    int countOperation(int count) {
+        int n = tracerSteps;
+        if (n <= 1 || (headless && canvas.getRecorder() == null)) {
+            return 0;
+        }
+        if (++count < n) {
+            return count;
+        }
+        canvas.swapBuffers();
+        if (tracerDelay > 0) {
+            try {
+                Thread.sleep(tracerDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return 0;
+    }
+
     /**
      * Imposta il frame rate desiderato per il loop di animazione.
      *
      * @param fps i frame al secondo (default: 60)
      */
     public void frameRate(int fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("Frame rate non valido: " + fps);
+        }
         this.frameRate = fps;
     }
 
+    /**
+     * Attiva o disattiva il timestep fisso.
+     *
+     * <p>Con il timestep fisso {@link #loop(double)} riceve sempre {@code 1 / frameRate}
+     * secondi, così la simulazione è deterministica. Se un frame arriva in ritardo
+     * di uno o più periodi, il loop esegue gli aggiornamenti mancanti senza
+     * presentarli (al massimo {@link #setMaxFrameSkip(int)}) e presenta solo
+     * l'ultimo. Senza timestep fisso (default) {@code loop(double)} riceve il
+     * tempo realmente trascorso dal frame precedente.</p>
+     *
+     * @param fixed true per il timestep fisso
+     */
+    public void setFixedTimestep(boolean fixed) {
+        this.fixedTimestep = fixed;
+    }
+
+    /**
+     * Imposta quanti aggiornamenti al massimo il timestep fisso può eseguire
+     * senza presentarli per recuperare un ritardo. Oltre questo limite il
+     * ritardo residuo viene abbandonato e la simulazione rallenta invece di
+     * bloccarsi a inseguire il tempo.
+     *
+     * @param frames gli aggiornamenti saltabili per frame (default 5, 0 = nessuno)
+     */
+    public void setMaxFrameSkip(int frames) {
+        this.maxFrameSkip = Math.max(0, frames);
+    }
+
+    /**
+     * Restituisce le statistiche del loop di animazione: FPS ottenuti,
+     * durata e jitter dei frame, scadenze mancate e aggiornamenti saltati.
+     *
+     * @return le statistiche, aggiornate a ogni frame
+     */
+    public FrameStats getFrameStats() {
+        return frameStats;
+    }
+
+    /**
+     * Restituisce le metriche di rendering dello schermo: segmenti, riempimenti,
+     * punti e testi disegnati, tempi di swapBuffers, paintComponent e loop(),
+     * percentili della durata dei frame e comandi al secondo delle tartarughe.
+     *
+     * @return le metriche, sempre attive
+     */
+    public TurtleMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Registra le metriche dello schermo nel server MBean della piattaforma, con
+     * nome {@code turtle:type=TurtleScreen,name=screen-N}. Gli schermi con finestra
+     * vengono registrati alla creazione; quelli headless solo chiamando questo
+     * metodo, perché il server MBean li terrebbe in memoria fino a
+     * {@link #unregisterMBean()}.
+     *
+     * @throws IllegalStateException se la registrazione non è possibile
+     */
+    public synchronized void registerMBean() {
+        if (mbeanName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("turtle:type=TurtleScreen,name=screen-" + screenCount.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            mbeanName = name;
+        } catch (JMException | SecurityException e) {
+            throw new IllegalStateException("Registrazione JMX non riuscita", e);
+        }
+    }
+
+    /**
+     * Rimuove le metriche dello schermo dal server MBean, se erano registrate.
+     * Viene chiamato anche alla chiusura della finestra.
+     */
+    public synchronized void unregisterMBean() {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (JMException e) {
+            // Già rimosso dall'esterno
+        }
+        mbeanName = null;
+    }
+
+    /**
+     * Mostra o nasconde un riquadro con le metriche principali nell'angolo
+     * in alto a sinistra della finestra. Il riquadro è disegnato solo a video,
+     * non sul canvas: non compare in getImage, saveImage né nelle registrazioni.
+     *
+     * @param show true per mostrare il riquadro
+     */
+    public void showStats(boolean show) {
+        canvas.setStatsOverlay(show);
+    }
+
     /**
      * Metodo chiamato una volta all'avvio dell'applicazione.
      * Sovrascrivere per inizializzare le tartarughe e il disegno iniziale.
@@ -260,18 +942,42 @@ public class TurtleScreen {
     public void loop() {
     }
 
+    /**
+     * Metodo chiamato ripetutamente durante l'esecuzione, con il tempo del frame.
+     * Sovrascrivere questo metodo invece di {@link #loop()} per animazioni che
+     * dipendono dal tempo; l'implementazione predefinita chiama {@link #loop()}.
+     *
+     * @param delta i secondi simulati da questo aggiornamento: {@code 1 / frameRate}
+     *              con il timestep fisso, altrimenti il tempo reale dal frame precedente
+     */
+    public void loop(double delta) {
+        loop();
+    }
+
     /**
      * Avvia l'esecuzione dell'applicazione.
-     * Chiama {@link #setup()} una volta, poi {@link #loop()} ripetutamente
+     * Chiama {@link #setup()} una volta, poi {@link #loop(double)} ripetutamente
      * (a meno che non sia stata chiamata {@link #noLoop()}).
+     * Prima di ogni aggiornamento vengono cancellati i livelli non persistenti
+     * (vedi {@link #setLayerPersistent(int, boolean)}).
+     *
+     * <p>I frame sono cadenzati con {@link System#nanoTime()} su scadenze assolute,
+     * quindi il frame rate medio è esatto anche quando il periodo non è un numero
+     * intero di millisecondi: il thread dorme fino a poco prima della scadenza
+     * e attende in spin l'ultimo tratto. Vedi anche {@link #setFixedTimestep(boolean)}
+     * e {@link #getFrameStats()}.</p>
      */
     public void run() {
         setup();
         running = true;
 
         if (!looping) {
+            awaitTurtles();
+            canvas.flushPaths();
             canvas.swapBuffers();
-            canvas.repaint();
+            if (headless) {
+                return;
+            }
             while (running) {
                 try {
                     Thread.sleep(100);
@@ -282,27 +988,73 @@ public class TurtleScreen {
             return;
         }
 
-        long frameTime = 1000 / frameRate;
+        frameStats.reset();
+        long previous = System.nanoTime();
+        long deadline = previous;
 
         while (running) {
-            long startTime = System.currentTimeMillis();
+            long period = Math.round(1e9 / frameRate);
+            long start = System.nanoTime();
+            if (start != previous) {
+                frameStats.recordFrame(start - previous);
+                metrics.recordFrame(start - previous);
+            }
 
-            canvas.clearBuffer();
-            loop();
-            canvas.swapBuffers();
-            canvas.repaint();
+            int skipped = 0;
+            double delta;
+            if (fixedTimestep) {
+                delta = period / 1e9;
+                long behind = (start - deadline) / period;
+                if (behind > 0) {
+                    skipped = (int) Math.min(behind, maxFrameSkip);
+                    if (behind > skipped) {
+                        deadline = start - skipped * period;
+                    }
+                    frameStats.recordSkippedUpdates(skipped);
+                }
+            } else {
+                delta = start == previous ? period / 1e9 : (start - previous) / 1e9;
+            }
+            previous = start;
 
-            long elapsed = System.currentTimeMillis() - startTime;
-            long sleepTime = frameTime - elapsed;
+            for (int i = 0; i <= skipped; i++) {
+                canvas.clearTransientLayers();
+                long loopStart = System.nanoTime();
+                loop(delta);
+                metrics.recordLoop(System.nanoTime() - loopStart);
+            }
+            canvas.swapBuffers();
 
-            if (sleepTime > 0) {
-                try {
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    break;
+            deadline += (skipped + 1) * period;
+            if (System.nanoTime() > deadline) {
+                frameStats.recordMissedDeadline();
+                if (!fixedTimestep) {
+                    deadline = System.nanoTime();
                 }
+            } else if (!waitUntil(deadline)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Attende fino all'istante indicato di {@link System#nanoTime()}: dorme finché
+     * manca più di {@link #SPIN_NANOS}, poi attende in spin per una scadenza precisa.
+     *
+     * @return false se il thread è stato interrotto
+     */
+    private static boolean waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > SPIN_NANOS) {
+            LockSupport.parkNanos(remaining - SPIN_NANOS);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
             }
         }
+        while (System.nanoTime() - deadline < 0) {
+            Thread.onSpinWait();
+        }
+        return true;
     }
 
     /**
@@ -312,6 +1064,36 @@ public class TurtleScreen {
         running = false;
     }
 
+    /**
+     * Chiude lo schermo, come {@code bye} del turtle di Python: ferma il loop
+     * principale e il dispatcher di {@code onKey}, {@code onClick} e
+     * {@code onTimer} e l'animatore delle tartarughe asincrone, rimuove le
+     * metriche dal server MBean e chiude la finestra.
+     * Uno schermo headless non ha una finestra da chiudere, quindi va chiuso
+     * così quando non serve più.
+     */
+    public void bye() {
+        shutdown();
+        if (!headless) {
+            SwingUtilities.invokeLater(frame::dispose);
+        }
+    }
+
+    /**
+     * Rilascia le risorse dello schermo, alla chiusura della finestra o con {@link #bye()}.
+     */
+    private void shutdown() {
+        running = false;
+        canvas.stopRenderLoop();
+        input.close();
+        synchronized (this) {
+            if (animator != null) {
+                animator.stop();
+            }
+        }
+        unregisterMBean();
+    }
+
     /**
      * Disabilita il loop di animazione.
      * Chiamare prima di {@link #run()} per disegni statici.
@@ -329,10 +1111,11 @@ public class TurtleScreen {
     }
 
     /**
-     * Forza un aggiornamento del display.
+     * Forza un aggiornamento del display, presentando tutto ciò che è stato
+     * disegnato finora. Da usare insieme a {@link #tracer(int)}.
      */
     public void update() {
-        canvas.repaint();
+        canvas.swapBuffers();
     }
 
     /**
@@ -354,30 +1137,235 @@ public class TurtleScreen {
     }
 
     /**
-     * Restituisce l'ultimo tasto premuto e lo resetta.
-     * Restituisce null se nessun tasto è stato premuto dall'ultima chiamata.
+     * Fa corrispondere alla finestra il rettangolo turtle indicato, come
+     * {@code setworldcoordinates} del turtle di Python: (llx, lly) è l'angolo
+     * in basso a sinistra e (urx, ury) quello in alto a destra. Le scale dei
+     * due assi possono essere diverse; spessori delle penne, punti e testi
+     * restano misurati in pixel. Il disegno già fatto viene ridisegnato.
      *
-     * @return il nome del tasto premuto, o null
+     * @param llx la X dell'angolo in basso a sinistra
+     * @param lly la Y dell'angolo in basso a sinistra
+     * @param urx la X dell'angolo in alto a destra
+     * @param ury la Y dell'angolo in alto a destra
+     * @throws IllegalArgumentException se il rettangolo è vuoto o capovolto
+     * @throws IllegalStateException se il disegno non può essere ridisegnato,
+     *         vedi {@link TurtleCanvas#isViewChangeable()}
+     */
+    public void setWorldCoordinates(double llx, double lly, double urx, double ury) {
+        canvas.setWorldCoordinates(llx, lly, urx, ury);
+    }
+
+    /**
+     * Ingrandisce la vista attorno al centro della finestra.
+     *
+     * @param factor il fattore di ingrandimento (maggiore di 1 per avvicinarsi)
+     */
+    public void zoom(double factor) {
+        canvas.zoom(factor);
+    }
+
+    /**
+     * Ingrandisce la vista lasciando fermo il punto turtle indicato.
+     *
+     * @param factor il fattore di ingrandimento (maggiore di 1 per avvicinarsi)
+     * @param x la X del punto fisso
+     * @param y la Y del punto fisso
+     */
+    public void zoom(double factor, double x, double y) {
+        canvas.zoom(factor, x, y);
+    }
+
+    /**
+     * Sposta la vista di {@code dx} pixel a destra e {@code dy} pixel in basso.
+     *
+     * @param dx lo spostamento orizzontale in pixel
+     * @param dy lo spostamento verticale in pixel
+     */
+    public void pan(double dx, double dy) {
+        canvas.pan(dx, dy);
+    }
+
+    /**
+     * Sceglie zoom e posizione in modo che tutto il disegno sia visibile.
+     */
+    public void zoomToFit() {
+        canvas.zoomToFit();
+    }
+
+    /**
+     * Torna alla vista predefinita: un'unità turtle per pixel, origine al centro.
+     */
+    public void resetView() {
+        canvas.resetView();
+    }
+
+    /**
+     * Abilita o disabilita la navigazione con il mouse: la rotella ingrandisce
+     * attorno al puntatore, il trascinamento con il tasto destro o centrale
+     * sposta la vista. Il tasto sinistro resta libero per il programma.
+     * È disabilitata per default. Con una display list disabilitata la vista
+     * non cambia (vedi {@link TurtleCanvas#isViewChangeable()}).
+     *
+     * @param enabled true per abilitarla
+     */
+    public void setInteractiveView(boolean enabled) {
+        this.interactiveView = enabled;
+    }
+
+    /**
+     * Verifica se la navigazione con il mouse è abilitata.
+     *
+     * @return true se rotella e trascinamento cambiano la vista
+     */
+    public boolean isInteractiveView() {
+        return interactiveView;
+    }
+
+    /**
+     * Restituisce l'ultimo tasto premuto e resetta lo stato.
+     * Per leggere tutti i tasti premuti, nell'ordine, usare {@link #pollKey()}.
+     *
+     * @return il nome del tasto premuto, o null se nessun tasto è stato premuto
      */
     public String getLastKey() {
-        String key = lastKey;
-        lastKey = null;
-        return key;
+        return input.lastKey();
     }
 
     /**
-     * Verifica se un tasto specifico è stato premuto.
-     * Resetta lo stato del tasto se corrisponde.
+     * Restituisce il prossimo tasto premuto non ancora letto con questo metodo.
+     *
+     * <p>I tasti premuti tra due chiamate non vanno persi: vengono restituiti
+     * uno alla volta, nell'ordine in cui sono stati premuti (fino a
+     * {@value TurtleInput#CAPACITY} eventi in attesa). Restituisce null se non
+     * ci sono tasti nuovi dall'ultima chiamata.</p>
      *
-     * @param key il nome del tasto da verificare (es. "space", "a", "up")
+     * @return il nome del tasto premuto, o null
+     */
+    public String pollKey() {
+        return input.pollKey();
+    }
+
+    /**
+     * Verifica se un tasto specifico è stato premuto e resetta lo stato.
+     * Ogni tasto è seguito separatamente, quindi controllare più tasti nello
+     * stesso frame non fa perdere le pressioni degli altri. Una pressione non
+     * verificata entro mezzo secondo viene dimenticata.
+     *
+     * @param key il nome del tasto da verificare (es. "space", "a", "up", "+")
      * @return true se il tasto è stato premuto
      */
     public boolean checkKey(String key) {
-        if (lastKey != null && lastKey.equals(key.toLowerCase())) {
-            lastKey = null;
-            return true;
+        return input.checkKey(key, System.nanoTime());
+    }
+
+    /**
+     * Verifica se un tasto è tenuto premuto in questo momento,
+     * per esempio per muovere una tartaruga finché la freccia resta premuta.
+     *
+     * @param key il nome del tasto (es. "space", "a", "up")
+     * @return true se il tasto è premuto
+     */
+    public boolean isKeyDown(String key) {
+        return input.isKeyDown(key);
+    }
+
+    /**
+     * Preleva il prossimo evento di input non ancora letto con questo metodo:
+     * tasti premuti e rilasciati, pulsanti del mouse premuti e rilasciati,
+     * movimenti del mouse, in ordine di arrivo e con l'istante di ricezione.
+     *
+     * <pre>{@code
+     * TurtleEvent e;
+     * while ((e = pollEvent()) != null) {
+     *     if (e.getType() == TurtleEvent.Type.MOUSE_MOVED) {
+     *         t.goTo(e.getX(), e.getY());
+     *     }
+     * }
+     * }</pre>
+     *
+     * @return l'evento, o null se non ce ne sono
+     */
+    public TurtleEvent pollEvent() {
+        return input.poll();
+    }
+
+    /**
+     * Restituisce quanti eventi sono andati persi perché un lettore
+     * ({@link #pollEvent()}, {@link #pollKey()} o i callback) è rimasto
+     * indietro di più di {@value TurtleInput#CAPACITY} eventi.
+     *
+     * @return il numero di eventi persi
+     */
+    public long getDroppedEvents() {
+        return input.getDropped();
+    }
+
+    /**
+     * Registra un'azione da eseguire ogni volta che viene premuto un tasto,
+     * come {@code onkey} del turtle di Python.
+     *
+     * <p>I callback ({@code onKey}, {@code onClick}, {@code onTimer}) vengono
+     * eseguiti uno alla volta, nell'ordine degli eventi, su un thread dedicato
+     * (virtuale, se la JVM li supporta) e non sull'EDT: possono muovere le
+     * tartarughe e anche attendere senza bloccare la finestra.</p>
+     *
+     * @param key il nome del tasto (es. "space", "a", "up")
+     * @param action l'azione da eseguire
+     */
+    public void onKey(String key, Runnable action) {
+        if (TurtleInput.keyCode(key) == KeyEvent.VK_UNDEFINED) {
+            throw new IllegalArgumentException("Tasto non riconosciuto: " + key);
+        }
+        String name = key.toLowerCase();
+        input.onKey(e -> {
+            if (e.getType() == TurtleEvent.Type.KEY_PRESSED && name.equals(e.getKey())) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Registra un callback per tutti gli eventi della tastiera, pressioni e rilasci.
+     *
+     * @param callback il callback, che riceve l'evento
+     * @see #onKey(String, Runnable)
+     */
+    public void onKey(Consumer<TurtleEvent> callback) {
+        input.onKey(callback);
+    }
+
+    /**
+     * Registra un callback da eseguire alla pressione di un pulsante del mouse,
+     * come {@code onclick} del turtle di Python. L'evento contiene la posizione
+     * in coordinate turtle e il pulsante.
+     *
+     * @param callback il callback, che riceve l'evento
+     * @see #onKey(String, Runnable)
+     */
+    public void onClick(Consumer<TurtleEvent> callback) {
+        input.onClick(callback);
+    }
+
+    /**
+     * Esegue un'azione una volta dopo il ritardo indicato, come {@code ontimer}
+     * del turtle di Python. Per ripeterla, l'azione può registrarsi di nuovo.
+     *
+     * @param action l'azione da eseguire
+     * @param millis il ritardo in millisecondi
+     * @see #onKey(String, Runnable)
+     */
+    public void onTimer(Runnable action, long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Ritardo non valido: " + millis);
         }
-        return false;
+        input.onTimer(action, millis);
+    }
+
+    /**
+     * Restituisce l'input dello schermo.
+     */
+    TurtleInput getInput() {
+        return input;
     }
 
     /**
@@ -0,0 +1,379 @@
+import java.awt.*;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Forme dei cursori delle tartarughe e cache delle loro immagini.
+ *
+ * <p>Ogni combinazione di forma, dimensione e colore viene disegnata una volta
+ * sola in uno sprite per ciascuna delle {@link #HEADINGS} direzioni (multipli di
+ * 5 gradi); i cursori e i timbri ({@link Turtle#stamp()}) vengono poi copiati
+ * sul canvas con un {@code drawImage}, senza costruire geometria né
+ * rasterizzare con l'antialiasing a ogni frame. La direzione viene arrotondata
+ * allo sprite più vicino, con un errore di al più 2.5 gradi.</p>
+ *
+ * <p>Oltre alle forme predefinite ("arrow", "classic", "turtle", "circle",
+ * "square", "blank") si possono registrare forme vettoriali e immagini con
+ * {@link TurtleScreen#registerShape(String, Shape)} e
+ * {@link TurtleScreen#registerShape(String, Image)}. Le immagini, come nel
+ * turtle di Python, non ruotano con la tartaruga.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TurtleSprites {
+
+    /** Numero di direzioni precalcolate per ogni forma */
+    static final int HEADINGS = 72;
+
+    private static final double HEADING_STEP = 360.0 / HEADINGS;
+
+    /** Oltre questo numero di combinazioni forma/dimensione/colore la cache viene svuotata */
+    private static final int MAX_ENTRIES = 512;
+
+    /** Margine attorno alla forma per il contorno e l'antialiasing */
+    private static final int MARGIN = 2;
+
+    /** Precisione con cui le curve vengono spezzate in segmenti nei timbri */
+    private static final double FLATNESS = 0.1;
+
+    private static final int OUTLINE_ARGB = TurtleColors.BLACK;
+
+    private final ConcurrentHashMap<String, CursorShape> shapes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SpriteKey, Rotations> sprites = new ConcurrentHashMap<>();
+
+    TurtleSprites() {
+        shapes.put("arrow", new CursorShape(new Shape[]{polygon(10, 0, -7, -5, -4, 0, -7, 5)},
+                new boolean[]{true}));
+        shapes.put("classic", new CursorShape(new Shape[]{polygon(6, 0, -6, -3, -3, 0, -6, 3)},
+                new boolean[]{true}));
+        shapes.put("turtle", new CursorShape(new Shape[]{
+                new Ellipse2D.Double(-6, -4, 12, 8),
+                new Ellipse2D.Double(4, -1.5, 4, 3),
+                new Ellipse2D.Double(-4, -5.5, 2.5, 2.5),
+                new Ellipse2D.Double(1.5, -5.5, 2.5, 2.5),
+                new Ellipse2D.Double(-4, 3, 2.5, 2.5),
+                new Ellipse2D.Double(1.5, 3, 2.5, 2.5)
+        }, new boolean[]{true, false, false, false, false, false}));
+        shapes.put("circle", new CursorShape(new Shape[]{new Ellipse2D.Double(-8, -8, 16, 16)},
+                new boolean[]{true}));
+        shapes.put("square", new CursorShape(new Shape[]{new Rectangle2D.Double(-8, -8, 16, 16)},
+                new boolean[]{true}));
+        shapes.put("blank", new CursorShape(new Shape[0], new boolean[0]));
+    }
+
+    private static Shape polygon(double... xy) {
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(xy[0], xy[1]);
+        for (int k = 2; k < xy.length; k += 2) {
+            path.lineTo(xy[k], xy[k + 1]);
+        }
+        path.closePath();
+        return path;
+    }
+
+    /**
+     * Registra una forma vettoriale, riempita con il colore di riempimento
+     * della tartaruga e contornata di nero. Sostituisce una forma con lo stesso nome.
+     *
+     * @param name il nome della forma
+     * @param shape il contorno in coordinate turtle a dimensione 1, con la tartaruga
+     *              nell'origine rivolta verso destra
+     */
+    void register(String name, Shape shape) {
+        shapes.put(name, new CursorShape(new Shape[]{new Path2D.Double(shape)}, new boolean[]{true}));
+        invalidate(name);
+    }
+
+    /**
+     * Registra un'immagine come forma, centrata sulla tartaruga e non ruotata.
+     *
+     * @param name il nome della forma
+     * @param image l'immagine, copiata al momento della registrazione
+     */
+    void register(String name, Image image) {
+        int w = image.getWidth(null);
+        int h = image.getHeight(null);
+        if (w <= 0 || h <= 0) {
+            throw new IllegalArgumentException("Immagine non caricata o vuota: " + name);
+        }
+        BufferedImage copy = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        shapes.put(name, new CursorShape(copy));
+        invalidate(name);
+    }
+
+    private void invalidate(String name) {
+        sprites.keySet().removeIf(key -> key.shape().equals(name));
+    }
+
+    /**
+     * Restituisce la forma con il nome indicato; i nomi sconosciuti valgono "arrow".
+     */
+    private CursorShape shape(String name) {
+        CursorShape shape = shapes.get(name);
+        return shape != null ? shape : shapes.get("arrow");
+    }
+
+    /**
+     * Restituisce la distanza massima dal centro dei pixel di un cursore,
+     * per calcolare la zona da ridisegnare.
+     */
+    double radius(String name, double size) {
+        return shape(name).radius * Math.abs(size) + MARGIN;
+    }
+
+    /**
+     * Restituisce lo sprite di una forma, creandolo al primo utilizzo.
+     *
+     * @param name il nome della forma
+     * @param size il fattore di scala del cursore
+     * @param argb il colore di riempimento
+     * @param heading la direzione in gradi, arrotondata allo sprite più vicino
+     * @return lo sprite, null se la forma non disegna nulla
+     */
+    Sprite sprite(String name, double size, int argb, double heading) {
+        Rotations rotations = rotations(name, size, argb);
+        return rotations == null ? null : rotations.get(heading);
+    }
+
+    /**
+     * Restituisce gli sprite di una forma in tutte le direzioni, per disegnare
+     * molti cursori con la stessa forma e lo stesso colore con una sola ricerca.
+     *
+     * @param name il nome della forma
+     * @param size il fattore di scala del cursore
+     * @param argb il colore di riempimento
+     * @return le rotazioni della forma, null se la forma non disegna nulla
+     */
+    Rotations rotations(String name, double size, int argb) {
+        CursorShape shape = shape(name);
+        if (shape.parts.length == 0 && shape.image == null) {
+            return null;
+        }
+        int color = shape.image == null ? argb : 0;
+        SpriteKey key = new SpriteKey(name, size, color);
+        Rotations rotations = sprites.get(key);
+        if (rotations == null) {
+            if (sprites.size() >= MAX_ENTRIES) {
+                sprites.clear();
+            }
+            rotations = sprites.computeIfAbsent(key, k -> new Rotations(shape, size, color));
+        }
+        return rotations;
+    }
+
+    /**
+     * Restituisce l'indice dello sprite più vicino a una direzione.
+     */
+    static int headingIndex(double heading) {
+        int index = (int) Math.round(heading / HEADING_STEP) % HEADINGS;
+        return index < 0 ? index + HEADINGS : index;
+    }
+
+    /**
+     * Disegna una forma vettoriale: prima tutti i riempimenti, poi i contorni.
+     */
+    private static Sprite render(CursorShape shape, double size, int argb, double heading) {
+        int anchor = (int) Math.ceil(shape.radius * Math.abs(size)) + MARGIN;
+        BufferedImage image = new BufferedImage(2 * anchor, 2 * anchor, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        AffineTransform toSprite = new AffineTransform();
+        toSprite.translate(anchor, anchor);
+        toSprite.rotate(-Math.toRadians(heading));
+        toSprite.scale(size, -size);
+        Shape[] parts = new Shape[shape.parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = toSprite.createTransformedShape(shape.parts[i]);
+        }
+        g.setColor(TurtleColors.color(argb));
+        for (Shape part : parts) {
+            g.fill(part);
+        }
+        g.setColor(TurtleColors.color(OUTLINE_ARGB));
+        for (int i = 0; i < parts.length; i++) {
+            if (shape.outlined[i]) {
+                g.draw(parts[i]);
+            }
+        }
+        g.dispose();
+        return new Sprite(image, anchor, anchor, outlines(shape, size, heading), shape.outlined);
+    }
+
+    /**
+     * Spezza le parti di una forma in poligoni chiusi (l'ultimo vertice ripete
+     * il primo) in coordinate turtle attorno all'origine, per i timbri.
+     */
+    private static double[][] outlines(CursorShape shape, double size, double heading) {
+        AffineTransform toWorld = AffineTransform.getRotateInstance(Math.toRadians(heading));
+        toWorld.scale(size, size);
+        double[][] polygons = new double[shape.parts.length][];
+        double[] seg = new double[6];
+        for (int i = 0; i < polygons.length; i++) {
+            double[] xy = new double[32];
+            int n = 0;
+            for (PathIterator it = shape.parts[i].getPathIterator(toWorld, FLATNESS); !it.isDone(); it.next()) {
+                int type = it.currentSegment(seg);
+                if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+                    if (n + 4 > xy.length) {
+                        xy = Arrays.copyOf(xy, 2 * xy.length);
+                    }
+                    xy[n++] = seg[0];
+                    xy[n++] = seg[1];
+                }
+            }
+            if (n > 0) {
+                xy[n++] = xy[0];
+                xy[n++] = xy[1];
+            }
+            polygons[i] = Arrays.copyOf(xy, n);
+        }
+        return polygons;
+    }
+
+    /**
+     * Scala un'immagine registrata alla dimensione del cursore.
+     */
+    private static Sprite scale(BufferedImage source, double size) {
+        double s = Math.abs(size);
+        int w = Math.max(1, (int) Math.round(source.getWidth() * s));
+        int h = Math.max(1, (int) Math.round(source.getHeight() * s));
+        if (w == source.getWidth() && h == source.getHeight()) {
+            return new Sprite(source, w / 2, h / 2, null, null);
+        }
+        BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, w, h, null);
+        g.dispose();
+        return new Sprite(image, w / 2, h / 2, null, null);
+    }
+
+    /**
+     * Registra nella display list un timbro, con la stessa direzione arrotondata
+     * dello sprite: le forme vettoriali come poligoni riempiti (le curve spezzate
+     * in segmenti) e i contorni come spezzate chiuse, le immagini come immagini.
+     * Così il timbro si ridisegna e si esporta in SVG come il resto del disegno.
+     *
+     * @param list la display list del livello
+     * @param sprite lo sprite copiato sul canvas
+     * @param argb il colore di riempimento
+     * @param x la X del centro in coordinate turtle
+     * @param y la Y del centro in coordinate turtle
+     * @param view la vista con cui lo sprite è stato copiato, per riportare in unità turtle i poligoni in pixel
+     */
+    static void record(DisplayList list, Sprite sprite, int argb, double x, double y, TurtleView view) {
+        if (sprite.polygons == null) {
+            list.addImage(x, y, sprite.image);
+            return;
+        }
+        double[][] moved = new double[sprite.polygons.length][];
+        for (int i = 0; i < moved.length; i++) {
+            double[] xy = sprite.polygons[i].clone();
+            for (int k = 0; k < xy.length; k += 2) {
+                xy[k] = x + xy[k] / view.scaleX;
+                xy[k + 1] = y + xy[k + 1] / view.scaleY;
+            }
+            moved[i] = xy;
+            if (xy.length > 2) {
+                list.addFill(xy, xy.length / 2 - 1, argb);
+            }
+        }
+        for (int i = 0; i < moved.length; i++) {
+            if (sprite.outlined[i] && moved[i].length > 2) {
+                list.addPolyline(moved[i], moved[i].length / 2, OUTLINE_ARGB, 1);
+            }
+        }
+    }
+
+    /**
+     * Un'immagine pronta da copiare, con la posizione del centro della tartaruga
+     * e, per le forme vettoriali, i poligoni da registrare per i timbri.
+     */
+    static final class Sprite {
+        final BufferedImage image;
+        final int anchorX;
+        final int anchorY;
+        final double[][] polygons;
+        final boolean[] outlined;
+
+        Sprite(BufferedImage image, int anchorX, int anchorY, double[][] polygons, boolean[] outlined) {
+            this.image = image;
+            this.anchorX = anchorX;
+            this.anchorY = anchorY;
+            this.polygons = polygons;
+            this.outlined = outlined;
+        }
+    }
+
+    /**
+     * Gli sprite di una forma, dimensione e colore, creati alla prima richiesta
+     * di ogni direzione.
+     */
+    static final class Rotations {
+        private final CursorShape shape;
+        private final double size;
+        private final int argb;
+        private final Sprite[] sprites = new Sprite[HEADINGS];
+
+        private Rotations(CursorShape shape, double size, int argb) {
+            this.shape = shape;
+            this.size = size;
+            this.argb = argb;
+        }
+
+        /**
+         * Restituisce lo sprite più vicino a una direzione.
+         *
+         * @param heading la direzione in gradi
+         * @return lo sprite; per le immagini sempre lo stesso
+         */
+        Sprite get(double heading) {
+            int index = shape.image == null ? headingIndex(heading) : 0;
+            Sprite sprite = sprites[index];
+            if (sprite == null) {
+                // Due thread possono creare lo stesso sprite: ne resta uno, ed è identico
+                sprite = shape.image == null ? render(shape, size, argb, index * HEADING_STEP) : scale(shape.image, size);
+                sprites[index] = sprite;
+            }
+            return sprite;
+        }
+    }
+
+    /**
+     * Una forma: parti vettoriali a dimensione 1 oppure un'immagine.
+     */
+    private static final class CursorShape {
+        final Shape[] parts;
+        final boolean[] outlined;
+        final BufferedImage image;
+        final double radius;
+
+        CursorShape(Shape[] parts, boolean[] outlined) {
+            this.parts = parts;
+            this.outlined = outlined;
+            this.image = null;
+            double r = 0;
+            for (Shape part : parts) {
+                Rectangle2D b = part.getBounds2D();
+                r = Math.max(r, Math.hypot(Math.max(-b.getMinX(), b.getMaxX()), Math.max(-b.getMinY(), b.getMaxY())));
+            }
+            this.radius = r;
+        }
+
+        CursorShape(BufferedImage image) {
+            this.parts = new Shape[0];
+            this.outlined = new boolean[0];
+            this.image = image;
+            this.radius = Math.hypot(image.getWidth(), image.getHeight()) / 2;
+        }
+    }
+
+    private record SpriteKey(String shape, double size, int argb) {
+    }
+}
@@ -0,0 +1,700 @@
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sciame di tartarughe memorizzate in array paralleli, per simulazioni con
+ * decine o centinaia di migliaia di agenti (boids, particelle, formiche).
+ *
+ * <p>Ogni tartaruga dello sciame è un indice: posizione, direzione, velocità,
+ * penna e colore stanno in array di tipi primitivi invece che in un oggetto
+ * {@link Turtle} ciascuna. I metodi con l'indice come primo parametro hanno
+ * la stessa semantica di quelli di {@link Turtle} ({@code forward(i, 10)} come
+ * {@code t.forward(10)}); forma, dimensione del cursore, spessore della penna
+ * e livello sono comuni a tutto lo sciame.</p>
+ *
+ * <p>Gli aggiornamenti di massa ({@link #forwardAll()}, {@link #turnAll(double)},
+ * {@link #update(Kernel)}) dividono lo sciame in blocchi di 4096 tartarughe
+ * eseguiti in parallelo sul pool ForkJoin comune. I segmenti tracciati vengono
+ * raccolti per blocco e disegnati alla fine dell'aggiornamento in un solo
+ * passaggio, nell'ordine in cui sono stati tracciati: i segmenti consecutivi dello
+ * stesso colore diventano spezzate di al più 64 segmenti. Anche i cursori vengono
+ * disegnati dal canvas tutti insieme. I movimenti non sono mai animati.</p>
+ *
+ * <pre>{@code
+ * TurtleSwarm sciame = createSwarm(100_000);
+ * sciame.update((s, from, to) -> {
+ *     for (int i = from; i < to; i++) {
+ *         s.setHeading(i, i * 360.0 / s.size());
+ *         s.setPenColor(i, arcobaleno.get(i));
+ *     }
+ * });
+ * for (int passo = 0; passo < 100; passo++) {
+ *     sciame.forwardAll(2);
+ *     sciame.turnAll(3);
+ * }
+ * }</pre>
+ *
+ * <p>Uno sciame va usato da un solo thread alla volta; dentro {@link #update(Kernel)}
+ * ogni kernel deve toccare solo le tartarughe del proprio intervallo.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+public final class TurtleSwarm {
+
+    /** Tartarughe per blocco, come potenza di 2: un blocco è l'unità di lavoro parallelo */
+    private static final int CHUNK_SHIFT = 12;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /** Segmenti in attesa in un blocco oltre i quali, fuori da update(), le scie vengono disegnate */
+    private static final int MAX_PENDING = 1 << 16;
+
+    /**
+     * Segmenti disegnati con una sola chiamata: spezzate più lunghe bloccherebbero
+     * più tile e rallenterebbero il rasterizzatore dove le scie si sovrappongono
+     */
+    private static final int MAX_PATH_SEGMENTS = 64;
+
+    /**
+     * Aggiornamento di un intervallo di tartarughe, eseguito in parallelo
+     * su intervalli diversi da {@link #update(Kernel)}.
+     */
+    @FunctionalInterface
+    public interface Kernel {
+        /**
+         * Aggiorna le tartarughe da {@code from} (inclusa) a {@code to} (esclusa),
+         * con i metodi per indice dello sciame.
+         *
+         * @param swarm lo sciame
+         * @param from il primo indice
+         * @param to l'ultimo indice, escluso
+         */
+        void apply(TurtleSwarm swarm, int from, int to);
+    }
+
+    private final TurtleScreen screen;
+    private final TurtleCanvas canvas;
+    private final TurtleMetrics metrics;
+
+    /** Operazioni contate per il tracer dello schermo (vedi {@link TurtleScreen#countOperation(int)}) */
+    private int operations;
+    private final int size;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] heading;
+    private final double[] speed;
+    private final boolean[] penDown;
+    private final int[] penArgb;
+
+    private volatile double penWidth = 1.0;
+    private volatile boolean visible = true;
+    private volatile String shape = "arrow";
+    private volatile double turtleSize = 1.0;
+
+    /** Segmenti tracciati e non ancora disegnati, uno per blocco (ognuno è il proprio lock) */
+    private final Trail[] trails;
+
+    /** true durante update(): i blocchi vengono disegnati solo alla fine */
+    private volatile boolean updating = false;
+
+    // Disegno delle scie, protetto dal lock dello sciame
+    private volatile TurtleLayer layer;
+    private TurtleGraphics graphics;
+    private double[] batchXy = new double[256];
+    private int[] batchArgb = new int[64];
+
+    /**
+     * Crea uno sciame associato allo schermo specificato, con tutte le tartarughe
+     * nell'origine, rivolte verso destra, penna nera abbassata e velocità 1.
+     * Lo sciame viene registrato nello schermo.
+     *
+     * @param screen lo schermo su cui lo sciame disegnerà
+     * @param size il numero di tartarughe
+     */
+    public TurtleSwarm(TurtleScreen screen, int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Dimensione dello sciame non valida: " + size);
+        }
+        this.screen = screen;
+        this.canvas = screen.getCanvas();
+        this.metrics = screen.getMetrics();
+        this.size = size;
+        x = new double[size];
+        y = new double[size];
+        heading = new double[size];
+        speed = new double[size];
+        penDown = new boolean[size];
+        penArgb = new int[size];
+        Arrays.fill(speed, 1);
+        Arrays.fill(penDown, true);
+        Arrays.fill(penArgb, TurtleColors.BLACK);
+        trails = new Trail[(size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT];
+        for (int c = 0; c < trails.length; c++) {
+            trails[c] = new Trail();
+        }
+        layer = canvas.getLayer(0);
+        graphics = new TurtleGraphics(layer);
+        screen.registerSwarm(this);
+    }
+
+    /**
+     * Restituisce il numero di tartarughe dello sciame.
+     *
+     * @return la dimensione dello sciame
+     */
+    public int size() {
+        return size;
+    }
+
+    // ==================== Aggiornamenti di massa ====================
+
+    /**
+     * Fa avanzare ogni tartaruga della propria velocità (vedi {@link #setSpeed(int, double)}).
+     */
+    public void forwardAll() {
+        update((swarm, from, to) -> {
+            for (int i = from; i < to; i++) {
+                swarm.forward(i, swarm.speed[i]);
+            }
+        });
+    }
+
+    /**
+     * Fa avanzare tutte le tartarughe della stessa distanza.
+     *
+     * @param distance la distanza da percorrere (negativa per andare indietro)
+     */
+    public void forwardAll(double distance) {
+        update((swarm, from, to) -> {
+            for (int i = from; i < to; i++) {
+                swarm.forward(i, distance);
+            }
+        });
+    }
+
+    /**
+     * Ruota tutte le tartarughe verso sinistra dello stesso angolo.
+     *
+     * @param angle l'angolo in gradi (negativo per ruotare a destra)
+     */
+    public void turnAll(double angle) {
+        update((swarm, from, to) -> {
+            for (int i = from; i < to; i++) {
+                swarm.left(i, angle);
+            }
+        });
+    }
+
+    /**
+     * Esegue un kernel su tutto lo sciame, a blocchi in parallelo, poi disegna
+     * in un solo passaggio i segmenti tracciati.
+     * Un'eccezione lanciata da un kernel viene rilanciata qui.
+     *
+     * @param kernel l'aggiornamento da applicare a ogni blocco di tartarughe
+     */
+    public void update(Kernel kernel) {
+        updating = true;
+        try {
+            if (trails.length == 1) {
+                runChunk(kernel, 0);
+            } else if (trails.length > 1) {
+                ForkJoinPool.commonPool().invoke(new ChunkTask(kernel, 0, trails.length));
+            }
+        } finally {
+            updating = false;
+        }
+        flushTrails();
+        operations = screen.countOperation(operations);
+    }
+
+    /**
+     * Esegue il kernel su un blocco tenendo il lock della sua scia.
+     */
+    private void runChunk(Kernel kernel, int chunk) {
+        int from = chunk << CHUNK_SHIFT;
+        int to = Math.min(size, from + CHUNK_SIZE);
+        synchronized (trails[chunk]) {
+            kernel.apply(this, from, to);
+        }
+    }
+
+    // ==================== Movimento ====================
+
+    /**
+     * Muove una tartaruga in avanti, tracciando un segmento se la sua penna è abbassata.
+     *
+     * @param i l'indice della tartaruga
+     * @param distance la distanza da percorrere (negativa per andare indietro)
+     */
+    public void forward(int i, double distance) {
+        double radians = Math.toRadians(heading[i]);
+        moveTo(i, x[i] + distance * Math.cos(radians), y[i] + distance * Math.sin(radians));
+    }
+
+    /**
+     * Muove una tartaruga all'indietro.
+     *
+     * @param i l'indice della tartaruga
+     * @param distance la distanza da percorrere all'indietro
+     */
+    public void backward(int i, double distance) {
+        forward(i, -distance);
+    }
+
+    /**
+     * Ruota una tartaruga verso sinistra (in senso antiorario).
+     *
+     * @param i l'indice della tartaruga
+     * @param angle l'angolo in gradi
+     */
+    public void left(int i, double angle) {
+        heading[i] = normalizeAngle(heading[i] + angle);
+    }
+
+    /**
+     * Ruota una tartaruga verso destra (in senso orario).
+     *
+     * @param i l'indice della tartaruga
+     * @param angle l'angolo in gradi
+     */
+    public void right(int i, double angle) {
+        heading[i] = normalizeAngle(heading[i] - angle);
+    }
+
+    /**
+     * Sposta una tartaruga alle coordinate indicate, tracciando un segmento
+     * se la sua penna è abbassata.
+     *
+     * @param i l'indice della tartaruga
+     * @param newX la coordinata X di destinazione
+     * @param newY la coordinata Y di destinazione
+     */
+    public void goTo(int i, double newX, double newY) {
+        moveTo(i, newX, newY);
+    }
+
+    /**
+     * Imposta l'orientamento di una tartaruga.
+     *
+     * @param i l'indice della tartaruga
+     * @param angle l'angolo in gradi (0 = destra, 90 = su)
+     */
+    public void setHeading(int i, double angle) {
+        heading[i] = normalizeAngle(angle);
+    }
+
+    /**
+     * Orienta una tartaruga verso il punto indicato.
+     *
+     * @param i l'indice della tartaruga
+     * @param targetX la coordinata X del punto
+     * @param targetY la coordinata Y del punto
+     */
+    public void towards(int i, double targetX, double targetY) {
+        setHeading(i, Math.toDegrees(Math.atan2(targetY - y[i], targetX - x[i])));
+    }
+
+    /**
+     * Calcola la distanza di una tartaruga dal punto indicato.
+     *
+     * @param i l'indice della tartaruga
+     * @param targetX la coordinata X del punto
+     * @param targetY la coordinata Y del punto
+     * @return la distanza in pixel
+     */
+    public double distance(int i, double targetX, double targetY) {
+        return Math.hypot(targetX - x[i], targetY - y[i]);
+    }
+
+    /**
+     * Restituisce la coordinata X di una tartaruga.
+     *
+     * @param i l'indice della tartaruga
+     * @return la coordinata X
+     */
+    public double xcor(int i) {
+        return x[i];
+    }
+
+    /**
+     * Restituisce la coordinata Y di una tartaruga.
+     *
+     * @param i l'indice della tartaruga
+     * @return la coordinata Y
+     */
+    public double ycor(int i) {
+        return y[i];
+    }
+
+    /**
+     * Restituisce l'orientamento di una tartaruga.
+     *
+     * @param i l'indice della tartaruga
+     * @return l'angolo in gradi (0-360)
+     */
+    public double heading(int i) {
+        return heading[i];
+    }
+
+    /**
+     * Imposta la velocità di una tartaruga, cioè la distanza che percorre
+     * a ogni {@link #forwardAll()}.
+     *
+     * @param i l'indice della tartaruga
+     * @param distance la distanza per passo (default 1)
+     */
+    public void setSpeed(int i, double distance) {
+        speed[i] = distance;
+    }
+
+    /**
+     * Restituisce la velocità di una tartaruga.
+     *
+     * @param i l'indice della tartaruga
+     * @return la distanza percorsa a ogni {@link #forwardAll()}
+     */
+    public double getSpeed(int i) {
+        return speed[i];
+    }
+
+    // ==================== Penna ====================
+
+    /**
+     * Abbassa la penna di una tartaruga.
+     *
+     * @param i l'indice della tartaruga
+     */
+    public void penDown(int i) {
+        penDown[i] = true;
+    }
+
+    /**
+     * Alza la penna di una tartaruga: i suoi movimenti non disegnano.
+     *
+     * @param i l'indice della tartaruga
+     */
+    public void penUp(int i) {
+        penDown[i] = false;
+    }
+
+    /**
+     * Verifica se la penna di una tartaruga è abbassata.
+     *
+     * @param i l'indice della tartaruga
+     * @return true se la tartaruga disegna muovendosi
+     */
+    public boolean isDown(int i) {
+        return penDown[i];
+    }
+
+    /**
+     * Imposta il colore della penna e del cursore di una tartaruga.
+     *
+     * @param i l'indice della tartaruga
+     * @param argb il colore come 0xAARRGGBB
+     */
+    public void setPenColor(int i, int argb) {
+        penArgb[i] = argb;
+    }
+
+    /**
+     * Imposta il colore della penna e del cursore di una tartaruga.
+     *
+     * @param i l'indice della tartaruga
+     * @param color il colore
+     */
+    public void setPenColor(int i, Color color) {
+        penArgb[i] = color.getRGB();
+    }
+
+    /**
+     * Restituisce il colore della penna di una tartaruga.
+     *
+     * @param i l'indice della tartaruga
+     * @return il colore, condiviso con le altre tartarughe dello stesso colore
+     */
+    public Color getPenColor(int i) {
+        return TurtleColors.color(penArgb[i]);
+    }
+
+    /**
+     * Restituisce il colore della penna di una tartaruga come intero ARGB.
+     */
+    int getPenArgb(int i) {
+        return penArgb[i];
+    }
+
+    /**
+     * Imposta lo spessore della penna di tutto lo sciame.
+     *
+     * @param width lo spessore in pixel
+     */
+    public void setPenSize(double width) {
+        penWidth = width;
+    }
+
+    /**
+     * Restituisce lo spessore della penna dello sciame.
+     *
+     * @return lo spessore in pixel
+     */
+    public double getPenSize() {
+        return penWidth;
+    }
+
+    // ==================== Cursori e livello ====================
+
+    /**
+     * Mostra i cursori delle tartarughe.
+     */
+    public void showTurtles() {
+        visible = true;
+    }
+
+    /**
+     * Nasconde i cursori delle tartarughe. Con molte tartarughe nasconderli
+     * (o usare una forma piccola) rende i frame molto più rapidi.
+     */
+    public void hideTurtles() {
+        visible = false;
+    }
+
+    /**
+     * Verifica se i cursori sono visibili.
+     *
+     * @return true se il canvas disegna i cursori dello sciame
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Imposta la forma dei cursori, come {@link Turtle#setShape(String)}.
+     * Il cursore di ogni tartaruga ha il colore della sua penna.
+     *
+     * @param name il nome della forma
+     */
+    public void setShape(String name) {
+        shape = name;
+    }
+
+    /**
+     * Restituisce il nome della forma dei cursori.
+     *
+     * @return il nome della forma
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * Imposta la dimensione dei cursori.
+     *
+     * @param size il fattore di scala (1.0 = dimensione normale)
+     */
+    public void setTurtleSize(double size) {
+        turtleSize = size;
+    }
+
+    /**
+     * Restituisce la dimensione dei cursori.
+     *
+     * @return il fattore di scala
+     */
+    public double getTurtleSize() {
+        return turtleSize;
+    }
+
+    /**
+     * Sposta i disegni successivi dello sciame su un altro livello del canvas,
+     * come {@link Turtle#setLayer(int)}.
+     *
+     * @param id l'id del livello, non negativo
+     */
+    public void setLayer(int id) {
+        TurtleLayer target = canvas.getLayer(id);
+        synchronized (this) {
+            if (target != layer) {
+                drawPendingTrails();
+                graphics.dispose();
+                layer = target;
+                graphics = new TurtleGraphics(target);
+            }
+        }
+    }
+
+    /**
+     * Restituisce l'id del livello su cui lo sciame disegna.
+     *
+     * @return l'id del livello
+     */
+    public int getLayer() {
+        return layer.getId();
+    }
+
+    // ==================== Scie ====================
+
+    /**
+     * Sposta una tartaruga e, se la penna è abbassata, accoda il segmento
+     * nella scia del suo blocco.
+     */
+    private void moveTo(int i, double newX, double newY) {
+        if (penDown[i] && (newX != x[i] || newY != y[i])) {
+            Trail trail = trails[i >>> CHUNK_SHIFT];
+            boolean full;
+            synchronized (trail) {
+                trail.add(x[i], y[i], newX, newY, penArgb[i]);
+                full = trail.count >= MAX_PENDING;
+            }
+            if (full && !updating) {
+                flushTrails();
+            }
+        }
+        x[i] = newX;
+        y[i] = newY;
+    }
+
+    /**
+     * Disegna sul livello tutti i segmenti accodati e li registra nella display list.
+     * Chiamato alla fine di ogni aggiornamento di massa e dal canvas quando
+     * serve un back buffer completo.
+     */
+    synchronized void flushTrails() {
+        drawPendingTrails();
+    }
+
+    /**
+     * Corpo di {@link #flushTrails()}, eseguito con il lock dello sciame:
+     * raccoglie le scie dei blocchi e le disegna nell'ordine in cui sono state
+     * tracciate, a gruppi di segmenti consecutivi dello stesso colore. I segmenti
+     * non vengono riordinati per colore: dove si sovrappongono deve restare
+     * visibile l'ultimo, come con una {@link Turtle}.
+     */
+    private void drawPendingTrails() {
+        int count = 0;
+        for (Trail trail : trails) {
+            synchronized (trail) {
+                if (trail.count == 0) {
+                    continue;
+                }
+                if (count + trail.count > batchArgb.length) {
+                    int capacity = Math.max(count + trail.count, 2 * batchArgb.length);
+                    batchArgb = Arrays.copyOf(batchArgb, capacity);
+                    batchXy = Arrays.copyOf(batchXy, 4 * capacity);
+                }
+                System.arraycopy(trail.xy, 0, batchXy, 4 * count, 4 * trail.count);
+                System.arraycopy(trail.argb, 0, batchArgb, count, trail.count);
+                count += trail.count;
+                trail.count = 0;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+
+        double[] xy = batchXy;
+        int[] argb = batchArgb;
+        double width = penWidth;
+        if (layer.isDeferred()) {
+            layer.getDisplayList().addLines(xy, argb, count, width);
+        } else {
+            for (int start = 0; start < count; ) {
+                int c = argb[start];
+                int end = start + 1;
+                int limit = Math.min(count, start + MAX_PATH_SEGMENTS);
+                while (end < limit && argb[end] == c) {
+                    end++;
+                }
+                graphics.drawLines(xy, argb, start, end, width);
+                start = end;
+            }
+        }
+        metrics.recordSegments(count);
+    }
+
+    /**
+     * Scarta i segmenti non ancora disegnati.
+     * Chiamato dal canvas quando il back buffer viene cancellato.
+     */
+    void discardTrails() {
+        discardTrails(null);
+    }
+
+    /**
+     * Scarta i segmenti non ancora disegnati se lo sciame disegna sul livello indicato.
+     *
+     * @param target il livello cancellato, null per tutti
+     */
+    synchronized void discardTrails(TurtleLayer target) {
+        if (target != null && target != layer) {
+            return;
+        }
+        for (Trail trail : trails) {
+            synchronized (trail) {
+                trail.count = 0;
+            }
+        }
+    }
+
+    /**
+     * Normalizza un angolo nell'intervallo [0, 360).
+     */
+    private static double normalizeAngle(double angle) {
+        angle = angle % 360;
+        if (angle < 0) angle += 360;
+        return angle;
+    }
+
+    /**
+     * Segmenti tracciati da un blocco di tartarughe: x1, y1, x2, y2 e colore.
+     */
+    private static final class Trail {
+        double[] xy = new double[64];
+        int[] argb = new int[16];
+        int count = 0;
+
+        void add(double x1, double y1, double x2, double y2, int c) {
+            if (count == argb.length) {
+                argb = Arrays.copyOf(argb, 2 * count);
+                xy = Arrays.copyOf(xy, 8 * count);
+            }
+            int k = 4 * count;
+            xy[k] = x1;
+            xy[k + 1] = y1;
+            xy[k + 2] = x2;
+            xy[k + 3] = y2;
+            argb[count++] = c;
+        }
+    }
+
+    /**
+     * Esegue un kernel su un intervallo di blocchi, dividendolo a metà finché
+     * ne resta uno.
+     */
+    @SuppressWarnings("serial")
+    private final class ChunkTask extends RecursiveAction {
+        private final Kernel kernel;
+        private final int first;
+        private final int last;
+
+        ChunkTask(Kernel kernel, int first, int last) {
+            this.kernel = kernel;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1) {
+                int mid = (first + last) >>> 1;
+                invokeAll(new ChunkTask(kernel, first, mid), new ChunkTask(kernel, mid, last));
+                return;
+            }
+            runChunk(kernel, first);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creazione degli esecutori usati per i programmi delle tartarughe e per i callback.
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TurtleThreads {
+
+    private TurtleThreads() {
+    }
+
+    /**
+     * Crea un esecutore che avvia un thread per ogni compito.
+     * Usa i virtual thread quando la JVM li supporta (Java 21 o successivi),
+     * altrimenti thread daemon normali con il nome indicato.
+     *
+     * @param name il prefisso del nome dei thread
+     * @return un nuovo esecutore
+     */
+    static ExecutorService newPerTaskExecutor(String name) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonFactory(name));
+        }
+    }
+
+    /**
+     * Crea un esecutore con un numero fisso di thread daemon,
+     * per lavori di calcolo in background che non devono tenere viva la JVM.
+     *
+     * @param name il prefisso del nome dei thread
+     * @param threads il numero di thread
+     * @return un nuovo esecutore
+     */
+    static ExecutorService newDaemonPool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, daemonFactory(name));
+    }
+
+    private static ThreadFactory daemonFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
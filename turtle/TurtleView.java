@@ -0,0 +1,128 @@
+import java.awt.geom.AffineTransform;
+
+/**
+ * Corrispondenza tra le coordinate turtle e i pixel di un'immagine.
+ *
+ * <p>Un punto turtle (x, y) finisce in
+ * ({@code originX + x * scaleX}, {@code originY - y * scaleY}): le scale
+ * possono essere diverse sui due assi, come con {@code setworldcoordinates}
+ * del turtle di Python. Spessori delle penne, diametri dei punti, font e
+ * immagini sono misurati in pixel e vengono moltiplicati solo per
+ * {@code sizeScale}: ingrandendo la vista la geometria si allarga ma le
+ * linee restano sottili.</p>
+ *
+ * <p>La vista è immutabile: ogni cambio di zoom o di posizione ne crea una nuova.</p>
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+final class TurtleView {
+
+    /** Pixel per unità turtle lungo X */
+    final double scaleX;
+
+    /** Pixel per unità turtle lungo Y */
+    final double scaleY;
+
+    /** Coordinata schermo X dell'origine turtle */
+    final double originX;
+
+    /** Coordinata schermo Y dell'origine turtle */
+    final double originY;
+
+    /** Fattore per spessori, diametri, font e immagini */
+    final double sizeScale;
+
+    TurtleView(double scaleX, double scaleY, double originX, double originY, double sizeScale) {
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+        this.originX = originX;
+        this.originY = originY;
+        this.sizeScale = sizeScale;
+    }
+
+    /**
+     * Crea la vista predefinita: un'unità turtle per pixel, origine al centro.
+     *
+     * @param width la larghezza dell'immagine in pixel
+     * @param height l'altezza dell'immagine in pixel
+     */
+    static TurtleView standard(int width, int height) {
+        return new TurtleView(1, 1, width / 2.0, height / 2.0, 1);
+    }
+
+    /**
+     * Crea la vista in cui il rettangolo turtle indicato riempie un'immagine,
+     * con scale eventualmente diverse sui due assi.
+     *
+     * @param llx la X dell'angolo in basso a sinistra
+     * @param lly la Y dell'angolo in basso a sinistra
+     * @param urx la X dell'angolo in alto a destra
+     * @param ury la Y dell'angolo in alto a destra
+     * @param width la larghezza dell'immagine in pixel
+     * @param height l'altezza dell'immagine in pixel
+     */
+    static TurtleView fit(double llx, double lly, double urx, double ury, int width, int height) {
+        double sx = width / (urx - llx);
+        double sy = height / (ury - lly);
+        return new TurtleView(sx, sy, -llx * sx, height + lly * sy, 1);
+    }
+
+    double screenX(double x) {
+        return originX + x * scaleX;
+    }
+
+    double screenY(double y) {
+        return originY - y * scaleY;
+    }
+
+    double worldX(double sx) {
+        return (sx - originX) / scaleX;
+    }
+
+    double worldY(double sy) {
+        return (originY - sy) / scaleY;
+    }
+
+    /**
+     * Restituisce la scala più grande dei due assi, per convertire in pixel
+     * una lunghezza turtle senza direzione (raggi, passi dell'animazione).
+     */
+    double maxScale() {
+        return Math.max(scaleX, scaleY);
+    }
+
+    /**
+     * Restituisce la stessa vista su un'immagine ingrandita di {@code factor}
+     * e spostata di ({@code dx}, {@code dy}) pixel, spessori compresi.
+     */
+    TurtleView scaled(double factor, double dx, double dy) {
+        return new TurtleView(scaleX * factor, scaleY * factor, originX * factor + dx, originY * factor + dy,
+                sizeScale * factor);
+    }
+
+    /**
+     * Restituisce la vista ingrandita di {@code factor} attorno al punto schermo
+     * ({@code sx}, {@code sy}), che resta fermo. Gli spessori non cambiano.
+     */
+    TurtleView zoomed(double factor, double sx, double sy) {
+        return new TurtleView(scaleX * factor, scaleY * factor,
+                sx - (sx - originX) * factor, sy - (sy - originY) * factor, sizeScale);
+    }
+
+    /**
+     * Restituisce la vista con il disegno spostato di ({@code dx}, {@code dy}) pixel.
+     */
+    TurtleView panned(double dx, double dy) {
+        return new TurtleView(scaleX, scaleY, originX + dx, originY + dy, sizeScale);
+    }
+
+    /**
+     * Restituisce la trasformazione affine equivalente.
+     *
+     * @return una nuova trasformazione mondo → schermo
+     */
+    AffineTransform toTransform() {
+        return new AffineTransform(scaleX, 0, 0, -scaleY, originX, originY);
+    }
+}
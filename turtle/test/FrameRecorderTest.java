@@ -0,0 +1,40 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Test della registrazione dei frame.
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+class FrameRecorderTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void closeReportsWriteErrors() throws IOException {
+        // Una cartella non vuota non può essere sostituita dalla GIF
+        Path target = Files.createDirectory(folder.resolve("film.gif"));
+        Files.createFile(target.resolve("occupato"));
+        TurtleScreen screen = new TurtleScreen(100, 100, true);
+        Turtle turtle = screen.createTurtle();
+        FrameRecorder recorder = screen.startRecording(target);
+        for (int i = 0; i < 20; i++) {
+            turtle.forward(5);
+            turtle.left(30);
+            screen.update();
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThrows(IOException.class, recorder::close);
+        });
+    }
+}
@@ -0,0 +1,139 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test della coda degli eventi e dello stato dei tasti.
+ *
+ * @author JavaTurtle
+ * @version 1.0
+ */
+class TurtleInputTest {
+
+    @Test
+    void consumersReadIndependently() {
+        TurtleInput input = new TurtleInput();
+        long now = System.nanoTime();
+        input.keyPressed(KeyEvent.VK_A, 'a', now);
+        input.keyReleased(KeyEvent.VK_A, 'a', now);
+        input.keyPressed(KeyEvent.VK_UP, KeyEvent.CHAR_UNDEFINED, now);
+
+        assertEquals("a", input.pollKey());
+        assertEquals("up", input.pollKey());
+        assertNull(input.pollKey());
+
+        assertEquals(TurtleEvent.Type.KEY_PRESSED, input.poll().getType());
+        assertEquals(TurtleEvent.Type.KEY_RELEASED, input.poll().getType());
+        assertEquals("up", input.poll().getKey());
+        assertNull(input.poll());
+    }
+
+    @Test
+    void slowConsumerLosesOldestEvents() {
+        TurtleInput input = new TurtleInput();
+        int extra = 10;
+        for (int i = 0; i < TurtleInput.CAPACITY + extra; i++) {
+            input.mouse(TurtleEvent.Type.MOUSE_MOVED, i, 0, 0, i);
+        }
+        assertEquals(extra, input.poll().getX());
+        assertEquals(extra, input.getDropped());
+    }
+
+    @Test
+    void concurrentConsumerSeesIntactEventsInOrder() throws InterruptedException {
+        TurtleInput input = new TurtleInput();
+        int count = 500_000;
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                input.mouse(TurtleEvent.Type.MOUSE_MOVED, i, 2.0 * i, i & 3, i);
+            }
+        });
+        producer.start();
+
+        long seen = 0;
+        double last = -1;
+        while (producer.isAlive() || seen + input.getDropped() < count) {
+            TurtleEvent event = input.poll();
+            if (event == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            double x = event.getX();
+            assertTrue(x > last, "eventi fuori ordine: " + x + " dopo " + last);
+            assertEquals(2 * x, event.getY());
+            assertEquals((int) x & 3, event.getButton());
+            assertEquals((long) x, event.getTime());
+            last = x;
+            seen++;
+        }
+        producer.join();
+        assertEquals(count, seen + input.getDropped());
+        assertEquals(count - 1, last);
+    }
+
+    @Test
+    void lastKeyKeepsOnlyTheLatestPress() {
+        TurtleInput input = new TurtleInput();
+        long now = System.nanoTime();
+        input.keyPressed(KeyEvent.VK_A, 'a', now);
+        input.keyPressed(KeyEvent.VK_B, 'b', now);
+        assertEquals("b", input.lastKey());
+        assertNull(input.lastKey());
+    }
+
+    @Test
+    void checkKeyMatchesTypedCharacters() {
+        TurtleInput input = new TurtleInput();
+        long now = System.nanoTime();
+        // "+" con la tastiera italiana e "?" con Shift: il codice non è quello del carattere
+        input.keyPressed(KeyEvent.VK_PLUS, '+', now);
+        input.keyPressed(KeyEvent.VK_QUOTE, '?', now);
+
+        assertTrue(input.checkKey("+", now));
+        assertFalse(input.checkKey("+", now));
+        assertTrue(input.checkKey("?", now));
+        assertTrue(input.isKeyDown("?"));
+        assertNull(input.lastKey());
+    }
+
+    @Test
+    void checkKeyForgetsOldPresses() {
+        TurtleInput input = new TurtleInput();
+        long now = System.nanoTime();
+        input.keyPressed(KeyEvent.VK_SPACE, ' ', now - 2 * TurtleInput.PRESS_TIMEOUT_NANOS);
+        assertFalse(input.checkKey("space", now));
+    }
+
+    @Test
+    void timerDispatcherStopsWhenIdle() {
+        TurtleInput input = new TurtleInput();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 2; i++) {
+                CountDownLatch fired = new CountDownLatch(1);
+                input.onTimer(fired::countDown, 1);
+                assertTrue(fired.await(5, TimeUnit.SECONDS));
+                while (input.isDispatching()) {
+                    Thread.sleep(1);
+                }
+            }
+        });
+    }
+
+    @Test
+    void byeStopsHeadlessDispatcher() {
+        TurtleScreen screen = new TurtleScreen(100, 100, true);
+        screen.onKey("space", () -> { });
+        assertTrue(screen.getInput().isDispatching());
+        screen.bye();
+        assertFalse(screen.getInput().isDispatching());
+    }
+}